@@ -0,0 +1,43 @@
+package es.boffmedia.frames.bench;
+
+import es.boffmedia.frames.AssetJsonBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Building the blockymodel and item JSON written for every new frame. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AssetJsonBenchmark {
+
+    public String baseName = "bench_1a2b3c4d";
+    public int sizeX = 256;
+    public int sizeY = 160;
+
+    @Benchmark
+    public String buildBlockymodel() {
+        return AssetJsonBuilder.buildBlockymodel(baseName, sizeX, sizeY, 40, -64, 0, 0, 0);
+    }
+
+    @Benchmark
+    public String buildBlockymodelAtlas() {
+        return AssetJsonBuilder.buildBlockymodel(baseName, sizeX, sizeY, 40, -64, 0, 0, 0, 512, 768);
+    }
+
+    @Benchmark
+    public String buildItemJson() {
+        return AssetJsonBuilder.buildItemJson(baseName, "Blocks/Frames/Images/" + baseName + ".png", 0.25f);
+    }
+}
@@ -0,0 +1,102 @@
+package es.boffmedia.frames.bench;
+
+import es.boffmedia.frames.core.BinaryFrameIndex;
+import es.boffmedia.frames.core.FrameIndex;
+import es.boffmedia.frames.core.FrameInstance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/** The in-memory index and the mapped FramesIndex.bin, without the journal or any locking contention. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class FrameIndexBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int instances;
+
+    private FrameIndex index;
+    private BinaryFrameIndex binary;
+    private Path dir;
+    private int[] probes;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        List<FrameInstance> all = SyntheticFrames.instances(instances);
+        index = new FrameIndex(all.size());
+        for (FrameInstance inst : all) index.put(inst);
+        dir = Files.createTempDirectory("frames-bench");
+        SyntheticFrames.writeBinaryIndex(dir, instances);
+        binary = BinaryFrameIndex.open(dir.resolve(BinaryFrameIndex.FILE_NAME));
+        probes = SyntheticFrames.probes(instances, 1 << 16);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        binary = null;
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+
+    private int probe() {
+        return probes[next++ & (probes.length - 1)];
+    }
+
+    @Benchmark
+    public FrameInstance lookupHit() {
+        int i = probe();
+        return index.find(SyntheticFrames.worldOf(i), SyntheticFrames.xOf(i), SyntheticFrames.yOf(i), SyntheticFrames.zOf(i));
+    }
+
+    @Benchmark
+    public FrameInstance lookupMiss() {
+        int i = probe();
+        return index.find(SyntheticFrames.worldOf(i), SyntheticFrames.xOf(i) + 1, SyntheticFrames.yOf(i), SyntheticFrames.zOf(i));
+    }
+
+    @Benchmark
+    public FrameInstance binaryLookupHit() {
+        int i = probe();
+        return binary.find(SyntheticFrames.worldOf(i), SyntheticFrames.xOf(i), SyntheticFrames.yOf(i), SyntheticFrames.zOf(i));
+    }
+
+    /** Places a frame next to an existing one and removes it again, leaving the index unchanged. */
+    @Benchmark
+    public List<FrameInstance> registerThenRemove() {
+        int i = probe();
+        String world = SyntheticFrames.worldOf(i);
+        int x = SyntheticFrames.xOf(i) + 1;
+        int y = SyntheticFrames.yOf(i);
+        int z = SyntheticFrames.zOf(i);
+        index.put(new FrameInstance("Boff_Frame_bench_new", "Boff_Frame_bench_new.json", world, x, y, z, 1, "", false, ""));
+        return index.removeAt(world, x, y, z);
+    }
+
+    @Benchmark
+    public List<FrameInstance> instancesOfItem() {
+        return index.instancesOf("Boff_Frame_bench" + (probe() % Math.max(1, instances / 4)));
+    }
+}
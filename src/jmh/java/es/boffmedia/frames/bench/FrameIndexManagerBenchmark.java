@@ -0,0 +1,95 @@
+package es.boffmedia.frames.bench;
+
+import es.boffmedia.frames.FramesConfig;
+import es.boffmedia.frames.core.FrameIndexManager;
+import es.boffmedia.frames.core.FrameInstance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * FrameIndexManager as the plugin uses it: every register and remove is also appended to the
+ * journal. The mods root is a temp directory seeded with a binary snapshot of the synthetic index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class FrameIndexManagerBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int instances;
+
+    @Param({"binary", "partitioned"})
+    public String format;
+
+    private Path root;
+    private int[] probes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("frames-bench");
+        // Compaction only runs between iterations, never behind a measurement
+        Files.writeString(root.resolve("config.json"), "{\"index\": {\"format\": \"" + format + "\", \"journalFsync\": false, "
+                + "\"compactionCheckSeconds\": 86400, \"journalMaxBytes\": 1099511627776, \"journalMaxAgeSeconds\": 86400}}");
+        FramesConfig.load(root);
+        SyntheticFrames.writeBinaryIndex(root, instances);
+        FrameIndexManager.load(root);
+        probes = SyntheticFrames.probes(instances, 1 << 16);
+    }
+
+    @TearDown(Level.Iteration)
+    public void compact() throws IOException {
+        FrameIndexManager.compact();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FrameIndexManager.shutdown();
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+
+    private int probe() {
+        return probes[next++ & (probes.length - 1)];
+    }
+
+    @Benchmark
+    public FrameInstance findInstanceAt() {
+        int i = probe();
+        return FrameIndexManager.findInstanceAt(SyntheticFrames.worldOf(i), SyntheticFrames.xOf(i), SyntheticFrames.yOf(i), SyntheticFrames.zOf(i), root);
+    }
+
+    /** Places a frame next to an existing one and removes it again, leaving the index unchanged. */
+    @Benchmark
+    public void registerThenRemove() throws IOException {
+        int i = probe();
+        String world = SyntheticFrames.worldOf(i);
+        int x = SyntheticFrames.xOf(i) + 1;
+        int y = SyntheticFrames.yOf(i);
+        int z = SyntheticFrames.zOf(i);
+        FrameIndexManager.registerFrameInstanceInIndex("Boff_Frame_bench_new", "Boff_Frame_bench_new.json", world, x, y, z, 1, "", false, root);
+        FrameIndexManager.removeInstancesAtCoords(world, x, y, z, root);
+    }
+}
@@ -0,0 +1,104 @@
+package es.boffmedia.frames.bench;
+
+import es.boffmedia.frames.core.FrameItemGenerator;
+import es.boffmedia.frames.core.ImageProcessor;
+import es.boffmedia.frames.core.PngEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/** Pixel work of the transform and encode stages at typical upload sizes. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageBenchmark {
+
+    // Source images are not multiples of 32 so padding always has work to do
+    @Param({"250x180", "1000x700", "2000x1400"})
+    public String size;
+
+    @Param({"false", "true"})
+    public boolean transparentBorder;
+
+    private BufferedImage source;
+    private BufferedImage padded;
+    private PngEncoder.Settings settings;
+
+    @Setup
+    public void setup() {
+        String[] wh = size.split("x");
+        source = SyntheticFrames.image(Integer.parseInt(wh[0]), Integer.parseInt(wh[1]), transparentBorder);
+        padded = FrameItemGenerator.prepareImage(source, 2, 0);
+        // The plugin defaults for png.*, without reading a config file
+        settings = new PngEncoder.Settings(6, Deflater.FILTERED, PngEncoder.Filter.ADAPTIVE, 128 * 1024);
+    }
+
+    @TearDown
+    public void tearDown() {
+        PngEncoder.shutdown();
+    }
+
+    /** padToMultipleOf32, reached through prepareImage with no resolution cap. */
+    @Benchmark
+    public BufferedImage padToMultipleOf32() {
+        return FrameItemGenerator.prepareImage(source, 2, 0);
+    }
+
+    @Benchmark
+    public BufferedImage resizeImageHalf() {
+        return ImageProcessor.resizeImage(source, source.getWidth() / 2, source.getHeight() / 2);
+    }
+
+    @Benchmark
+    public BufferedImage downscaleTo64PerBlock() {
+        return FrameItemGenerator.prepareImage(source, 2, 64);
+    }
+
+    @Benchmark
+    public long pngEncode() throws IOException {
+        CountingChannel out = new CountingChannel();
+        PngEncoder.encode(padded, out, settings);
+        return out.bytes;
+    }
+
+    /** Discards the encoded bytes so the benchmark measures the encoder, not the disk. */
+    static final class CountingChannel implements WritableByteChannel {
+        long bytes;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            bytes += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package es.boffmedia.frames.bench;
+
+import es.boffmedia.frames.core.BinaryFrameIndex;
+import es.boffmedia.frames.core.FrameInstance;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Deterministic datasets for the benchmarks: frame instances spread over a few worlds and images
+ * that compress roughly like real uploads. The same seed always yields the same data.
+ */
+public final class SyntheticFrames {
+    private SyntheticFrames() {}
+
+    public static final long SEED = 0x5EEDF4A3L;
+
+    private static final String[] WORLDS = {"default", "default", "default", "creative", "minigames"};
+    // Instances are laid out on a grid with 2-block spacing so every coordinate is unique
+    private static final int ROW = 4096;
+
+    public static String worldOf(int i) {
+        return WORLDS[i % WORLDS.length];
+    }
+
+    public static int xOf(int i) {
+        return (i / WORLDS.length % ROW) * 2 - ROW;
+    }
+
+    public static int yOf(int i) {
+        return 64 + i % 7;
+    }
+
+    public static int zOf(int i) {
+        return (i / WORLDS.length / ROW) * 2 - 2048;
+    }
+
+    /** n instances; about four placements share each item id and 200 players created them all. */
+    public static List<FrameInstance> instances(int n) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        String[] creators = new String[200];
+        for (int i = 0; i < creators.length; i++) creators[i] = new UUID(random.nextLong(), random.nextLong()).toString();
+        int items = Math.max(1, n / 4);
+        List<FrameInstance> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String itemId = "Boff_Frame_bench" + random.nextInt(items);
+            out.add(new FrameInstance(itemId, itemId + ".json", worldOf(i), xOf(i), yOf(i), zOf(i), 1 + random.nextInt(4),
+                    creators[random.nextInt(creators.length)], random.nextInt(10) == 0, "2026-01-01T00:00:00Z"));
+        }
+        return out;
+    }
+
+    /** Indices of existing instances to look up, in random order. */
+    public static int[] probes(int n, int count) {
+        SplittableRandom random = new SplittableRandom(SEED ^ n);
+        int[] out = new int[count];
+        for (int i = 0; i < count; i++) out[i] = random.nextInt(n);
+        return out;
+    }
+
+    /** Writes a FramesIndex.bin of n instances into modsRoot. */
+    public static void writeBinaryIndex(Path modsRoot, int n) throws IOException {
+        Files.createDirectories(modsRoot);
+        Files.write(modsRoot.resolve(BinaryFrameIndex.FILE_NAME), BinaryFrameIndex.encode(instances(n)));
+    }
+
+    /**
+     * An opaque image of smooth gradients with some noise, which compresses like a photo, plus an
+     * optional transparent border like a sticker or logo.
+     */
+    public static BufferedImage image(int width, int height, boolean transparentBorder) {
+        SplittableRandom random = new SplittableRandom(SEED + width * 31L + height);
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] row = new int[width];
+        int border = transparentBorder ? Math.max(1, Math.min(width, height) / 16) : 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (x < border || y < border || x >= width - border || y >= height - border) {
+                    row[x] = 0;
+                    continue;
+                }
+                int noise = random.nextInt(16);
+                int r = (x * 255 / width + noise) & 0xFF;
+                int g = (y * 255 / height + noise) & 0xFF;
+                int b = ((x + y) * 127 / (width + height) + noise) & 0xFF;
+                row[x] = 0xFF000000 | r << 16 | g << 8 | b;
+            }
+            img.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return img;
+    }
+}
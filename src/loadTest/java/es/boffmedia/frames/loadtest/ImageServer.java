@@ -0,0 +1,166 @@
+package es.boffmedia.frames.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import es.boffmedia.frames.core.ImageProcessor;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Stand-in for the image hosts players paste URLs from. Serves generated PNGs on localhost, each
+ * path prefix behaving like a different kind of host:
+ *
+ * <pre>
+ * /ok/&lt;id&gt;.png         the image at once
+ * /slow/&lt;id&gt;.png       the image trickled out over slowMillis
+ * /huge/&lt;id&gt;.png       hugeBytes of data with no Content-Length, past the download limit
+ * /truncated/&lt;id&gt;.png  the first half of the image, then the connection ends
+ * /redirect/&lt;id&gt;.png   a 302 to /ok/&lt;id&gt;.png
+ * </pre>
+ *
+ * Every id is a distinct image so uploads never hit the source cache or the dedup table.
+ */
+public final class ImageServer implements AutoCloseable {
+    public enum Kind { OK, SLOW, HUGE, TRUNCATED, REDIRECT }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final int width;
+    private final int height;
+    private final long slowMillis;
+    private final long hugeBytes;
+    private final Map<String, byte[]> images = new ConcurrentHashMap<>();
+
+    public ImageServer(int width, int height, long slowMillis, long hugeBytes) throws IOException {
+        this.width = width;
+        this.height = height;
+        this.slowMillis = slowMillis;
+        this.hugeBytes = hugeBytes;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        // Platform threads: a real image host does not share the plugin's virtual thread carriers
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "LoadTest-ImageServer");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String url(Kind kind, String id) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/" + kind.name().toLowerCase() + "/" + id + ".png";
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String[] parts = exchange.getRequestURI().getPath().split("/");
+            if (parts.length != 3 || !parts[2].endsWith(".png")) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            String id = parts[2].substring(0, parts[2].length() - 4);
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            switch (parts[1]) {
+                case "ok" -> send(exchange, image(id), image(id).length, 0);
+                case "slow" -> send(exchange, image(id), image(id).length, slowMillis);
+                case "truncated" -> send(exchange, image(id), image(id).length / 2, 0);
+                case "huge" -> sendHuge(exchange);
+                case "redirect" -> {
+                    exchange.getResponseHeaders().set("Location", "/ok/" + id + ".png");
+                    exchange.sendResponseHeaders(302, -1);
+                }
+                default -> exchange.sendResponseHeaders(404, -1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void send(HttpExchange exchange, byte[] data, int length, long spreadMillis) throws IOException, InterruptedException {
+        // A truncated body is sent chunked, so the client sees a well-formed response that simply ends early
+        exchange.sendResponseHeaders(200, length == data.length ? length : 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            int chunks = spreadMillis > 0 ? 20 : 1;
+            int step = Math.max(1, (length + chunks - 1) / chunks);
+            for (int off = 0; off < length; off += step) {
+                out.write(data, off, Math.min(step, length - off));
+                out.flush();
+                if (spreadMillis > 0) Thread.sleep(spreadMillis / chunks);
+            }
+        }
+    }
+
+    private void sendHuge(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(200, 0);
+        byte[] block = new byte[64 * 1024];
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (long sent = 0; sent < hugeBytes; sent += block.length) out.write(block);
+        } catch (IOException ignored) {
+            // the client stops reading once it is over its limit
+        }
+    }
+
+    private byte[] image(String id) {
+        return images.computeIfAbsent(id, k -> {
+            try {
+                return ImageProcessor.encodePng(render(k));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private BufferedImage render(String id) {
+        SplittableRandom random = new SplittableRandom(id.hashCode());
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] row = new int[width];
+        int tint = random.nextInt(0x1000000);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(24);
+                row[x] = 0xFF000000 | ((x * 255 / width + noise) & 0xFF) << 16 | ((y * 255 / height + noise) & 0xFF) << 8 | (tint & 0xFF);
+            }
+            img.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return img;
+    }
+
+    /** Parses a mix such as "ok=70,slow=10,huge=5,truncated=5,redirect=10" into weights per kind. */
+    public static Map<Kind, Integer> parseMix(String mix) {
+        Map<Kind, Integer> weights = new HashMap<>();
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split("=");
+            Kind kind = Kind.valueOf(kv[0].trim().toUpperCase());
+            weights.put(kind, Integer.parseInt(kv[1].trim()));
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() <= 0) throw new IllegalArgumentException("Empty mix: " + mix);
+        return weights;
+    }
+
+    /** Picks kinds in proportion to their weights, deterministically for a given upload number. */
+    public static Kind pick(Map<Kind, Integer> weights, int upload) {
+        int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+        int r = new SplittableRandom(upload * 0x9E3779B97F4A7C15L).nextInt(total);
+        for (Kind kind : Kind.values()) {
+            r -= weights.getOrDefault(kind, 0);
+            if (r < 0) return kind;
+        }
+        return Kind.OK;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,271 @@
+package es.boffmedia.frames.loadtest;
+
+import com.hypixel.hytale.protocol.BlockPosition;
+import es.boffmedia.frames.FramesConfig;
+import es.boffmedia.frames.core.FrameDocumentManager;
+import es.boffmedia.frames.core.FrameIndexManager;
+import es.boffmedia.frames.core.FrameInstance;
+import es.boffmedia.frames.core.IngestionPipeline;
+import es.boffmedia.frames.core.PersistenceWriter;
+import org.bson.BsonDocument;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Headless load test of the upload path: N simulated players upload images from {@link ImageServer}
+ * through {@link IngestionPipeline} (download, decode, transform, encode, asset and metadata writes,
+ * index registration) into a temporary mods root. Afterwards every JSON file is parsed back and every
+ * successful upload is looked up in the index.
+ *
+ * <pre>
+ * --uploads N        total uploads (200)
+ * --concurrency N    simulated players uploading at once (16)
+ * --size WxH         source image size (1024x768)
+ * --blocks N         frame width in blocks (2)
+ * --mix SPEC         weights per response kind (ok=70,slow=10,huge=5,truncated=5,redirect=10)
+ * --slow-millis N    how long a slow response takes (2000)
+ * --fsync BOOL       persistence.fsync for the run (true)
+ * --keep             keep the mods root for inspection
+ * </pre>
+ *
+ * Exits with status 1 if an upload ended differently than its response kind implies, or if any
+ * file or index entry is corrupt.
+ */
+public final class LoadTest {
+
+    private record Outcome(int upload, ImageServer.Kind kind, long nanos, String itemId, Throwable error, BlockPosition target) {}
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parse(args);
+        int uploads = Integer.parseInt(opts.getOrDefault("uploads", "200"));
+        int concurrency = Integer.parseInt(opts.getOrDefault("concurrency", "16"));
+        String[] size = opts.getOrDefault("size", "1024x768").split("x");
+        int blocks = Integer.parseInt(opts.getOrDefault("blocks", "2"));
+        Map<ImageServer.Kind, Integer> mix = ImageServer.parseMix(opts.getOrDefault("mix", "ok=70,slow=10,huge=5,truncated=5,redirect=10"));
+        long slowMillis = Long.parseLong(opts.getOrDefault("slow-millis", "2000"));
+        boolean fsync = Boolean.parseBoolean(opts.getOrDefault("fsync", "true"));
+
+        Path root = Files.createTempDirectory("frames-loadtest");
+        int maxBytes = 16 * 1024 * 1024;
+        Files.writeString(root.resolve("config.json"), "{"
+                + "\"ingest\": {\"maxQueued\": " + Math.max(64, concurrency) + "}, "
+                + "\"download\": {\"maxBytes\": " + maxBytes + "}, "
+                + "\"persistence\": {\"fsync\": " + fsync + "}, "
+                + "\"reconcile\": {\"enabled\": false}}");
+        FramesConfig.load(root);
+        FrameIndexManager.load(root);
+
+        List<Outcome> outcomes = new ArrayList<>(uploads);
+        long elapsed;
+        HeapSampler heap = new HeapSampler();
+        try (ImageServer images = new ImageServer(Integer.parseInt(size[0]), Integer.parseInt(size[1]), slowMillis, maxBytes + 4L * 1024 * 1024)) {
+            ConcurrentLinkedQueue<Outcome> done = new ConcurrentLinkedQueue<>();
+            AtomicInteger next = new AtomicInteger();
+            heap.start();
+            long start = System.nanoTime();
+            ExecutorService players = Executors.newFixedThreadPool(concurrency);
+            for (int p = 0; p < concurrency; p++) {
+                players.execute(() -> {
+                    for (int i; (i = next.getAndIncrement()) < uploads; ) done.add(upload(images, mix, i, blocks, root));
+                });
+            }
+            players.shutdown();
+            players.awaitTermination(1, TimeUnit.HOURS);
+            elapsed = System.nanoTime() - start;
+            heap.stop();
+            outcomes.addAll(done);
+        }
+
+        // Everything queued must be on disk before it is checked
+        FrameIndexManager.compact();
+        FrameDocumentManager.flush();
+        IngestionPipeline.shutdown();
+        PersistenceWriter.shutdown();
+
+        int failures = report(outcomes, elapsed, concurrency, heap);
+        failures += verifyIndex(outcomes, root);
+        failures += verifyJson(root);
+        System.out.println(failures == 0 ? "PASS" : "FAIL: " + failures + " problems");
+
+        FrameIndexManager.shutdown();
+        if (opts.containsKey("keep")) System.out.println("Mods root kept at " + root);
+        else deleteTree(root);
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static Outcome upload(ImageServer images, Map<ImageServer.Kind, Integer> mix, int i, int blocks, Path root) {
+        ImageServer.Kind kind = ImageServer.pick(mix, i);
+        // One block per upload along a line, so every upload owns its coordinate in the index
+        BlockPosition target = new BlockPosition(i * 4, 64, 0);
+        IngestionPipeline.Request req = new IngestionPipeline.Request(images.url(kind, "img" + i), "load_" + i, blocks,
+                "CENTERED", "00000000-0000-0000-0000-" + String.format("%012d", i % 50), "loadtest", target, 0);
+        long start = System.nanoTime();
+        while (true) {
+            try {
+                IngestionPipeline.Result result = IngestionPipeline.submit(req, root, Runnable::run, (r, err) -> { }).join();
+                return new Outcome(i, kind, System.nanoTime() - start, result.itemId, null, target);
+            } catch (RejectedExecutionException e) {
+                // Pipeline full: back off like a player retrying
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return new Outcome(i, kind, System.nanoTime() - start, null, ie, target);
+                }
+            } catch (CompletionException e) {
+                return new Outcome(i, kind, System.nanoTime() - start, null, e.getCause() == null ? e : e.getCause(), target);
+            }
+        }
+    }
+
+    private static boolean shouldSucceed(ImageServer.Kind kind) {
+        return kind != ImageServer.Kind.HUGE && kind != ImageServer.Kind.TRUNCATED;
+    }
+
+    private static int report(List<Outcome> outcomes, long elapsedNanos, int concurrency, HeapSampler heap) {
+        int unexpected = 0;
+        Map<ImageServer.Kind, int[]> byKind = new EnumMap<>(ImageServer.Kind.class);
+        List<Long> ok = new ArrayList<>();
+        for (Outcome o : outcomes) {
+            int[] counts = byKind.computeIfAbsent(o.kind, k -> new int[2]);
+            counts[o.error == null ? 0 : 1]++;
+            if (o.error == null) ok.add(o.nanos);
+            if ((o.error == null) != shouldSucceed(o.kind)) {
+                unexpected++;
+                System.out.println("Unexpected " + (o.error == null ? "success" : "failure: " + o.error) + " for " + o.kind + " upload " + o.upload);
+            }
+        }
+        long[] latencies = ok.stream().mapToLong(Long::longValue).sorted().toArray();
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%d uploads by %d players in %.1f s: %.1f uploads/s, %d succeeded%n",
+                outcomes.size(), concurrency, seconds, outcomes.size() / seconds, latencies.length);
+        System.out.printf("Latency of successful uploads: p50 %.0f ms, p99 %.0f ms, max %.0f ms%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.99), latencies.length == 0 ? 0.0 : latencies[latencies.length - 1] / 1e6);
+        for (Map.Entry<ImageServer.Kind, int[]> e : byKind.entrySet()) {
+            System.out.printf("  %-9s %5d ok %5d failed%n", e.getKey().name().toLowerCase(), e.getValue()[0], e.getValue()[1]);
+        }
+        System.out.printf("Peak heap: %.1f MB sampled, at most %.1f MB by pool peaks%n",
+                heap.sampledPeakBytes() / (1024.0 * 1024.0), heap.poolPeakBytes() / (1024.0 * 1024.0));
+        return unexpected;
+    }
+
+    private static double percentile(long[] sorted, double q) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(q * sorted.length) - 1)] / 1e6;
+    }
+
+    /** Every successful upload must be in the index at its coordinate, with a metadata file on disk. */
+    private static int verifyIndex(List<Outcome> outcomes, Path root) {
+        int problems = 0;
+        for (Outcome o : outcomes) {
+            if (o.error != null) continue;
+            FrameInstance inst = FrameIndexManager.findInstanceAt("loadtest", o.target.x, o.target.y, o.target.z, root);
+            if (inst == null || !inst.itemId.equals(o.itemId)) {
+                problems++;
+                System.out.println("Index entry for upload " + o.upload + " is " + (inst == null ? "missing" : inst.itemId + " instead of " + o.itemId));
+            } else if (!Files.isRegularFile(root.resolve("Frames").resolve(inst.metaFile))) {
+                problems++;
+                System.out.println("Metadata file " + inst.metaFile + " for upload " + o.upload + " is missing");
+            }
+        }
+        System.out.println("Index: " + FrameIndexManager.size() + " instances, " + problems + " problems");
+        return problems;
+    }
+
+    /** Parses every JSON and blockymodel file and reports any that are empty, truncated or interleaved. */
+    private static int verifyJson(Path root) throws IOException {
+        int files = 0;
+        int corrupt = 0;
+        try (Stream<Path> walk = Files.walk(root)) {
+            for (Path p : walk.filter(Files::isRegularFile).toList()) {
+                String name = p.getFileName().toString();
+                if (!name.endsWith(".json") && !name.endsWith(".blockymodel")) continue;
+                files++;
+                try {
+                    BsonDocument.parse(Files.readString(p));
+                } catch (Exception e) {
+                    corrupt++;
+                    System.out.println("Corrupted JSON: " + root.relativize(p) + ": " + e.getMessage());
+                }
+            }
+        }
+        System.out.println("JSON: " + files + " files parsed, " + corrupt + " corrupted");
+        return corrupt;
+    }
+
+    /** Tracks the highest heap use seen, from the pools' own peak counters and periodic samples. */
+    private static final class HeapSampler {
+        private final List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(p -> p.getType() == MemoryType.HEAP).toList();
+        private volatile boolean running;
+        private volatile long peak;
+        private Thread thread;
+
+        void start() {
+            pools.forEach(MemoryPoolMXBean::resetPeakUsage);
+            running = true;
+            thread = Thread.ofPlatform().daemon().name("LoadTest-Heap").start(() -> {
+                while (running) {
+                    peak = Math.max(peak, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            thread.join();
+        }
+
+        long sampledPeakBytes() {
+            return peak;
+        }
+
+        /** Sum of each pool's own peak; an upper bound, as the pools need not peak at the same moment. */
+        long poolPeakBytes() {
+            return pools.stream().mapToLong(p -> p.getPeakUsage().getUsed()).sum();
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("Unexpected argument " + args[i] + " in " + Arrays.toString(args));
+            String key = args[i].substring(2);
+            if (key.equals("keep")) opts.put(key, "true");
+            else if (i + 1 < args.length) opts.put(key, args[++i]);
+            else throw new IllegalArgumentException("Missing value for --" + key);
+        }
+        return opts;
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        try (Stream<Path> walk = Files.walk(root)) {
+            for (Path p : walk.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+}
@@ -5,6 +5,14 @@ public final class AssetJsonBuilder {
     private AssetJsonBuilder() {}
 
     public static String buildBlockymodel(String baseName, int sizeX, int sizeY, int yPosition, int zPosition, int offsetX, int offsetY, int offsetZ) {
+        return buildBlockymodel(baseName, sizeX, sizeY, yPosition, zPosition, offsetX, offsetY, offsetZ, 0, 0);
+    }
+
+    /**
+     * Same as above, with every face's UV origin moved to (uvX, uvY) so the model samples its region of an atlas page.
+     */
+    public static String buildBlockymodel(String baseName, int sizeX, int sizeY, int yPosition, int zPosition, int offsetX, int offsetY, int offsetZ, int uvX, int uvY) {
+        String face = "{ \"offset\": {\"x\": " + uvX + ", \"y\": " + uvY + "}, \"angle\": 0 }";
         return "{\n" +
                 "  \"nodes\": [\n" +
                 "    {\n" +
@@ -22,11 +30,11 @@ public final class AssetJsonBuilder {
                 "          \"isStaticBox\": true\n" +
                 "        },\n" +
                 "        \"textureLayout\": {\n" +
-                "          \"back\": { \"angle\": 0 },\n" +
-                "          \"right\": { \"angle\": 0 },\n" +
-                "          \"front\": { \"angle\": 0 },\n" +
-                "          \"left\": { \"angle\": 0 },\n" +
-                "          \"top\": { \"angle\": 0 }\n" +
+                "          \"back\": " + face + ",\n" +
+                "          \"right\": " + face + ",\n" +
+                "          \"front\": " + face + ",\n" +
+                "          \"left\": " + face + ",\n" +
+                "          \"top\": " + face + "\n" +
                 "        },\n" +
                 "        \"unwrapMode\": \"custom\",\n" +
                 "        \"visible\": true,\n" +
@@ -40,7 +48,25 @@ public final class AssetJsonBuilder {
                 "}\n";
     }
 
+    /**
+     * Name of the shared model for the given geometry, relative to Common/Blocks/Frames. Every input of
+     * {@link #buildBlockymodel} except the base name is part of it, so frames with the same pixel size,
+     * block width, alignment and atlas position use one model file.
+     */
+    public static String sharedModelName(int sizeX, int sizeY, int yPosition, int zPosition, int offsetX, int offsetY, int offsetZ, int uvX, int uvY) {
+        String name = "Models/Frame_" + sizeX + "x" + sizeY + "_p" + yPosition + "_" + zPosition + "_o" + offsetX + "_" + offsetY + "_" + offsetZ;
+        if (uvX != 0 || uvY != 0) name += "_uv" + uvX + "_" + uvY;
+        return name + ".blockymodel";
+    }
+
     public static String buildItemJson(String baseName, String texturePath, float scaleFactor) {
+        return buildItemJson(baseName, "Blocks/Frames/" + baseName + ".blockymodel", texturePath, scaleFactor);
+    }
+
+    /**
+     * Same as above, with CustomModel pointing at modelPath (relative to Common) instead of the item's own model.
+     */
+    public static String buildItemJson(String baseName, String modelPath, String texturePath, float scaleFactor) {
         return "{\n" +
                 "  \"TranslationProperties\": {\n" +
                 "    \"Name\": \"frames." + baseName + ".name\",\n" +
@@ -51,7 +77,7 @@ public final class AssetJsonBuilder {
                 "    \"Material\": \"Solid\",\n" +
                 "    \"DrawType\": \"Model\",\n" +
                 "    \"Opacity\": \"Transparent\",\n" +
-                "    \"CustomModel\": \"Blocks/Frames/" + baseName + ".blockymodel\",\n" +
+                "    \"CustomModel\": \"" + modelPath + "\",\n" +
                 "    \"Flags\": { \"IsUsable\": true },\n" +
                 "    \"CustomModelTexture\": [ { \"Texture\": \"" + texturePath + "\" } ],\n" +
                 "    \"HitboxType\": \"Painting\",\n" +
@@ -18,21 +18,38 @@ public final class FileHelper {
 
     public static void loadFiles() {
         Frames.LOGGER.atInfo().log("Mods folder exists: " + Files.exists(MODS_ROOT));
+        FramesConfig.load(MODS_ROOT);
+        PngEncoder.cleanTempFiles(MODS_ROOT);
         try {
             ResourceCopier.ensureManifestExists(MODS_ROOT);
-            ResourceCopier.copyResourceDirectory("/Common", MODS_ROOT.resolve("Common"));
-            ResourceCopier.copyResourceDirectory("/Server", MODS_ROOT.resolve("Server"));
+            ResourceCopier.syncResources(MODS_ROOT);
 
             for (String sk : FRAME_SIZES) {
                 FrameDocumentManager.ensureDefaultJsonExists(sk, MODS_ROOT);
                 BsonDocument doc = FrameDocumentManager.readDocument(sk, MODS_ROOT);
                 Frames.LOGGER.atInfo().log("Document loaded for " + sk + ": " + (doc != null));
             }
+
+            FrameIndexManager.load(MODS_ROOT);
+            FrameCatalog.load(MODS_ROOT);
+            AssetReconciler.start(MODS_ROOT);
+            MetricsHttpServer.start();
         } catch (Exception e) {
             Frames.LOGGER.atSevere().withCause(e).log("Failed to ensure or load frame json: " + e.getMessage());
         }
     }
 
+    public static void shutdown() {
+        MetricsHttpServer.shutdown();
+        IngestionPipeline.shutdown();
+        PngEncoder.shutdown();
+        FrameIndexManager.shutdown();
+        FrameCatalog.shutdown();
+        FrameDocumentManager.flush();
+        BackgroundScheduler.shutdown();
+        PersistenceWriter.shutdown();
+    }
+
     public static void ensureManifestExists() {
         ResourceCopier.ensureManifestExists(MODS_ROOT);
     }
@@ -69,20 +86,53 @@ public final class FileHelper {
         FrameDocumentManager.prettyPrintAndSave(doc, sizeKey, MODS_ROOT);
     }
 
+    /** Frees the atlas region of a deleted frame item in the background. */
+    public static void releaseAtlasSlot(String itemId) {
+        BackgroundScheduler.get().execute(() -> TextureAtlas.remove(itemId, MODS_ROOT));
+    }
+
     public static boolean removeImageState(String sizeKey, String stateKey) throws IOException {
         return FrameDocumentManager.removeImageState(sizeKey, stateKey, MODS_ROOT);
     }
 
-    public static void writeFrameMetadata(String itemId, String name, String url, int x, int y, int z, int blocksX, String alignment, String creatorUuid, boolean share) throws IOException {
-        FrameIndexManager.writeFrameMetadata(itemId, name, url, x, y, z, blocksX, alignment, creatorUuid, share, MODS_ROOT);
+    /** Removes stateKey from the frame json that defines it; returns that size key, or null if none does. */
+    public static String removeImageState(String stateKey) throws IOException {
+        return FrameDocumentManager.removeImageState(stateKey, MODS_ROOT);
     }
 
-    public static void registerFrameInstanceInIndex(String itemId, String metaFileName, int x, int y, int z, int blocksX, String creatorUuid, boolean share) throws IOException {
-        FrameIndexManager.registerFrameInstanceInIndex(itemId, metaFileName, x, y, z, blocksX, creatorUuid, share, MODS_ROOT);
+    public static void writeFrameMetadata(String itemId, String name, String url, String world, int x, int y, int z, int blocksX, String alignment, String creatorUuid, boolean share) throws IOException {
+        FrameIndexManager.writeFrameMetadata(itemId, name, url, world, x, y, z, blocksX, alignment, creatorUuid, share, MODS_ROOT);
     }
 
-    public static void removeInstancesAtCoords(int x, int y, int z) throws IOException {
-        FrameIndexManager.removeInstancesAtCoords(x, y, z, MODS_ROOT);
+    public static void registerFrameInstanceInIndex(String itemId, String metaFileName, String world, int x, int y, int z, int blocksX, String creatorUuid, boolean share) throws IOException {
+        FrameIndexManager.registerFrameInstanceInIndex(itemId, metaFileName, world, x, y, z, blocksX, creatorUuid, share, MODS_ROOT);
+    }
+
+    public static void removeInstancesAtCoords(String world, int x, int y, int z) throws IOException {
+        FrameIndexManager.removeInstancesAtCoords(world, x, y, z, MODS_ROOT);
+    }
+
+    public static FrameInstance findFrameInstanceAt(String world, int x, int y, int z) {
+        return FrameIndexManager.findInstanceAt(world, x, y, z, MODS_ROOT);
+    }
+
+    public static java.util.List<FrameInstance> frameInstancesOf(String itemId) {
+        return FrameIndexManager.instancesOf(itemId, MODS_ROOT);
+    }
+
+    /** Summaries of all frame metadata files, ordered by item id. */
+    public static java.util.List<FrameCatalog.Summary> frameCatalog() {
+        return FrameCatalog.entries(MODS_ROOT);
+    }
+
+    /** Summary of the metadata file an index entry refers to, or null if there is none. */
+    public static FrameCatalog.Summary frameSummary(String metaFileName) {
+        return FrameCatalog.forFile(metaFileName, MODS_ROOT);
+    }
+
+    /** Drops a metadata file the caller has just deleted from the catalog. */
+    public static void forgetFrameMetadata(Path metaFile) {
+        FrameCatalog.remove(metaFile);
     }
 
     public static BufferedImage downloadImage(String url) throws IOException {
@@ -97,6 +147,10 @@ public final class FileHelper {
         return ImageProcessor.saveImageToMods(img, fileName, sizeKey, MODS_ROOT);
     }
 
+    public static java.util.concurrent.CompletableFuture<IngestionPipeline.Result> submitImageIngest(IngestionPipeline.Request request, java.util.concurrent.Executor applyExecutor, java.util.function.BiConsumer<IngestionPipeline.Result, Throwable> onApply) {
+        return IngestionPipeline.submit(request, MODS_ROOT, applyExecutor, onApply);
+    }
+
     public static String addImageAsItemFromImage(BufferedImage image, String providedName, int blocksX, int blocksY, String alignment) throws IOException {
         return FrameItemGenerator.addImageAsItemFromImage(image, providedName, blocksX, blocksY, alignment, MODS_ROOT);
     }
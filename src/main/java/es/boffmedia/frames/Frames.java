@@ -24,5 +24,15 @@ public class Frames extends JavaPlugin {
 
         FileHelper.loadFiles();
         this.getCommandRegistry().registerCommand(new es.boffmedia.frames.commands.ListFramesCommand());
+        this.getCommandRegistry().registerCommand(new es.boffmedia.frames.commands.ImportFramesCommand());
+        this.getCommandRegistry().registerCommand(new es.boffmedia.frames.commands.FlushFramePermsCommand());
+        this.getCommandRegistry().registerCommand(new es.boffmedia.frames.commands.ReconcileFramesCommand());
+        this.getCommandRegistry().registerCommand(new es.boffmedia.frames.commands.FramesStatsCommand());
+    }
+
+    @Override
+    protected void shutdown() {
+        LOGGER.atInfo().log("Shutting down plugin " + this.getName());
+        FileHelper.shutdown();
     }
 }
\ No newline at end of file
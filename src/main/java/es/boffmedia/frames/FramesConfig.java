@@ -0,0 +1,233 @@
+package es.boffmedia.frames;
+
+import org.bson.BsonBoolean;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.json.JsonWriterSettings;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Plugin settings read from mods/BoffmediaFrames/config.json.
+ * Missing keys are filled in from the defaults below and written back so admins can see every option.
+ */
+public final class FramesConfig {
+    private FramesConfig() {}
+
+    private static volatile BsonDocument values = defaults();
+
+    private static BsonDocument defaults() {
+        BsonDocument index = new BsonDocument();
+        // Compact the journal into FramesIndex.json once it grows past this many bytes...
+        index.append("journalMaxBytes", new BsonInt64(1024L * 1024L));
+        // ...or once its oldest uncompacted record is this old
+        index.append("journalMaxAgeSeconds", new BsonInt32(300));
+        index.append("compactionCheckSeconds", new BsonInt32(10));
+        // fsync every journal append instead of once per compaction check
+        index.append("journalFsync", new BsonBoolean(false));
+        // Snapshot format: "json" (FramesIndex.json), "binary" (memory-mapped FramesIndex.bin) or
+        // "partitioned" (one file per world chunk under Index/, loaded on first lookup in that chunk)
+        index.append("format", new BsonString("json"));
+        // With the partitioned format, drop a chunk's partition from memory after this long unused
+        index.append("partitionIdleSeconds", new BsonInt32(120));
+
+        BsonDocument ingest = new BsonDocument();
+        // Uploads accepted at once across all players; further uploads are refused until some finish
+        ingest.append("maxQueued", new BsonInt32(64));
+        // Concurrent downloads and disk writes (virtual threads)
+        ingest.append("maxConcurrentIo", new BsonInt32(16));
+        // Threads for decode/transform/encode; 0 uses half the available cores
+        ingest.append("cpuThreads", new BsonInt32(0));
+
+        BsonDocument apply = new BsonDocument();
+        // Polling for a freshly generated block asset starts at initialDelayMillis and backs off to maxDelayMillis
+        apply.append("initialDelayMillis", new BsonInt64(250));
+        apply.append("maxDelayMillis", new BsonInt64(5000));
+        apply.append("backoffMultiplier", new BsonDouble(2.0));
+        // Give up replacing the block if the asset is still missing after this long
+        apply.append("deadlineSeconds", new BsonInt64(120));
+
+        BsonDocument sourceCache = new BsonDocument();
+        // Original image bytes are kept under Cache/Sources so re-uploads of a URL skip the download
+        sourceCache.append("enabled", new BsonBoolean(true));
+        // Least recently used sources are deleted once the cache grows past this size
+        sourceCache.append("maxBytes", new BsonInt64(256L * 1024L * 1024L));
+        // Sources downloaded longer ago than this are downloaded again, so changed images are picked up; 0 keeps them until evicted
+        sourceCache.append("maxAgeMinutes", new BsonInt32(60));
+
+        BsonDocument download = new BsonDocument();
+        // Responses larger than this are refused without being buffered
+        download.append("maxBytes", new BsonInt32(16 * 1024 * 1024));
+        download.append("timeoutSeconds", new BsonInt32(20));
+
+        BsonDocument decode = new BsonDocument();
+        // Images whose header reports more pixels than this are rejected before decoding
+        decode.append("maxSourcePixels", new BsonInt64(64_000_000L));
+        // Larger images are subsampled while decoding down to about this many pixels...
+        decode.append("maxDecodedPixels", new BsonInt64(2048L * 2048L));
+        // ...and further if needed so a single upload never needs more heap than this
+        decode.append("maxHeapBytes", new BsonInt64(64L * 1024L * 1024L));
+
+        BsonDocument resolution = new BsonDocument();
+        // Uploaded textures are downscaled to at most this many pixels per block (0 keeps native resolution)
+        resolution.append("pixelsPerBlock", new BsonInt32(64));
+        // Budget for players with boffmedia.frames.hires (and admins)
+        resolution.append("highResPixelsPerBlock", new BsonInt32(256));
+
+        BsonDocument png = new BsonDocument();
+        // Deflate level 0-9 and strategy (FILTERED, DEFAULT or HUFFMAN_ONLY)
+        png.append("level", new BsonInt32(6));
+        png.append("strategy", new BsonString("FILTERED"));
+        // Row filter: NONE, SUB, UP, AVERAGE, PAETH or ADAPTIVE (best per row)
+        png.append("filter", new BsonString("ADAPTIVE"));
+        // Images are compressed in blocks of about this many bytes, in parallel on png.threads (0 = all cores)
+        png.append("chunkBytes", new BsonInt32(128 * 1024));
+        png.append("threads", new BsonInt32(0));
+
+        BsonDocument atlas = new BsonDocument();
+        // Pack small frame textures into shared pages under Common/Blocks/Frames/Atlas
+        atlas.append("enabled", new BsonBoolean(false));
+        atlas.append("pageSize", new BsonInt32(1024));
+        // Textures larger than this (in either direction) keep their own PNG
+        atlas.append("maxImageSize", new BsonInt32(128));
+
+        BsonDocument imports = new BsonDocument();
+        // Images generated at once by /importframes; 0 uses all available cores
+        imports.append("parallelism", new BsonInt32(0));
+
+        BsonDocument ui = new BsonDocument();
+        // Rows shown per page in the frame list pages
+        ui.append("listPageSize", new BsonInt32(25));
+
+        BsonDocument permissions = new BsonDocument();
+        // Seconds a player's permission decisions are reused; 0 checks PermissionsModule every time
+        permissions.append("cacheTtlSeconds", new BsonInt32(5));
+
+        BsonDocument documents = new BsonDocument();
+        // Changes to the Boff_Frame_<size>.json state documents are written out together after this delay
+        documents.append("flushDelayMillis", new BsonInt32(250));
+
+        BsonDocument persistence = new BsonDocument();
+        // Writes submitted within this window are committed (and synced) together
+        persistence.append("commitWindowMillis", new BsonInt32(10));
+        // Sync files and directories to disk on every commit
+        persistence.append("fsync", new BsonBoolean(true));
+
+        BsonDocument reconcile = new BsonDocument();
+        // Periodically move generated assets no frame item references any more into Quarantine/
+        reconcile.append("enabled", new BsonBoolean(true));
+        reconcile.append("intervalMinutes", new BsonInt32(60));
+        // An orphan is only quarantined once it has been orphaned, and none of its files changed, for this many hours
+        reconcile.append("graceHours", new BsonInt32(24));
+        // Quarantined files are deleted after this many days (0 keeps them)
+        reconcile.append("quarantineDays", new BsonInt32(7));
+        // A pass works in slices of at most sliceMillis every tickMillis on the background thread
+        reconcile.append("sliceMillis", new BsonInt32(10));
+        reconcile.append("tickMillis", new BsonInt32(250));
+
+        BsonDocument metrics = new BsonDocument();
+        // Serve Prometheus text metrics at http://<httpBind>:<httpPort>/metrics
+        metrics.append("httpEnabled", new BsonBoolean(false));
+        metrics.append("httpBind", new BsonString("127.0.0.1"));
+        metrics.append("httpPort", new BsonInt32(9465));
+
+        return new BsonDocument()
+                .append("index", index)
+                .append("ingest", ingest)
+                .append("apply", apply)
+                .append("sourceCache", sourceCache)
+                .append("download", download)
+                .append("decode", decode)
+                .append("resolution", resolution)
+                .append("png", png)
+                .append("atlas", atlas)
+                .append("import", imports)
+                .append("ui", ui)
+                .append("permissions", permissions)
+                .append("documents", documents)
+                .append("persistence", persistence)
+                .append("reconcile", reconcile)
+                .append("metrics", metrics);
+    }
+
+    public static void load(Path modsRoot) {
+        Path file = modsRoot.resolve("config.json");
+        BsonDocument merged = defaults();
+        boolean changed = true;
+        try {
+            if (Files.exists(file)) {
+                BsonDocument onDisk = BsonDocument.parse(Files.readString(file));
+                changed = mergeInto(onDisk, merged);
+                merged = onDisk;
+            }
+        } catch (Exception e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Failed to read config.json, using defaults: " + e.getMessage());
+            changed = false;
+        }
+        values = merged;
+
+        if (changed) {
+            try {
+                Files.createDirectories(modsRoot);
+                JsonWriterSettings settings = JsonWriterSettings.builder().indent(true).build();
+                Files.writeString(file, merged.toJson(settings));
+            } catch (Exception e) {
+                Frames.LOGGER.atWarning().withCause(e).log("Failed to write config.json: " + e.getMessage());
+            }
+        }
+    }
+
+    // Adds keys present in defaults but missing from target; returns true if anything was added
+    private static boolean mergeInto(BsonDocument target, BsonDocument defaults) {
+        boolean changed = false;
+        for (String key : defaults.keySet()) {
+            BsonValue def = defaults.get(key);
+            if (!target.containsKey(key)) {
+                target.append(key, def);
+                changed = true;
+            } else if (def.isDocument() && target.get(key).isDocument()) {
+                changed |= mergeInto(target.getDocument(key), def.asDocument());
+            }
+        }
+        return changed;
+    }
+
+    private static BsonValue lookup(String path) {
+        BsonValue current = values;
+        for (String part : path.split("\\.")) {
+            if (current == null || !current.isDocument()) return null;
+            current = current.asDocument().get(part);
+        }
+        return current;
+    }
+
+    public static long getLong(String path, long def) {
+        BsonValue v = lookup(path);
+        return v != null && v.isNumber() ? v.asNumber().longValue() : def;
+    }
+
+    public static int getInt(String path, int def) {
+        BsonValue v = lookup(path);
+        return v != null && v.isNumber() ? v.asNumber().intValue() : def;
+    }
+
+    public static double getDouble(String path, double def) {
+        BsonValue v = lookup(path);
+        return v != null && v.isNumber() ? v.asNumber().doubleValue() : def;
+    }
+
+    public static boolean getBoolean(String path, boolean def) {
+        BsonValue v = lookup(path);
+        return v != null && v.isBoolean() ? v.asBoolean().getValue() : def;
+    }
+
+    public static String getString(String path, String def) {
+        BsonValue v = lookup(path);
+        return v != null && v.isString() ? v.asString().getValue() : def;
+    }
+}
@@ -0,0 +1,84 @@
+package es.boffmedia.frames;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Short-lived per-player cache of permission decisions made by {@link PermissionsUtil}. A decision
+ * is reused for permissions.cacheTtlSeconds, so permission or group changes apply after at most
+ * that long, or immediately after {@link #invalidate} / {@link #flush}.
+ */
+public final class PermissionCache {
+    private PermissionCache() {}
+
+    private static final int PRUNE_THRESHOLD = 1024;
+
+    private static final class Decisions {
+        final long expiresAt;
+        final Map<String, Boolean> byNode = new ConcurrentHashMap<>();
+
+        Decisions(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final Map<UUID, Decisions> byPlayer = new ConcurrentHashMap<>();
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    private static long ttlMillis() {
+        return Math.max(0, FramesConfig.getInt("permissions.cacheTtlSeconds", 5)) * 1000L;
+    }
+
+    /** Returns the cached decision for (uuid, key), computing and caching it on a miss. */
+    static boolean get(UUID uuid, String key, BooleanSupplier compute) {
+        long ttl = ttlMillis();
+        if (ttl == 0 || uuid == null) {
+            misses.increment();
+            return compute.getAsBoolean();
+        }
+        long now = System.currentTimeMillis();
+        Decisions d = byPlayer.get(uuid);
+        if (d == null || d.expiresAt <= now) {
+            if (byPlayer.size() >= PRUNE_THRESHOLD) byPlayer.values().removeIf(e -> e.expiresAt <= now);
+            d = new Decisions(now + ttl);
+            byPlayer.put(uuid, d);
+        }
+        Boolean cached = d.byNode.get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        boolean decision = compute.getAsBoolean();
+        d.byNode.put(key, decision);
+        return decision;
+    }
+
+    /** Drops the cached decisions of one player, e.g. after changing their groups. */
+    public static void invalidate(UUID uuid) {
+        if (uuid != null) byPlayer.remove(uuid);
+    }
+
+    /** Drops every cached decision and returns how many players had entries. */
+    public static int flush() {
+        int n = byPlayer.size();
+        byPlayer.clear();
+        return n;
+    }
+
+    public static long hits() {
+        return hits.sum();
+    }
+
+    public static long misses() {
+        return misses.sum();
+    }
+
+    public static int size() {
+        return byPlayer.size();
+    }
+}
@@ -3,6 +3,7 @@ package es.boffmedia.frames;
 import com.hypixel.hytale.server.core.command.system.CommandSender;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.permissions.PermissionsModule;
+import es.boffmedia.frames.core.FramesMetrics;
 
 import javax.annotation.Nonnull;
 import java.util.Set;
@@ -17,6 +18,12 @@ public final class PermissionsUtil {
     // Permission node to allow opening the frame UI (default: allowed for all players)
     public static final String PERMISSION_OPEN_GUI = "boffmedia.frames.open";
 
+    // Permission node to upload at resolution.highResPixelsPerBlock instead of the default texture budget
+    public static final String PERMISSION_HIGH_RES = "boffmedia.frames.hires";
+
+    // Permission node to run /importframes
+    public static final String PERMISSION_IMPORT = "boffmedia.frames.import";
+
     private PermissionsUtil() {}
 
     public static boolean hasNegatedPermission(@Nonnull final Player player, @Nonnull final String permission) {
@@ -26,34 +33,47 @@ public final class PermissionsUtil {
     }
 
     public static boolean isAdmin(@Nonnull final Player player) {
-        final PermissionsModule perms = PermissionsModule.get();
         final UUID uuid = ((CommandSender) player).getUuid();
-        final Set<String> groups = perms.getGroupsForUser(uuid);
+        return PermissionCache.get(uuid, "#OP", () -> isAdminUncached(uuid));
+    }
+
+    // Reads the groups directly; isAdmin and check call it when their cached decision is missing
+    private static boolean isAdminUncached(@Nonnull final UUID uuid) {
+        final Set<String> groups = PermissionsModule.get().getGroupsForUser(uuid);
         return groups != null && groups.contains("OP");
     }
 
-    public static boolean canDeleteFrames(@Nonnull final Player player) {
-        if (isAdmin(player)) return true;
-        final PermissionsModule perms = PermissionsModule.get();
+    // OP always passes, an explicit "-node" denies, otherwise the node itself (or the default) decides
+    private static boolean check(@Nonnull final Player player, @Nonnull final String permission, final boolean allowByDefault) {
         final UUID uuid = ((CommandSender) player).getUuid();
-        if (hasNegatedPermission(player, PERMISSION_DELETE_FRAME)) return false;
-        return perms.hasPermission(uuid, PERMISSION_DELETE_FRAME);
+        final boolean allowed = PermissionCache.get(uuid, permission, () -> {
+            if (isAdminUncached(uuid)) return true;
+            final PermissionsModule perms = PermissionsModule.get();
+            if (perms.hasPermission(uuid, "-" + permission)) return false;
+            return allowByDefault || perms.hasPermission(uuid, permission);
+        });
+        if (!allowed) FramesMetrics.permissionDenied(permission);
+        return allowed;
+    }
+
+    public static boolean canDeleteFrames(@Nonnull final Player player) {
+        return check(player, PERMISSION_DELETE_FRAME, false);
     }
 
     public static boolean canUploadFrames(@Nonnull final Player player) {
-        if (isAdmin(player)) return true;
-        final PermissionsModule perms = PermissionsModule.get();
-        final UUID uuid = ((CommandSender) player).getUuid();
-        if (hasNegatedPermission(player, PERMISSION_UPLOAD_FRAME)) return false;
-        return perms.hasPermission(uuid, PERMISSION_UPLOAD_FRAME);
+        return check(player, PERMISSION_UPLOAD_FRAME, false);
+    }
+
+    public static boolean canUploadHighRes(@Nonnull final Player player) {
+        return check(player, PERMISSION_HIGH_RES, false);
+    }
+
+    public static boolean canImportFrames(@Nonnull final Player player) {
+        return check(player, PERMISSION_IMPORT, false);
     }
 
     public static boolean canOpenGui(@Nonnull final Player player) {
-        if (isAdmin(player)) return true;
-        final PermissionsModule perms = PermissionsModule.get();
-        final UUID uuid = ((CommandSender) player).getUuid();
-        if (hasNegatedPermission(player, PERMISSION_OPEN_GUI)) return false;
         // Default: allow opening GUI for all players unless explicitly denied
-        return true;
+        return check(player, PERMISSION_OPEN_GUI, true);
     }
 }
@@ -0,0 +1,42 @@
+package es.boffmedia.frames.commands;
+
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.CommandSender;
+import com.hypixel.hytale.server.core.command.system.basecommands.AbstractPlayerCommand;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import es.boffmedia.frames.PermissionCache;
+import es.boffmedia.frames.PermissionsUtil;
+
+import javax.annotation.Nonnull;
+
+public class FlushFramePermsCommand extends AbstractPlayerCommand {
+
+    public FlushFramePermsCommand() {
+        super("flushframeperms", "Clear cached frame permission decisions and show cache hit rate (admin)");
+    }
+
+    @Override
+    protected void execute(@Nonnull CommandContext commandContext, @Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+        Player sender = commandContext.senderAs(Player.class);
+
+        // Checked without the cache so a freshly revoked OP cannot use a stale decision
+        PermissionCache.invalidate(((CommandSender) sender).getUuid());
+        if (!PermissionsUtil.isAdmin(sender)) {
+            sender.sendMessage(Message.raw("You do not have permission to run this command."));
+            return;
+        }
+
+        long hits = PermissionCache.hits();
+        long misses = PermissionCache.misses();
+        int flushed = PermissionCache.flush();
+        double rate = hits + misses == 0 ? 0 : 100.0 * hits / (hits + misses);
+        sender.sendMessage(Message.raw(String.format("Flushed cached permissions for %d players. Lookups: %d hits, %d misses (%.1f%% hit rate).",
+                flushed, hits, misses, rate)));
+    }
+}
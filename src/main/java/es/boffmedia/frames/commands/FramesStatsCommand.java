@@ -0,0 +1,55 @@
+package es.boffmedia.frames.commands;
+
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.basecommands.AbstractPlayerCommand;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import es.boffmedia.frames.PermissionsUtil;
+import es.boffmedia.frames.core.FramesMetrics;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+
+public class FramesStatsCommand extends AbstractPlayerCommand {
+
+    public FramesStatsCommand() {
+        super("framesstats", "Show upload stage latencies, counters and gauges (admin)");
+    }
+
+    @Override
+    protected void execute(@Nonnull CommandContext commandContext, @Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+        Player sender = commandContext.senderAs(Player.class);
+
+        if (!PermissionsUtil.isAdmin(sender)) {
+            sender.sendMessage(Message.raw("You do not have permission to run this command."));
+            return;
+        }
+
+        sender.sendMessage(Message.raw("Stage latencies (count, mean, p50, p95):"));
+        for (FramesMetrics.Histogram h : FramesMetrics.stages()) {
+            if (h.count() == 0) continue;
+            sender.sendMessage(Message.raw(String.format("  %s: %d, %.1f ms, <=%s, <=%s",
+                    h.stage(), h.count(), h.meanMillis(), millis(h.quantileMillis(0.5)), millis(h.quantileMillis(0.95)))));
+        }
+        StringBuilder counters = new StringBuilder("Counters:");
+        for (Map.Entry<String, Long> e : FramesMetrics.counterValues().entrySet()) {
+            counters.append(' ').append(e.getKey().replace("frames_", "")).append('=').append(e.getValue());
+        }
+        sender.sendMessage(Message.raw(counters.toString()));
+        StringBuilder gauges = new StringBuilder("Gauges:");
+        for (Map.Entry<String, Long> e : FramesMetrics.gaugeValues().entrySet()) {
+            gauges.append(' ').append(e.getKey().replace("frames_", "")).append('=').append(e.getValue());
+        }
+        sender.sendMessage(Message.raw(gauges.toString()));
+    }
+
+    private static String millis(double ms) {
+        if (Double.isInfinite(ms)) return "inf";
+        return ms < 1 ? String.format("%.1f ms", ms) : String.format("%.0f ms", ms);
+    }
+}
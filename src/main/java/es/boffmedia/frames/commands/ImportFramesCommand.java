@@ -0,0 +1,109 @@
+package es.boffmedia.frames.commands;
+
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.CommandSender;
+import com.hypixel.hytale.server.core.command.system.arguments.system.RequiredArg;
+import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
+import com.hypixel.hytale.server.core.command.system.basecommands.AbstractPlayerCommand;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import es.boffmedia.frames.FileHelper;
+import es.boffmedia.frames.Frames;
+import es.boffmedia.frames.FramesConfig;
+import es.boffmedia.frames.PermissionsUtil;
+import es.boffmedia.frames.core.BulkImporter;
+import es.boffmedia.frames.core.FrameItemGenerator;
+
+import javax.annotation.Nonnull;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ImportFramesCommand extends AbstractPlayerCommand {
+
+    private static final AtomicBoolean running = new AtomicBoolean();
+
+    private final RequiredArg<String> fileArg;
+
+    public ImportFramesCommand() {
+        super("importframes", "Create frames from a CSV/JSON manifest in mods/BoffmediaFrames/Import (admin)");
+        this.fileArg = this.withRequiredArg("file", "Manifest file name inside the Import folder", ArgTypes.STRING);
+    }
+
+    @Override
+    protected void execute(@Nonnull CommandContext commandContext, @Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+        Player sender = commandContext.senderAs(Player.class);
+
+        if (!PermissionsUtil.canImportFrames(sender)) {
+            sender.sendMessage(Message.raw("You do not have permission to run this command."));
+            return;
+        }
+
+        Path importDir = FileHelper.MODS_ROOT.resolve("Import").toAbsolutePath().normalize();
+        Path manifest = importDir.resolve(fileArg.get(commandContext)).normalize();
+        if (!manifest.startsWith(importDir) || !Files.isRegularFile(manifest)) {
+            sender.sendMessage(Message.raw("Manifest not found in " + importDir));
+            return;
+        }
+
+        List<BulkImporter.Entry> entries;
+        try {
+            entries = BulkImporter.parseManifest(manifest);
+        } catch (Exception e) {
+            sender.sendMessage(Message.raw("Could not read manifest: " + e.getMessage()));
+            return;
+        }
+        if (entries.isEmpty()) {
+            sender.sendMessage(Message.raw("The manifest has no entries."));
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            sender.sendMessage(Message.raw("Another import is already running."));
+            return;
+        }
+
+        String creator = ((CommandSender) sender).getUuid().toString();
+        int pixelsPerBlock = PermissionsUtil.canUploadHighRes(sender)
+                ? Math.max(0, FramesConfig.getInt("resolution.highResPixelsPerBlock", 256))
+                : FrameItemGenerator.defaultPixelsPerBlock();
+        sender.sendMessage(Message.raw("Importing " + entries.size() + " frames from " + manifest.getFileName() + "..."));
+
+        Thread.ofVirtual().name("Frames-Import").start(() -> {
+            try {
+                BulkImporter.Report report = BulkImporter.run(entries, FileHelper.MODS_ROOT, world.getName(), creator, pixelsPerBlock);
+                world.execute(() -> report(sender, report));
+                BulkImporter.applyPlacements(report, world, applied -> {
+                    long placements = report.outcomes.stream().filter(o -> o.ok() && o.entry.target != null).count();
+                    sender.sendMessage(Message.raw("Placed " + applied + "/" + placements + " imported frames."));
+                });
+            } catch (Exception e) {
+                Frames.LOGGER.atWarning().withCause(e).log("Import from " + manifest + " failed: " + e.getMessage());
+                world.execute(() -> sender.sendMessage(Message.raw("Import failed: " + e.getMessage())));
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    private static void report(Player sender, BulkImporter.Report report) {
+        int reused = 0;
+        for (BulkImporter.Outcome o : report.outcomes) {
+            String label = o.entry.name != null ? o.entry.name : o.entry.url;
+            if (o.ok()) {
+                if (o.reused) reused++;
+                sender.sendMessage(Message.raw("OK " + label + " -> " + o.itemId + (o.reused ? " (reused)" : "")));
+            } else {
+                sender.sendMessage(Message.raw("FAILED " + label + ": " + o.error));
+            }
+        }
+        double seconds = Math.max(1, report.elapsedMillis) / 1000.0;
+        sender.sendMessage(Message.raw(String.format("Imported %d/%d frames (%d reused) in %.1fs, %.1f images/s.",
+                report.succeeded(), report.outcomes.size(), reused, seconds, report.outcomes.size() / seconds)));
+    }
+}
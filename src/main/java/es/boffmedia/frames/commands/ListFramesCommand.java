@@ -11,12 +11,9 @@ import com.hypixel.hytale.component.Store;
 import com.hypixel.hytale.component.Ref;
 import es.boffmedia.frames.FileHelper;
 import es.boffmedia.frames.PermissionsUtil;
-import org.bson.BsonDocument;
+import es.boffmedia.frames.core.FrameCatalog;
 
 import javax.annotation.Nonnull;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.stream.Stream;
 
 public class ListFramesCommand extends AbstractPlayerCommand {
 
@@ -33,32 +30,14 @@ public class ListFramesCommand extends AbstractPlayerCommand {
             return;
         }
 
-        Path metaDir = FileHelper.MODS_ROOT.resolve("Frames");
-        if (!Files.exists(metaDir) || !Files.isDirectory(metaDir)) {
+        java.util.List<String> entries = new java.util.ArrayList<>();
+        for (FrameCatalog.Summary s : FileHelper.frameCatalog()) entries.add(s.label());
+        if (entries.isEmpty()) {
             sender.sendMessage(Message.raw("No metadata files found."));
             return;
         }
 
-        java.util.List<String> entries = new java.util.ArrayList<>();
-        try (Stream<Path> stream = Files.list(metaDir)) {
-            stream.filter(p -> Files.isRegularFile(p) && p.getFileName().toString().endsWith(".json"))
-                  .forEach(p -> {
-                      try {
-                          String txt = Files.readString(p);
-                          BsonDocument meta = BsonDocument.parse(txt);
-                          String id = meta.containsKey("itemId") ? meta.getString("itemId").getValue() : p.getFileName().toString().replaceFirst("\\.json$", "");
-                          String name = meta.containsKey("name") ? meta.getString("name").getValue() : "";
-                          String coords = "";
-                          if (meta.containsKey("coords")) {
-                              BsonDocument c = meta.getDocument("coords");
-                              coords = c.getInt32("x").getValue() + "," + c.getInt32("y").getValue() + "," + c.getInt32("z").getValue();
-                          }
-                          entries.add(id + " - " + name + (coords.isEmpty() ? "" : " @ " + coords));
-                      } catch (Exception e) {
-                          entries.add("ERROR: " + p.getFileName().toString() + " - " + e.getMessage());
-                      }
-                  });
-
+        try {
             // Open UI page showing entries
             String[] arr = entries.toArray(new String[0]);
             es.boffmedia.frames.ui.ListFramesPage page = new es.boffmedia.frames.ui.ListFramesPage(playerRef, arr);
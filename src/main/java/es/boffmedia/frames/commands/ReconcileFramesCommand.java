@@ -0,0 +1,84 @@
+package es.boffmedia.frames.commands;
+
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.arguments.system.RequiredArg;
+import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
+import com.hypixel.hytale.server.core.command.system.basecommands.AbstractPlayerCommand;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import es.boffmedia.frames.FileHelper;
+import es.boffmedia.frames.PermissionsUtil;
+import es.boffmedia.frames.core.AssetReconciler;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+public class ReconcileFramesCommand extends AbstractPlayerCommand {
+
+    private static final int MAX_LISTED = 10;
+
+    private final RequiredArg<String> modeArg;
+
+    public ReconcileFramesCommand() {
+        super("reconcileframes", "Find orphaned frame assets: dryrun, run or status (admin)");
+        this.modeArg = this.withRequiredArg("mode", "dryrun (report only), run (quarantine now) or status (last report)", ArgTypes.STRING);
+    }
+
+    @Override
+    protected void execute(@Nonnull CommandContext commandContext, @Nonnull Store<EntityStore> store, @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+        Player sender = commandContext.senderAs(Player.class);
+
+        if (!PermissionsUtil.isAdmin(sender)) {
+            sender.sendMessage(Message.raw("You do not have permission to run this command."));
+            return;
+        }
+
+        String mode = modeArg.get(commandContext).trim().toLowerCase();
+        switch (mode) {
+            case "status": {
+                AssetReconciler.Report last = AssetReconciler.lastReport();
+                if (last == null) {
+                    sender.sendMessage(Message.raw(AssetReconciler.isRunning() ? "A reconcile pass is running." : "No reconcile pass has finished yet."));
+                } else {
+                    report(sender, last);
+                }
+                return;
+            }
+            case "dryrun":
+            case "run": {
+                boolean dryRun = mode.equals("dryrun");
+                boolean started = AssetReconciler.requestPass(FileHelper.MODS_ROOT, dryRun, r -> world.execute(() -> report(sender, r)));
+                sender.sendMessage(Message.raw(started
+                        ? (dryRun ? "Scanning for orphaned frame assets (dry run)..." : "Reconciling frame assets...")
+                        : "A reconcile pass is already running; try again when it finishes."));
+                return;
+            }
+            default:
+                sender.sendMessage(Message.raw("Usage: /reconcileframes <dryrun|run|status>"));
+        }
+    }
+
+    private static void report(Player sender, AssetReconciler.Report r) {
+        sender.sendMessage(Message.raw(String.format("%s: %d items, %d files scanned in %d ms. %d orphaned items and %d unused shared models holding %s, %d dangling index entries.",
+                r.dryRun ? "Dry run" : "Reconcile", r.itemsScanned, r.filesScanned, r.elapsedMillis,
+                r.orphanItems.size(), r.unusedModels, bytes(r.orphanBytes), r.danglingIndexEntries)));
+        if (r.dryRun) {
+            sender.sendMessage(Message.raw(r.eligibleItems.size() + " would be quarantined now (orphaned last pass and past the grace period)."));
+            List<String> listed = r.orphanItems.subList(0, Math.min(MAX_LISTED, r.orphanItems.size()));
+            for (String itemId : listed) sender.sendMessage(Message.raw("  " + itemId + (r.eligibleItems.contains(itemId) ? " (eligible)" : "")));
+            if (r.orphanItems.size() > listed.size()) sender.sendMessage(Message.raw("  ... and " + (r.orphanItems.size() - listed.size()) + " more"));
+        } else {
+            sender.sendMessage(Message.raw(String.format("Quarantined %d files of %d items, reclaiming %s from the asset pack; purged %s of old quarantine.",
+                    r.quarantinedFiles, r.quarantinedItems, bytes(r.reclaimedBytes), bytes(r.purgedBytes))));
+        }
+    }
+
+    private static String bytes(long n) {
+        return n < 1024 * 1024 ? String.format("%.1f KB", n / 1024.0) : String.format("%.1f MB", n / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,411 @@
+package es.boffmedia.frames.core;
+
+import es.boffmedia.frames.Frames;
+import es.boffmedia.frames.FramesConfig;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.json.JsonWriterSettings;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Finds generated frame assets that nothing references any more and moves them out of the asset pack.
+ *
+ * A pass builds a reference graph from the textures, blockymodels and item JSONs on disk to the frame
+ * items they belong to. An item stays live while it has a metadata file or placed instances in the
+ * index. The files, atlas region and state definition of an item that has neither are moved to
+ * Quarantine/&lt;time&gt;/ once every pass for at least reconcile.graceHours found it orphaned and none of
+ * its files changed within that time. Dry runs report but do not start or extend that period. Index entries of items whose metadata and item JSON are both gone
+ * are dropped under the same rule. Shared models under Common/Blocks/Frames/Models/ are quarantined
+ * the same way once no item JSON names them as its CustomModel. Passes run on the background thread in
+ * slices of reconcile.sliceMillis, so a large mods folder never holds it for long.
+ */
+public final class AssetReconciler {
+    private AssetReconciler() {}
+
+    public static final String QUARANTINE_DIR = "Quarantine";
+    private static final String ITEM_PREFIX = "Boff_Frame_";
+    // Frame jsons of the block sizes live next to the generated items
+    private static final Pattern SIZE_DOCUMENT = Pattern.compile(ITEM_PREFIX + "\\d+x\\d+\\.json");
+    private static final Pattern CUSTOM_MODEL = Pattern.compile("\"CustomModel\"\\s*:\\s*\"([^\"]+)\"");
+    private static final String MODELS_DIR = "Models";
+
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    public static final class Report {
+        public final boolean dryRun;
+        public final long startedAt;
+        public int filesScanned;
+        public int itemsScanned;
+        /** Items with assets or index entries but no metadata file and no placed instance. */
+        public final List<String> orphanItems = new ArrayList<>();
+        /** Orphans old enough to be quarantined; in a dry run, the ones that would be. */
+        public final List<String> eligibleItems = new ArrayList<>();
+        public long orphanBytes;
+        public int danglingIndexEntries;
+        /** Shared models that no item JSON refers to. */
+        public int unusedModels;
+        public int quarantinedItems;
+        public int quarantinedFiles;
+        public long reclaimedBytes;
+        public long purgedBytes;
+        public long elapsedMillis;
+
+        Report(boolean dryRun, long startedAt) {
+            this.dryRun = dryRun;
+            this.startedAt = startedAt;
+        }
+    }
+
+    private static final class Node {
+        final String itemId;
+        final List<Path> files = new ArrayList<>(3);
+        long bytes;
+        long newestModified;
+        boolean metadata;
+        boolean placed;
+        boolean itemJson;
+        String stateSize;
+
+        Node(String itemId) {
+            this.itemId = itemId;
+        }
+    }
+
+    private static final class Pass {
+        final Path modsRoot;
+        final Report report;
+        final Consumer<Report> onDone;
+        final ArrayDeque<Step> work = new ArrayDeque<>();
+        final Map<String, Node> graph = new TreeMap<>();
+        final Set<String> orphans = new HashSet<>();
+        // CustomModel paths of the scanned item JSONs, relative to Common
+        final Set<String> modelRefs = new HashSet<>();
+        final List<Path> sharedModels = new ArrayList<>();
+        Set<String> bundled;
+        Path quarantine;
+        final BsonDocument quarantined = new BsonDocument();
+
+        Pass(Path modsRoot, boolean dryRun, Consumer<Report> onDone) {
+            this.modsRoot = modsRoot;
+            this.report = new Report(dryRun, System.currentTimeMillis());
+            this.onDone = onDone;
+        }
+
+        Node node(String itemId) {
+            return graph.computeIfAbsent(itemId, Node::new);
+        }
+    }
+
+    private static Pass current;
+    private static Report lastReport;
+    // Orphans of the last pass that was not a dry run, with the time each was first found orphaned
+    private static Map<String, Long> firstOrphaned = Map.of();
+    private static long nextScheduledPass;
+    private static boolean scheduled;
+
+    /** Starts the background ticks; automatic passes run every reconcile.intervalMinutes. */
+    public static synchronized void start(Path modsRoot) {
+        if (scheduled) return;
+        scheduled = true;
+        nextScheduledPass = System.currentTimeMillis() + intervalMillis();
+        long tick = Math.max(10, FramesConfig.getInt("reconcile.tickMillis", 250));
+        BackgroundScheduler.scheduleRepeating("asset-reconcile", () -> tick(modsRoot), tick);
+    }
+
+    private static long intervalMillis() {
+        return Math.max(0, FramesConfig.getInt("reconcile.intervalMinutes", 60)) * 60_000L;
+    }
+
+    /**
+     * Starts a pass now. A dry run only reports. Returns false if a pass is already running; onDone is
+     * called on the background thread with the finished report.
+     */
+    public static synchronized boolean requestPass(Path modsRoot, boolean dryRun, Consumer<Report> onDone) {
+        if (current != null) return false;
+        current = newPass(modsRoot, dryRun, onDone);
+        return true;
+    }
+
+    public static synchronized Report lastReport() {
+        return lastReport;
+    }
+
+    public static synchronized boolean isRunning() {
+        return current != null;
+    }
+
+    private static void tick(Path modsRoot) {
+        Pass pass;
+        synchronized (AssetReconciler.class) {
+            if (current == null && FramesConfig.getBoolean("reconcile.enabled", true) && intervalMillis() > 0
+                    && System.currentTimeMillis() >= nextScheduledPass) {
+                current = newPass(modsRoot, false, null);
+            }
+            pass = current;
+        }
+        if (pass == null) return;
+
+        long deadline = System.nanoTime() + Math.max(1, FramesConfig.getInt("reconcile.sliceMillis", 10)) * 1_000_000L;
+        while (!pass.work.isEmpty() && System.nanoTime() < deadline) {
+            try {
+                pass.work.poll().run();
+            } catch (Exception e) {
+                Frames.LOGGER.atWarning().withCause(e).log("Asset reconcile step failed: " + e.getMessage());
+            }
+        }
+        if (pass.work.isEmpty()) finish(pass);
+    }
+
+    private static Pass newPass(Path modsRoot, boolean dryRun, Consumer<Report> onDone) {
+        Pass pass = new Pass(modsRoot, dryRun, onDone);
+        pass.work.add(() -> scanMetadata(pass));
+        pass.work.add(() -> listFiles(pass, modsRoot.resolve(Paths.get("Common", "Blocks", "Frames", "Images")), ".png", ""));
+        pass.work.add(() -> listFiles(pass, modsRoot.resolve(Paths.get("Common", "Blocks", "Frames")), ".blockymodel", ""));
+        pass.work.add(() -> listFiles(pass, modsRoot.resolve(Paths.get("Server", "Item", "Items", "Furniture", "Frames")), ".json", ITEM_PREFIX));
+        pass.work.add(() -> scanIndexAndStates(pass));
+        pass.work.add(() -> listSharedModels(pass));
+        pass.work.add(() -> resolve(pass));
+        pass.work.add(() -> purgeQuarantine(pass));
+        return pass;
+    }
+
+    // Runs the given steps before anything already queued
+    private static void pushFront(Pass pass, List<Step> steps) {
+        for (int i = steps.size() - 1; i >= 0; i--) pass.work.addFirst(steps.get(i));
+    }
+
+    private static void scanMetadata(Pass pass) throws IOException {
+        pass.bundled = ResourceCopier.bundledPaths();
+        Path metaDir = pass.modsRoot.resolve("Frames");
+        if (!Files.isDirectory(metaDir)) return;
+        try (Stream<Path> stream = Files.list(metaDir)) {
+            stream.map(p -> p.getFileName().toString())
+                    .filter(n -> n.endsWith(".json"))
+                    .forEach(n -> pass.node(n.substring(0, n.length() - ".json".length())).metadata = true);
+        }
+    }
+
+    private static void listFiles(Pass pass, Path dir, String extension, String prefix) throws IOException {
+        if (!Files.isDirectory(dir)) return;
+        if (pass.bundled == null && extension.equals(".blockymodel")) {
+            // Bundled models live in the same folder; without the hash list they cannot be told apart
+            Frames.LOGGER.atWarning().log("Skipping blockymodels in asset reconcile: bundled resource list not available");
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(dir)) {
+            files = stream.filter(p -> {
+                String n = p.getFileName().toString();
+                return n.endsWith(extension) && n.startsWith(prefix) && !n.startsWith(".");
+            }).sorted().toList();
+        }
+        List<Step> steps = new ArrayList<>(files.size());
+        for (Path file : files) steps.add(() -> scanFile(pass, file, extension));
+        pushFront(pass, steps);
+    }
+
+    private static void scanFile(Pass pass, Path file, String extension) throws IOException {
+        String rel = pass.modsRoot.relativize(file).toString().replace('\\', '/');
+        if (pass.bundled != null && pass.bundled.contains(rel)) return;
+        String name = file.getFileName().toString();
+        String base = name.substring(0, name.length() - extension.length());
+        boolean itemJson = extension.equals(".json");
+        if (itemJson && (SIZE_DOCUMENT.matcher(name).matches() || FrameDocumentManager.isFrameDocument(file))) return;
+        if (!Files.isRegularFile(file)) return;
+
+        Node node = pass.node(itemJson ? base : ITEM_PREFIX + base);
+        node.files.add(file);
+        node.bytes += Files.size(file);
+        node.newestModified = Math.max(node.newestModified, Files.getLastModifiedTime(file).toMillis());
+        if (itemJson) {
+            node.itemJson = true;
+            Matcher m = CUSTOM_MODEL.matcher(Files.readString(file));
+            if (m.find()) pass.modelRefs.add(m.group(1));
+        }
+        pass.report.filesScanned++;
+    }
+
+    private static void listSharedModels(Pass pass) throws IOException {
+        Path dir = pass.modsRoot.resolve(Paths.get("Common", "Blocks", "Frames", MODELS_DIR));
+        if (!Files.isDirectory(dir)) return;
+        try (Stream<Path> stream = Files.list(dir)) {
+            stream.filter(p -> p.getFileName().toString().endsWith(".blockymodel") && Files.isRegularFile(p))
+                    .sorted().forEach(pass.sharedModels::add);
+        }
+        pass.report.filesScanned += pass.sharedModels.size();
+    }
+
+    private static void scanIndexAndStates(Pass pass) {
+        for (String itemId : FrameIndexManager.itemIds(pass.modsRoot)) pass.node(itemId).placed = true;
+        for (Map.Entry<String, String> e : FrameDocumentManager.stateKeys(pass.modsRoot).entrySet()) {
+            if (e.getKey().startsWith(ITEM_PREFIX)) pass.node(e.getKey()).stateSize = e.getValue();
+        }
+    }
+
+    private static void resolve(Pass pass) {
+        long graceCutoff = System.currentTimeMillis() - Math.max(0, FramesConfig.getInt("reconcile.graceHours", 24)) * 3_600_000L;
+        Map<String, Long> since;
+        synchronized (AssetReconciler.class) {
+            since = firstOrphaned;
+        }
+        List<Step> steps = new ArrayList<>();
+        for (Node node : pass.graph.values()) {
+            pass.report.itemsScanned++;
+            if (node.metadata) continue;
+            // Placed frames keep their item alive unless the item itself is gone too
+            boolean dangling = node.placed && !node.itemJson;
+            if (node.placed && !dangling) continue;
+            if (!dangling && node.files.isEmpty() && node.stateSize == null) continue;
+
+            pass.orphans.add(node.itemId);
+            pass.report.orphanItems.add(node.itemId);
+            pass.report.orphanBytes += node.bytes;
+            if (dangling) pass.report.danglingIndexEntries += FrameIndexManager.instancesOf(node.itemId, pass.modsRoot).size();
+            if (since.getOrDefault(node.itemId, Long.MAX_VALUE) > graceCutoff || node.newestModified > graceCutoff) continue;
+            pass.report.eligibleItems.add(node.itemId);
+            if (!pass.report.dryRun) steps.add(() -> quarantine(pass, node));
+        }
+        for (Path model : pass.sharedModels) {
+            String name = MODELS_DIR + "/" + model.getFileName();
+            if (pass.modelRefs.contains("Blocks/Frames/" + name)) continue;
+            pass.orphans.add(name);
+            pass.report.unusedModels++;
+            steps.add(() -> {
+                long size = Files.size(model);
+                pass.report.orphanBytes += size;
+                if (pass.report.dryRun || since.getOrDefault(name, Long.MAX_VALUE) > graceCutoff || Files.getLastModifiedTime(model).toMillis() > graceCutoff) return;
+                // A frame reusing the model touches it, which also covers one generated since the scan
+                BsonArray moved = new BsonArray();
+                moved.add(new BsonString(moveToQuarantine(pass, model)));
+                pass.quarantined.append(name, new BsonDocument("files", moved));
+            });
+        }
+        pushFront(pass, steps);
+    }
+
+    private static void quarantine(Pass pass, Node node) throws IOException {
+        Path root = pass.modsRoot;
+        // The item may have been claimed again since it was scanned
+        if (Files.exists(root.resolve("Frames").resolve(node.itemId + ".json"))) return;
+        boolean dangling = node.placed && !node.itemJson;
+        if (!dangling && FrameIndexManager.containsItem(node.itemId, root)) return;
+
+        BsonDocument entry = new BsonDocument();
+        BsonArray moved = new BsonArray();
+        for (Path file : node.files) {
+            if (Files.isRegularFile(file)) moved.add(new BsonString(moveToQuarantine(pass, file)));
+        }
+        entry.append("files", moved);
+
+        if (node.stateSize != null && FrameDocumentManager.removeImageState(node.stateSize, node.itemId, root)) {
+            entry.append("state", new BsonString(node.stateSize));
+        }
+        if (TextureAtlas.remove(node.itemId, root)) entry.append("atlas", new BsonString("released"));
+        if (dangling) {
+            int removed = 0;
+            for (FrameInstance inst : FrameIndexManager.instancesOf(node.itemId, root)) {
+                FrameIndexManager.removeInstancesAtCoords(inst.world, inst.x, inst.y, inst.z, root);
+                removed++;
+            }
+            entry.append("indexEntries", new BsonInt32(removed));
+        }
+        pass.quarantined.append(node.itemId, entry);
+        pass.report.quarantinedItems++;
+        Frames.LOGGER.atInfo().log("Quarantined orphaned frame item " + node.itemId + " (" + moved.size() + " files)");
+    }
+
+    // Moves one file into this pass's quarantine folder and returns its path relative to the mods root
+    private static String moveToQuarantine(Pass pass, Path file) throws IOException {
+        if (pass.quarantine == null) {
+            pass.quarantine = pass.modsRoot.resolve(QUARANTINE_DIR).resolve(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        }
+        Path rel = pass.modsRoot.relativize(file);
+        Path target = pass.quarantine.resolve(rel);
+        Files.createDirectories(target.getParent());
+        long size = Files.size(file);
+        try {
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(file, target);
+        }
+        pass.report.quarantinedFiles++;
+        pass.report.reclaimedBytes += size;
+        return rel.toString().replace('\\', '/');
+    }
+
+    private static void purgeQuarantine(Pass pass) throws IOException {
+        int days = FramesConfig.getInt("reconcile.quarantineDays", 7);
+        Path dir = pass.modsRoot.resolve(QUARANTINE_DIR);
+        if (pass.report.dryRun || days <= 0 || !Files.isDirectory(dir)) return;
+        long cutoff = System.currentTimeMillis() - days * 86_400_000L;
+        List<Path> batches;
+        try (Stream<Path> stream = Files.list(dir)) {
+            batches = stream.filter(Files::isDirectory).toList();
+        }
+        for (Path batch : batches) {
+            if (Files.getLastModifiedTime(batch).toMillis() > cutoff) continue;
+            try (Stream<Path> walk = Files.walk(batch)) {
+                for (Path p : walk.sorted(Comparator.reverseOrder()).toList()) {
+                    if (Files.isRegularFile(p)) pass.report.purgedBytes += Files.size(p);
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+    }
+
+    private static void finish(Pass pass) {
+        Report report = pass.report;
+        report.elapsedMillis = System.currentTimeMillis() - report.startedAt;
+        if (pass.quarantine != null && !pass.quarantined.isEmpty()) {
+            try {
+                PersistenceWriter.write(pass.quarantine.resolve("Reconcile.json"),
+                        new BsonDocument("items", pass.quarantined).toJson(JsonWriterSettings.builder().indent(true).build()));
+            } catch (IOException e) {
+                Frames.LOGGER.atWarning().withCause(e).log("Failed to write quarantine record: " + e.getMessage());
+            }
+        }
+        synchronized (AssetReconciler.class) {
+            if (!report.dryRun) {
+                Map<String, Long> next = new HashMap<>();
+                for (String orphan : pass.orphans) next.put(orphan, firstOrphaned.getOrDefault(orphan, report.startedAt));
+                firstOrphaned = Collections.unmodifiableMap(next);
+            }
+            lastReport = report;
+            current = null;
+            if (!report.dryRun) nextScheduledPass = System.currentTimeMillis() + intervalMillis();
+        }
+        Frames.LOGGER.atInfo().log("Asset reconcile" + (report.dryRun ? " (dry run)" : "") + ": " + report.itemsScanned + " items, "
+                + report.filesScanned + " files, " + report.orphanItems.size() + " orphaned, " + report.unusedModels + " unused models ("
+                + report.orphanBytes + " bytes), "
+                + (report.dryRun ? report.eligibleItems.size() + " would be quarantined" : report.quarantinedFiles + " files quarantined, "
+                + report.reclaimedBytes + " bytes reclaimed, " + report.purgedBytes + " bytes purged")
+                + " in " + report.elapsedMillis + " ms");
+        if (pass.onDone != null) pass.onDone.accept(report);
+    }
+}
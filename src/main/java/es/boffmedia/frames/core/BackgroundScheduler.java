@@ -0,0 +1,53 @@
+package es.boffmedia.frames.core;
+
+import es.boffmedia.frames.Frames;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single daemon thread shared by the plugin's periodic housekeeping tasks.
+ * Tasks scheduled here must be short; long work belongs on its own executor.
+ */
+public final class BackgroundScheduler {
+    private BackgroundScheduler() {}
+
+    private static ScheduledExecutorService scheduler;
+
+    public static synchronized ScheduledExecutorService get() {
+        if (scheduler == null || scheduler.isShutdown()) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "Frames-Background");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return scheduler;
+    }
+
+    /**
+     * Runs the task periodically, logging failures instead of letting them cancel the schedule.
+     */
+    public static void scheduleRepeating(String name, Runnable task, long periodMillis) {
+        get().scheduleWithFixedDelay(() -> {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                Frames.LOGGER.atWarning().withCause(t).log("Background task '" + name + "' failed: " + t.getMessage());
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void shutdown() {
+        if (scheduler == null) return;
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) scheduler.shutdownNow();
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+    }
+}
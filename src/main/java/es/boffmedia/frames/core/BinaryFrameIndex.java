@@ -0,0 +1,258 @@
+package es.boffmedia.frames.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * FramesIndex.bin: the frames index as fixed-width records followed by a string table.
+ *
+ * <pre>
+ * header  int magic 'FIDX' | int version | int recordCount | int stringCount | long stringTableOffset
+ * record  int world | int x | int y | int z | int item | int metaFile | long creatorMsb | long creatorLsb
+ *         | short blocksX | short flags | long createdAtMillis                      (52 bytes)
+ * strings (int byteLength, UTF-8 bytes) * stringCount
+ * </pre>
+ *
+ * String fields are indices into the string table (-1 for none). Records are sorted by
+ * (world, x, z, y), so {@link #find} can binary-search the mapped file without reading the rest of it.
+ */
+public final class BinaryFrameIndex {
+    public static final String FILE_NAME = "FramesIndex.bin";
+
+    private static final int MAGIC = 0x46494458; // "FIDX"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int RECORD_BYTES = 52;
+
+    private static final int FLAG_SHARE = 1;
+    // The creator is not a UUID; creatorMsb holds its string table index instead
+    private static final int FLAG_CREATOR_STRING = 2;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private final ByteBuffer buf;
+    private final int recordCount;
+    private final String[] strings;
+    private final Map<String, Integer> stringRefs = new HashMap<>();
+
+    private BinaryFrameIndex(ByteBuffer buf) throws IOException {
+        this.buf = buf;
+        if (buf.limit() < HEADER_BYTES || buf.getInt(0) != MAGIC) throw new IOException("Not a frames index file");
+        if (buf.getInt(4) != VERSION) throw new IOException("Unsupported frames index version " + buf.getInt(4));
+        this.recordCount = buf.getInt(8);
+        int stringCount = buf.getInt(12);
+        long tableOffset = buf.getLong(16);
+        if (tableOffset != HEADER_BYTES + (long) recordCount * RECORD_BYTES || tableOffset > buf.limit()) {
+            throw new IOException("Truncated frames index file");
+        }
+
+        strings = new String[stringCount];
+        int pos = (int) tableOffset;
+        for (int i = 0; i < stringCount; i++) {
+            int len = buf.getInt(pos);
+            byte[] bytes = new byte[len];
+            buf.get(pos + 4, bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            stringRefs.put(strings[i], i);
+            pos += 4 + len;
+        }
+    }
+
+    /**
+     * Opens an index file. The file is memory-mapped, except on Windows where a live mapping would
+     * keep the next snapshot from replacing it; there it is read into the heap instead.
+     */
+    public static BinaryFrameIndex open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("Frames index file too large");
+            ByteBuffer buf;
+            if (System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("windows")) {
+                buf = ByteBuffer.allocate((int) size);
+                while (buf.hasRemaining() && ch.read(buf) >= 0) { }
+                buf.flip();
+            } else {
+                buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            return new BinaryFrameIndex(buf);
+        }
+    }
+
+    public int size() {
+        return recordCount;
+    }
+
+    private String string(int ref) {
+        return ref < 0 ? null : strings[ref];
+    }
+
+    private int compareAt(int record, int world, int x, int y, int z) {
+        int base = HEADER_BYTES + record * RECORD_BYTES;
+        int c = Integer.compare(buf.getInt(base), world);
+        if (c == 0) c = Integer.compare(buf.getInt(base + 4), x);
+        if (c == 0) c = Integer.compare(buf.getInt(base + 12), z);
+        if (c == 0) c = Integer.compare(buf.getInt(base + 8), y);
+        return c;
+    }
+
+    /** Looks up the instance registered at the given block (exact world match) without decoding other records. */
+    public FrameInstance find(String world, int x, int y, int z) {
+        Integer worldRef = stringRefs.get(world == null ? "" : world);
+        if (worldRef == null) return null;
+        int lo = 0;
+        int hi = recordCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compareAt(mid, worldRef, x, y, z);
+            if (c == 0) return decode(mid, new HashMap<>());
+            if (c < 0) lo = mid + 1; else hi = mid - 1;
+        }
+        return null;
+    }
+
+    /** Decodes the records of one item, reading only the item column of the others. */
+    public void forEachOf(String itemId, Consumer<FrameInstance> consumer) {
+        Integer itemRef = stringRefs.get(itemId);
+        if (itemRef == null) return;
+        Map<UUID, String> creators = new HashMap<>();
+        for (int i = 0; i < recordCount; i++) {
+            if (buf.getInt(HEADER_BYTES + i * RECORD_BYTES + 16) == itemRef) consumer.accept(decode(i, creators));
+        }
+    }
+
+    /** Ids of the items that have records, from the item column alone. */
+    public List<String> itemIds() {
+        boolean[] seen = new boolean[strings.length];
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < recordCount; i++) {
+            int ref = buf.getInt(HEADER_BYTES + i * RECORD_BYTES + 16);
+            if (!seen[ref]) {
+                seen[ref] = true;
+                ids.add(strings[ref]);
+            }
+        }
+        return ids;
+    }
+
+    /** Decodes every record in file order. Creator strings are shared between records. */
+    public void forEach(Consumer<FrameInstance> consumer) {
+        Map<UUID, String> creators = new HashMap<>();
+        for (int i = 0; i < recordCount; i++) consumer.accept(decode(i, creators));
+    }
+
+    private FrameInstance decode(int record, Map<UUID, String> creators) {
+        int base = HEADER_BYTES + record * RECORD_BYTES;
+        String world = string(buf.getInt(base));
+        int x = buf.getInt(base + 4);
+        int y = buf.getInt(base + 8);
+        int z = buf.getInt(base + 12);
+        String itemId = string(buf.getInt(base + 16));
+        String metaFile = string(buf.getInt(base + 20));
+        long msb = buf.getLong(base + 24);
+        long lsb = buf.getLong(base + 32);
+        int blocksX = buf.getShort(base + 40);
+        int flags = buf.getShort(base + 42);
+        long created = buf.getLong(base + 44);
+
+        String creator;
+        if ((flags & FLAG_CREATOR_STRING) != 0) {
+            creator = string((int) msb);
+        } else if (msb == 0 && lsb == 0) {
+            creator = "";
+        } else {
+            creator = creators.computeIfAbsent(new UUID(msb, lsb), UUID::toString);
+        }
+        String createdAt = created == NO_TIMESTAMP ? "" : Instant.ofEpochMilli(created).toString();
+        return new FrameInstance(itemId, metaFile == null ? itemId + ".json" : metaFile, world, x, y, z, blocksX, creator, (flags & FLAG_SHARE) != 0, createdAt);
+    }
+
+    /** Serializes instances into the FramesIndex.bin layout. */
+    public static byte[] encode(List<FrameInstance> instances) {
+        Map<String, Integer> refs = new HashMap<>();
+        List<String> table = new ArrayList<>();
+        Consumer<String> intern = s -> refs.computeIfAbsent(s, k -> {
+            table.add(k);
+            return table.size() - 1;
+        });
+        for (FrameInstance inst : instances) {
+            intern.accept(inst.world);
+            intern.accept(inst.itemId);
+            if (!inst.metaFile.equals(inst.itemId + ".json")) intern.accept(inst.metaFile);
+            if (!inst.creator.isEmpty() && parseUuid(inst.creator) == null) intern.accept(inst.creator);
+        }
+
+        List<FrameInstance> sorted = new ArrayList<>(instances);
+        sorted.sort(Comparator.<FrameInstance>comparingInt(i -> refs.get(i.world))
+                .thenComparingInt(i -> i.x)
+                .thenComparingInt(i -> i.z)
+                .thenComparingInt(i -> i.y));
+
+        List<byte[]> encodedStrings = new ArrayList<>(table.size());
+        int stringBytes = 0;
+        for (String s : table) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            encodedStrings.add(b);
+            stringBytes += 4 + b.length;
+        }
+
+        long tableOffset = HEADER_BYTES + (long) sorted.size() * RECORD_BYTES;
+        ByteBuffer out = ByteBuffer.allocate((int) (tableOffset + stringBytes));
+        out.putInt(MAGIC).putInt(VERSION).putInt(sorted.size()).putInt(table.size()).putLong(tableOffset);
+        for (FrameInstance inst : sorted) {
+            int flags = inst.share ? FLAG_SHARE : 0;
+            long msb = 0;
+            long lsb = 0;
+            if (!inst.creator.isEmpty()) {
+                UUID uuid = parseUuid(inst.creator);
+                if (uuid != null) {
+                    msb = uuid.getMostSignificantBits();
+                    lsb = uuid.getLeastSignificantBits();
+                } else {
+                    flags |= FLAG_CREATOR_STRING;
+                    msb = refs.get(inst.creator);
+                }
+            }
+            out.putInt(refs.get(inst.world))
+                    .putInt(inst.x).putInt(inst.y).putInt(inst.z)
+                    .putInt(refs.get(inst.itemId))
+                    .putInt(inst.metaFile.equals(inst.itemId + ".json") ? -1 : refs.get(inst.metaFile))
+                    .putLong(msb).putLong(lsb)
+                    .putShort((short) inst.blocksX)
+                    .putShort((short) flags)
+                    .putLong(parseMillis(inst.createdAt));
+        }
+        for (byte[] b : encodedStrings) out.putInt(b.length).put(b);
+        return out.array();
+    }
+
+    private static UUID parseUuid(String s) {
+        try {
+            UUID uuid = UUID.fromString(s);
+            // Only accept the canonical form so the string round-trips unchanged
+            return uuid.toString().equals(s) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static long parseMillis(String iso) {
+        if (iso == null || iso.isEmpty()) return NO_TIMESTAMP;
+        try {
+            return Instant.parse(iso).toEpochMilli();
+        } catch (Exception e) {
+            return NO_TIMESTAMP;
+        }
+    }
+}
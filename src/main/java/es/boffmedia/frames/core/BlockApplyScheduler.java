@@ -0,0 +1,119 @@
+package es.boffmedia.frames.core;
+
+import com.hypixel.hytale.protocol.BlockPosition;
+import com.hypixel.hytale.server.core.asset.type.blocktype.config.BlockType;
+import com.hypixel.hytale.server.core.universe.world.World;
+import es.boffmedia.frames.Frames;
+import es.boffmedia.frames.FramesConfig;
+import es.boffmedia.frames.interactions.UseFrameInteraction;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Replaces frame blocks with newly generated items as soon as their block asset is loaded.
+ * Pending applications poll the BlockType asset map with exponential backoff on the shared
+ * background thread, so any number of them costs no extra threads; the block swap itself is
+ * executed on the world thread.
+ */
+public final class BlockApplyScheduler {
+    private BlockApplyScheduler() {}
+
+    public enum Outcome { APPLIED, FAILED, TIMED_OUT }
+
+    private static final AtomicInteger pending = new AtomicInteger();
+
+    private static final class PendingApply {
+        final World world;
+        final BlockPosition target;
+        final String itemId;
+        final Consumer<Outcome> onDone;
+        final long deadlineNanos;
+        final long startNanos = System.nanoTime();
+        long delayMillis;
+
+        PendingApply(World world, BlockPosition target, String itemId, Consumer<Outcome> onDone, long deadlineNanos, long delayMillis) {
+            this.world = world;
+            this.target = target;
+            this.itemId = itemId;
+            this.onDone = onDone;
+            this.deadlineNanos = deadlineNanos;
+            this.delayMillis = delayMillis;
+        }
+    }
+
+    public static int pendingCount() {
+        return pending.get();
+    }
+
+    public static boolean isAssetLoaded(String itemId) {
+        try {
+            int index = BlockType.getAssetMap().getIndex(itemId);
+            return BlockType.getAssetMap().getAsset(index) != null;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Replaces the block at target with itemId once the asset resolves. {@code onDone} runs on the world thread.
+     */
+    public static void schedule(World world, BlockPosition target, String itemId, Consumer<Outcome> onDone) {
+        long initialDelay = Math.max(10, FramesConfig.getLong("apply.initialDelayMillis", 250));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.max(1, FramesConfig.getLong("apply.deadlineSeconds", 120)));
+        PendingApply p = new PendingApply(world, target, itemId, onDone, deadline, initialDelay);
+        pending.incrementAndGet();
+        // The asset may already be loaded (e.g. re-applying an existing item), so check right away
+        BackgroundScheduler.get().execute(() -> poll(p));
+    }
+
+    private static void poll(PendingApply p) {
+        try {
+            if (isAssetLoaded(p.itemId)) {
+                applyOnWorldThread(p);
+                return;
+            }
+            if (System.nanoTime() >= p.deadlineNanos) {
+                Frames.LOGGER.atWarning().log("Asset " + p.itemId + " did not load before the apply deadline");
+                complete(p, Outcome.TIMED_OUT);
+                return;
+            }
+            long maxDelay = Math.max(p.delayMillis, FramesConfig.getLong("apply.maxDelayMillis", 5000));
+            double multiplier = Math.max(1.0, FramesConfig.getDouble("apply.backoffMultiplier", 2.0));
+            long delay = p.delayMillis;
+            p.delayMillis = Math.min(maxDelay, (long) (p.delayMillis * multiplier));
+            BackgroundScheduler.get().schedule(() -> poll(p), delay, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Failed to poll asset " + p.itemId + ": " + e.getMessage());
+            complete(p, Outcome.FAILED);
+        }
+    }
+
+    private static void applyOnWorldThread(PendingApply p) {
+        p.world.execute(() -> {
+            boolean replaced;
+            try {
+                replaced = UseFrameInteraction.replaceBlockWithItem(p.world, p.target, p.itemId);
+            } catch (Exception e) {
+                Frames.LOGGER.atWarning().withCause(e).log("Failed to apply " + p.itemId + ": " + e.getMessage());
+                replaced = false;
+            }
+            done(p, replaced ? Outcome.APPLIED : Outcome.FAILED);
+        });
+    }
+
+    private static void complete(PendingApply p, Outcome outcome) {
+        p.world.execute(() -> done(p, outcome));
+    }
+
+    private static void done(PendingApply p, Outcome outcome) {
+        pending.decrementAndGet();
+        FramesMetrics.APPLY_WAIT.observeSince(p.startNanos);
+        try {
+            if (p.onDone != null) p.onDone.accept(outcome);
+        } catch (Exception e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Apply callback failed for " + p.itemId + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package es.boffmedia.frames.core;
+
+import com.hypixel.hytale.protocol.BlockPosition;
+import com.hypixel.hytale.server.core.universe.world.World;
+import es.boffmedia.frames.Frames;
+import es.boffmedia.frames.FramesConfig;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Generates frame items for every entry of a manifest in parallel on a fork-join pool. New assets are
+ * written to a staging directory and published into the mods folder together once every entry has
+ * finished, so the asset pack changes once per import instead of once per image.
+ */
+public final class BulkImporter {
+    private BulkImporter() {}
+
+    public static final class Entry {
+        public final String url;
+        public final String name;
+        public final int blocksX;
+        public final String alignment;
+        /** Block to place the frame on, or null to only create the item. */
+        public final BlockPosition target;
+
+        public Entry(String url, String name, int blocksX, String alignment, BlockPosition target) {
+            this.url = url;
+            this.name = name;
+            this.blocksX = Math.max(1, blocksX);
+            this.alignment = alignment;
+            this.target = target;
+        }
+    }
+
+    public static final class Outcome {
+        public final Entry entry;
+        public final String itemId;
+        public final String error;
+        public final boolean reused;
+        // Held from generation until the published item is recorded
+        final ImageDedupTable.Claim claim;
+
+        Outcome(Entry entry, String itemId, String error, boolean reused, ImageDedupTable.Claim claim) {
+            this.entry = entry;
+            this.itemId = itemId;
+            this.error = error;
+            this.reused = reused;
+            this.claim = claim;
+        }
+
+        public boolean ok() {
+            return error == null;
+        }
+    }
+
+    public static final class Report {
+        public final List<Outcome> outcomes;
+        public final long elapsedMillis;
+
+        Report(List<Outcome> outcomes, long elapsedMillis) {
+            this.outcomes = outcomes;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int succeeded() {
+            return (int) outcomes.stream().filter(Outcome::ok).count();
+        }
+    }
+
+    /**
+     * Reads a manifest: either JSON (an array, or {"frames": [...]}, of objects with url, name, blocksX,
+     * alignment and optional x/y/z) or CSV with the columns url,name,blocksX,alignment[,x,y,z]. CSV fields
+     * are quoted as in RFC 4180, so a URL containing commas must be written as "https://...,...".
+     */
+    public static List<Entry> parseManifest(Path file) throws IOException {
+        String text = Files.readString(file);
+        List<Entry> entries = new ArrayList<>();
+        if (file.getFileName().toString().toLowerCase().endsWith(".json")) {
+            String trimmed = text.trim();
+            BsonArray arr = trimmed.startsWith("[")
+                    ? BsonDocument.parse("{\"frames\":" + trimmed + "}").getArray("frames")
+                    : BsonDocument.parse(trimmed).getArray("frames");
+            for (BsonValue v : arr) {
+                BsonDocument d = v.asDocument();
+                BlockPosition target = null;
+                if (d.containsKey("x") && d.containsKey("y") && d.containsKey("z")) {
+                    target = new BlockPosition(d.getNumber("x").intValue(), d.getNumber("y").intValue(), d.getNumber("z").intValue());
+                }
+                entries.add(new Entry(
+                        d.getString("url").getValue(),
+                        d.containsKey("name") ? d.getString("name").getValue() : null,
+                        d.containsKey("blocksX") ? d.getNumber("blocksX").intValue() : 1,
+                        d.containsKey("alignment") ? d.getString("alignment").getValue() : null,
+                        target));
+            }
+            return entries;
+        }
+
+        boolean first = true;
+        for (CsvRecord record : csvRecords(text)) {
+            int lineNo = record.line;
+            String[] cols = record.cols;
+            if (first && cols[0].equalsIgnoreCase("url")) continue;
+            first = false;
+            try {
+                BlockPosition target = null;
+                if (cols.length >= 7 && !cols[4].isEmpty()) {
+                    target = new BlockPosition(Integer.parseInt(cols[4]), Integer.parseInt(cols[5]), Integer.parseInt(cols[6]));
+                }
+                entries.add(new Entry(cols[0],
+                        cols.length > 1 && !cols[1].isEmpty() ? cols[1] : null,
+                        cols.length > 2 && !cols[2].isEmpty() ? Integer.parseInt(cols[2]) : 1,
+                        cols.length > 3 && !cols[3].isEmpty() ? cols[3] : null,
+                        target));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid number on line " + lineNo + ": " + e.getMessage());
+            }
+        }
+        return entries;
+    }
+
+    private record CsvRecord(int line, String[] cols) {}
+
+    /**
+     * Splits CSV text into records. Quoted fields may contain commas, line breaks and doubled quotes;
+     * unquoted fields are trimmed. Blank lines and lines starting with # are skipped.
+     */
+    private static List<CsvRecord> csvRecords(String text) throws IOException {
+        List<CsvRecord> records = new ArrayList<>();
+        List<String> cols = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        int line = 1;
+        int recordLine = 1;
+        int n = text.length();
+        for (int i = 0; i <= n; i++) {
+            char c = i < n ? text.charAt(i) : '\n';
+            if (quoted) {
+                if (i == n) throw new IOException("Unterminated quoted field starting on line " + recordLine);
+                if (c == '"' && i + 1 < n && text.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    if (c == '\n') line++;
+                    field.append(c);
+                }
+                continue;
+            }
+            if (c == '#' && cols.isEmpty() && !wasQuoted && field.toString().isBlank()) {
+                // Comment line: skip to its end
+                while (i + 1 < n && text.charAt(i + 1) != '\n' && text.charAt(i + 1) != '\r') i++;
+                continue;
+            }
+            if (c == '"' && field.toString().isBlank() && !wasQuoted) {
+                field.setLength(0);
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == ',' || c == '\n' || c == '\r') {
+                if (c == '\r' && i + 1 < n && text.charAt(i + 1) == '\n') continue;
+                cols.add(wasQuoted ? field.toString() : field.toString().trim());
+                field.setLength(0);
+                wasQuoted = false;
+                if (c == ',') continue;
+                if (cols.size() > 1 || !cols.get(0).isEmpty()) records.add(new CsvRecord(recordLine, cols.toArray(new String[0])));
+                cols.clear();
+                line++;
+                recordLine = line;
+            } else if (!wasQuoted || !Character.isWhitespace(c)) {
+                if (wasQuoted) throw new IOException("Unexpected text after a quoted field on line " + line);
+                field.append(c);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Generates and publishes every entry. Metadata and index entries are written after publishing;
+     * placements are left to {@link #applyPlacements}.
+     */
+    public static Report run(List<Entry> entries, Path modsRoot, String world, String creatorUuid, int pixelsPerBlock) throws IOException {
+        long start = System.nanoTime();
+        Path staging = modsRoot.resolve(Path.of("Import", ".staging-" + System.currentTimeMillis()));
+        Files.createDirectories(staging);
+
+        int parallelism = FramesConfig.getInt("import.parallelism", 0);
+        if (parallelism <= 0) parallelism = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Set<String> usedNames = ConcurrentHashMap.newKeySet();
+        List<Outcome> outcomes = new ArrayList<>(entries.size());
+        try {
+            List<ForkJoinTask<Outcome>> tasks = new ArrayList<>(entries.size());
+            for (Entry e : entries) tasks.add(pool.submit(() -> generate(e, modsRoot, staging, usedNames, pixelsPerBlock)));
+            for (ForkJoinTask<Outcome> t : tasks) outcomes.add(t.join());
+
+            publish(staging, modsRoot);
+            for (Outcome o : outcomes) {
+                if (o.ok() && !o.reused) ImageDedupTable.record(o.claim.key, o.itemId, modsRoot);
+            }
+        } finally {
+            pool.shutdown();
+            deleteRecursively(staging);
+            for (Outcome o : outcomes) {
+                if (o.claim != null) o.claim.release();
+            }
+        }
+
+        for (Outcome o : outcomes) {
+            if (!o.ok()) continue;
+            try {
+                if (!o.reused) {
+                    // The staged PNG replaced any atlas slot an older item with this name held
+                    TextureAtlas.remove(o.itemId, modsRoot);
+                    FrameItemGenerator.deleteLegacyModel(o.itemId, modsRoot);
+                }
+                String name = o.reused ? null : o.entry.name;
+                String url = o.reused ? null : o.entry.url;
+                BlockPosition t = o.entry.target;
+                if (t != null) {
+                    FrameIndexManager.writeFrameMetadata(o.itemId, name, url, world, t.x, t.y, t.z, o.entry.blocksX, o.entry.alignment, creatorUuid, false, modsRoot);
+                } else {
+                    FrameIndexManager.writeItemMetadata(o.itemId, name, url, o.entry.alignment, modsRoot);
+                }
+            } catch (Exception e) {
+                Frames.LOGGER.atWarning().withCause(e).log("Failed to write metadata for imported " + o.itemId + ": " + e.getMessage());
+            }
+        }
+        return new Report(outcomes, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static Outcome generate(Entry e, Path modsRoot, Path staging, Set<String> usedNames, int pixelsPerBlock) {
+        try {
+            byte[] bytes = SourceImageCache.fetch(e.url, modsRoot);
+            BufferedImage img = FrameItemGenerator.prepareImage(ImageProcessor.decodeImage(bytes, e.url), e.blocksX, pixelsPerBlock);
+            // Identical rows, and uploads of the same image running meanwhile, wait for one item
+            ImageDedupTable.Claim claim = ImageDedupTable.claimBlocking(FrameItemGenerator.dedupKey(img, e.blocksX, e.alignment), modsRoot);
+            if (!claim.owner()) return new Outcome(e, claim.existingItemId, null, true, null);
+
+            try {
+                // Entries of one manifest must not overwrite each other's assets
+                String base = FrameItemGenerator.resolveBaseName(e.name);
+                String unique = base;
+                for (int n = 2; !usedNames.add(unique); n++) unique = base + "_" + n;
+
+                Path png = PngEncoder.encodeToTempFile(img, staging);
+                String itemId = FrameItemGenerator.persistFrameAssets(img.getWidth(), img.getHeight(), png, unique, e.blocksX, e.alignment, staging, false, modsRoot);
+                // Later rows reuse the staged item; the key is recorded once it is published
+                claim.complete(itemId);
+                return new Outcome(e, itemId, null, false, claim);
+            } catch (Exception ex) {
+                claim.release();
+                throw ex;
+            }
+        } catch (Exception ex) {
+            Frames.LOGGER.atWarning().withCause(ex).log("Import of " + e.url + " failed: " + ex.getMessage());
+            return new Outcome(e, null, ex.getMessage() == null ? ex.getClass().getSimpleName() : ex.getMessage(), false, null);
+        }
+    }
+
+    // Textures and models go first so no item JSON becomes visible before the assets it references
+    private static void publish(Path staging, Path modsRoot) throws IOException {
+        for (String top : new String[]{"Common", "Server"}) {
+            Path dir = staging.resolve(top);
+            if (!Files.isDirectory(dir)) continue;
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(dir)) {
+                files = walk.filter(Files::isRegularFile).toList();
+            }
+            for (Path f : files) {
+                Path dest = modsRoot.resolve(staging.relativize(f).toString());
+                Files.createDirectories(dest.getParent());
+                try {
+                    Files.move(f, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(f, dest, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path dir) {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException ignored) {
+                }
+            });
+        } catch (IOException e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Failed to clean import staging directory: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Places every successfully imported entry that has a target. {@code onDone} runs on the world thread
+     * with the number of applied placements once all of them have finished or timed out.
+     */
+    public static void applyPlacements(Report report, World world, Consumer<Integer> onDone) {
+        List<Outcome> placed = report.outcomes.stream().filter(o -> o.ok() && o.entry.target != null).toList();
+        if (placed.isEmpty()) {
+            world.execute(() -> onDone.accept(0));
+            return;
+        }
+        AtomicInteger remaining = new AtomicInteger(placed.size());
+        AtomicInteger applied = new AtomicInteger();
+        for (Outcome o : placed) {
+            BlockApplyScheduler.schedule(world, o.entry.target, o.itemId, outcome -> {
+                if (outcome == BlockApplyScheduler.Outcome.APPLIED) applied.incrementAndGet();
+                if (remaining.decrementAndGet() == 0) onDone.accept(applied.get());
+            });
+        }
+    }
+}
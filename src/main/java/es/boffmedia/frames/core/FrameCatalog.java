@@ -0,0 +1,212 @@
+package es.boffmedia.frames.core;
+
+import es.boffmedia.frames.Frames;
+import org.bson.BsonDocument;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Resident summaries of every metadata file in mods/BoffmediaFrames/Frames. Built once, then kept
+ * current by the plugin's own metadata writes and by a WatchService for edits made outside the plugin,
+ * so listing frames never touches the disk.
+ */
+public final class FrameCatalog {
+    private FrameCatalog() {}
+
+    public static final class Summary {
+        public final String fileName;
+        public final String itemId;
+        public final String name;
+        public final String url;
+        public final String alignment;
+        /** Legacy top-level coords as "x,y,z", or empty. */
+        public final String coords;
+        /** Parse error for unreadable files; the other fields are empty then. */
+        public final String error;
+        final long lastModified;
+
+        Summary(String fileName, String itemId, String name, String url, String alignment, String coords, String error, long lastModified) {
+            this.fileName = fileName;
+            this.itemId = itemId;
+            this.name = name;
+            this.url = url;
+            this.alignment = alignment;
+            this.coords = coords;
+            this.error = error;
+            this.lastModified = lastModified;
+        }
+
+        static Summary of(String fileName, BsonDocument meta, long lastModified) {
+            String id = meta.containsKey("itemId") ? meta.getString("itemId").getValue() : fileName.replaceFirst("\\.json$", "");
+            String name = meta.containsKey("name") ? meta.getString("name").getValue() : "";
+            String url = meta.containsKey("url") ? meta.getString("url").getValue() : "";
+            String alignment = meta.containsKey("alignment") ? meta.getString("alignment").getValue() : "CENTERED";
+            String coords = "";
+            if (meta.containsKey("coords")) {
+                BsonDocument c = meta.getDocument("coords");
+                coords = c.getInt32("x").getValue() + "," + c.getInt32("y").getValue() + "," + c.getInt32("z").getValue();
+            }
+            return new Summary(fileName, id, name, url, alignment, coords, null, lastModified);
+        }
+
+        /** The "id - name @ coords" line shown in frame lists. */
+        public String label() {
+            if (error != null) return "ERROR: " + fileName + " - " + error;
+            return itemId + " - " + name + (coords.isEmpty() ? "" : " @ " + coords);
+        }
+    }
+
+    private static final Map<String, Summary> byFile = new ConcurrentHashMap<>();
+    private static volatile Path catalogRoot;
+    private static WatchService watcher;
+    private static Thread watchThread;
+
+    private static Path metaDir(Path modsRoot) {
+        return modsRoot.resolve("Frames");
+    }
+
+    public static synchronized void load(Path modsRoot) {
+        stopWatching();
+        byFile.clear();
+        catalogRoot = modsRoot;
+        long start = System.nanoTime();
+        scan(modsRoot);
+        startWatching(modsRoot);
+        Frames.LOGGER.atInfo().log("Loaded frame catalog with " + byFile.size() + " entries in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    private static void ensureLoaded(Path modsRoot) {
+        if (!modsRoot.equals(catalogRoot)) load(modsRoot);
+    }
+
+    private static void scan(Path modsRoot) {
+        Path dir = metaDir(modsRoot);
+        if (!Files.isDirectory(dir)) return;
+        try (Stream<Path> stream = Files.list(dir)) {
+            stream.filter(p -> p.getFileName().toString().endsWith(".json")).forEach(FrameCatalog::refresh);
+        } catch (IOException e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Failed to scan frame metadata: " + e.getMessage());
+        }
+    }
+
+    /** Re-reads one metadata file, or drops it if it no longer exists. Unchanged files are not parsed again. */
+    static void refresh(Path file) {
+        String fileName = file.getFileName().toString();
+        if (!Files.isRegularFile(file)) {
+            byFile.remove(fileName);
+            return;
+        }
+        long mtime;
+        try {
+            mtime = Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            byFile.remove(fileName);
+            return;
+        }
+        Summary current = byFile.get(fileName);
+        if (current != null && current.error == null && current.lastModified == mtime) return;
+        try {
+            byFile.put(fileName, Summary.of(fileName, BsonDocument.parse(Files.readString(file)), mtime));
+        } catch (Exception e) {
+            byFile.put(fileName, new Summary(fileName, "", "", "", "", "", e.getMessage(), mtime));
+        }
+    }
+
+    /** Called after the plugin writes a metadata file, with the document it wrote. */
+    public static void update(Path metaFile, BsonDocument meta) {
+        long mtime;
+        try {
+            mtime = Files.getLastModifiedTime(metaFile).toMillis();
+        } catch (IOException e) {
+            mtime = 0;
+        }
+        String fileName = metaFile.getFileName().toString();
+        byFile.put(fileName, Summary.of(fileName, meta, mtime));
+    }
+
+    public static void remove(Path metaFile) {
+        byFile.remove(metaFile.getFileName().toString());
+    }
+
+    public static Summary get(String itemId, Path modsRoot) {
+        return forFile(itemId + ".json", modsRoot);
+    }
+
+    /** The summary of a metadata file by its name, as index entries refer to it. */
+    public static Summary forFile(String fileName, Path modsRoot) {
+        ensureLoaded(modsRoot);
+        return byFile.get(fileName);
+    }
+
+    /** All summaries ordered by item id. */
+    public static List<Summary> entries(Path modsRoot) {
+        ensureLoaded(modsRoot);
+        List<Summary> out = new ArrayList<>(byFile.values());
+        out.sort(Comparator.comparing((Summary s) -> s.itemId).thenComparing(s -> s.fileName));
+        return out;
+    }
+
+    private static void startWatching(Path modsRoot) {
+        Path dir = metaDir(modsRoot);
+        try {
+            Files.createDirectories(dir);
+            WatchService ws = FileSystems.getDefault().newWatchService();
+            dir.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watcher = ws;
+            watchThread = Thread.ofPlatform().daemon().name("Frames-CatalogWatch").start(() -> watchLoop(ws, dir, modsRoot));
+        } catch (IOException e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Frame metadata will not be watched for external changes: " + e.getMessage());
+        }
+    }
+
+    private static void watchLoop(WatchService ws, Path dir, Path modsRoot) {
+        try {
+            while (true) {
+                WatchKey key = ws.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        scan(modsRoot);
+                        byFile.keySet().removeIf(f -> !Files.exists(dir.resolve(f)));
+                        continue;
+                    }
+                    Path name = (Path) event.context();
+                    if (name.toString().endsWith(".json")) refresh(dir.resolve(name));
+                }
+                if (!key.reset()) break;
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            // shutting down
+        } catch (Exception e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Frame metadata watcher stopped: " + e.getMessage());
+        }
+    }
+
+    private static void stopWatching() {
+        if (watcher == null) return;
+        try {
+            watcher.close();
+        } catch (IOException ignored) {
+        }
+        if (watchThread != null) watchThread.interrupt();
+        watcher = null;
+        watchThread = null;
+    }
+
+    public static synchronized void shutdown() {
+        stopWatching();
+    }
+}
@@ -7,36 +7,138 @@ import org.bson.BsonDocument;
 import org.bson.BsonString;
 import org.bson.json.JsonWriterSettings;
 
+import es.boffmedia.frames.FramesConfig;
+
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
  * Operations for frame JSON (the "frame JSONs" that define block states).
+ *
+ * Parsed documents stay in memory after the first read. Writes only mark a document dirty; dirty
+ * documents are written out together after documents.flushDelayMillis, and on shutdown. A
+ * stateKey -> sizeKey index lets state removal go straight to the document holding the key.
  */
 public final class FrameDocumentManager {
     private FrameDocumentManager() {}
 
+    private static final class Cached {
+        BsonDocument doc;
+        boolean dirty;
+        boolean pretty;
+
+        Cached(BsonDocument doc) {
+            this.doc = doc;
+        }
+    }
+
+    private static final Map<Path, Cached> documents = new ConcurrentHashMap<>();
+    // Keyed by modsRoot so stateKey lookups never cross mods folders
+    private static final Map<Path, Map<String, String>> stateIndex = new ConcurrentHashMap<>();
+    private static final Object LOCK = new Object();
+    private static ScheduledFuture<?> pendingFlush;
+
     private static Path frameJsonPathFor(String sizeKey, Path modsRoot) {
         return modsRoot.resolve(Paths.get("Server", "Item", "Items", "Furniture", "Frames", "Boff_Frame_" + sizeKey + ".json"));
     }
 
+    /** Returns the cached document for sizeKey; callers that modify it must hand it back through a write method. */
     public static BsonDocument readDocument(String sizeKey, Path modsRoot) {
-        return BsonUtil.readDocumentNow(frameJsonPathFor(sizeKey, modsRoot));
+        Path pj = frameJsonPathFor(sizeKey, modsRoot);
+        synchronized (LOCK) {
+            Cached c = documents.get(pj);
+            if (c != null) return c.doc;
+            BsonDocument doc = BsonUtil.readDocumentNow(pj);
+            if (doc == null) return null;
+            documents.put(pj, new Cached(doc));
+            indexStates(doc, sizeKey, modsRoot);
+            return doc;
+        }
     }
 
     public static void writeDocument(BsonDocument doc, String sizeKey, Path modsRoot) throws IOException {
-        Path pj = frameJsonPathFor(sizeKey, modsRoot);
-        Files.createDirectories(pj.getParent());
-        Files.writeString(pj, doc.toJson());
+        markDirty(doc, sizeKey, modsRoot, false);
     }
 
     public static void updateDocument(Consumer<BsonDocument> updater, String sizeKey, Path modsRoot) throws IOException {
-        BsonDocument doc = readDocument(sizeKey, modsRoot);
-        updater.accept(doc);
-        writeDocument(doc, sizeKey, modsRoot);
+        synchronized (LOCK) {
+            BsonDocument doc = readDocument(sizeKey, modsRoot);
+            updater.accept(doc);
+            writeDocument(doc, sizeKey, modsRoot);
+        }
+    }
+
+    private static void markDirty(BsonDocument doc, String sizeKey, Path modsRoot, boolean pretty) {
+        Path pj = frameJsonPathFor(sizeKey, modsRoot);
+        synchronized (LOCK) {
+            Cached c = documents.computeIfAbsent(pj, k -> new Cached(doc));
+            c.doc = doc;
+            c.dirty = true;
+            c.pretty = pretty;
+            indexStates(doc, sizeKey, modsRoot);
+            if (pendingFlush == null || pendingFlush.isDone()) {
+                long delay = Math.max(0, FramesConfig.getInt("documents.flushDelayMillis", 250));
+                pendingFlush = BackgroundScheduler.get().schedule(FrameDocumentManager::flush, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /** Writes every dirty document to disk now. */
+    public static void flush() {
+        List<Map.Entry<Path, String>> writes = new ArrayList<>();
+        synchronized (LOCK) {
+            pendingFlush = null;
+            JsonWriterSettings settings = JsonWriterSettings.builder().indent(true).build();
+            for (Map.Entry<Path, Cached> e : documents.entrySet()) {
+                Cached c = e.getValue();
+                if (!c.dirty) continue;
+                writes.add(Map.entry(e.getKey(), c.pretty ? c.doc.toJson(settings) : c.doc.toJson()));
+                c.dirty = false;
+            }
+        }
+        for (Map.Entry<Path, String> w : writes) PersistenceWriter.writeAsync(w.getKey(), w.getValue());
+    }
+
+    private static BsonDocument definitionsOf(BsonDocument doc) {
+        if (doc == null || !doc.containsKey("BlockType")) return null;
+        BsonDocument blockType = doc.getDocument("BlockType");
+        if (!blockType.containsKey("State")) return null;
+        BsonDocument state = blockType.getDocument("State");
+        if (!state.containsKey("Definitions")) return null;
+        return state.getDocument("Definitions");
+    }
+
+    private static void indexStates(BsonDocument doc, String sizeKey, Path modsRoot) {
+        Map<String, String> index = stateIndex.computeIfAbsent(modsRoot, k -> new ConcurrentHashMap<>());
+        index.values().removeIf(sizeKey::equals);
+        BsonDocument defs = definitionsOf(doc);
+        if (defs != null) for (String key : defs.keySet()) index.put(key, sizeKey);
+    }
+
+    /** Every state key defined by the documents loaded so far, mapped to the size that defines it. */
+    public static Map<String, String> stateKeys(Path modsRoot) {
+        Map<String, String> index = stateIndex.get(modsRoot);
+        return index == null ? Map.of() : Map.copyOf(index);
+    }
+
+    /** True if file is one of the loaded frame jsons rather than a generated item. */
+    public static boolean isFrameDocument(Path file) {
+        return documents.containsKey(file);
+    }
+
+    /** The size whose frame json defines stateKey, among the documents loaded so far, or null. */
+    public static String sizeKeyOf(String stateKey, Path modsRoot) {
+        Map<String, String> index = stateIndex.get(modsRoot);
+        return index == null ? null : index.get(stateKey);
     }
 
     public static void ensureDefaultJsonExists(String sizeKey, Path modsRoot) throws IOException {
@@ -84,41 +186,43 @@ public final class FrameDocumentManager {
     }
 
     public static void prettyPrintAndSave(BsonDocument doc, String sizeKey, Path modsRoot) throws IOException {
-        JsonWriterSettings settings = JsonWriterSettings.builder().indent(true).build();
-        String pretty = doc.toJson(settings);
-        Path pj = frameJsonPathFor(sizeKey, modsRoot);
-        Files.createDirectories(pj.getParent());
-        Files.writeString(pj, pretty);
+        markDirty(doc, sizeKey, modsRoot, true);
     }
 
-    public static boolean removeImageState(String sizeKey, String stateKey, Path modsRoot) throws IOException {
-        BsonDocument doc = loadOrCreateDocument(sizeKey, modsRoot);
-        if (doc == null) return false;
-
-        if (!doc.containsKey("BlockType")) return false;
-        BsonDocument blockType = doc.getDocument("BlockType");
-        if (!blockType.containsKey("State")) return false;
-        BsonDocument state = blockType.getDocument("State");
-        if (!state.containsKey("Definitions")) return false;
-        BsonDocument defs = state.getDocument("Definitions");
-        if (!defs.containsKey(stateKey)) return false;
+    /**
+     * Removes stateKey from whichever loaded size document defines it. Returns that size, or null if
+     * no document has the key.
+     */
+    public static String removeImageState(String stateKey, Path modsRoot) throws IOException {
+        String sizeKey = sizeKeyOf(stateKey, modsRoot);
+        if (sizeKey == null) return null;
+        return removeImageState(sizeKey, stateKey, modsRoot) ? sizeKey : null;
+    }
 
+    public static boolean removeImageState(String sizeKey, String stateKey, Path modsRoot) throws IOException {
         String texturePath = null;
-        try {
-            BsonDocument def = defs.getDocument(stateKey);
-            if (def.containsKey("CustomModelTexture")) {
-                BsonArray arr = def.getArray("CustomModelTexture");
-                if (arr.size() > 0) {
-                    org.bson.BsonDocument tdoc = arr.get(0).asDocument();
-                    if (tdoc.containsKey("Texture")) texturePath = tdoc.getString("Texture").getValue();
+        synchronized (LOCK) {
+            BsonDocument doc = loadOrCreateDocument(sizeKey, modsRoot);
+            BsonDocument defs = definitionsOf(doc);
+            if (defs == null || !defs.containsKey(stateKey)) return false;
+
+            try {
+                BsonDocument def = defs.getDocument(stateKey);
+                if (def.containsKey("CustomModelTexture")) {
+                    BsonArray arr = def.getArray("CustomModelTexture");
+                    if (arr.size() > 0) {
+                        org.bson.BsonDocument tdoc = arr.get(0).asDocument();
+                        if (tdoc.containsKey("Texture")) texturePath = tdoc.getString("Texture").getValue();
+                    }
                 }
-            }
-        } catch (Exception ignored) {}
+            } catch (Exception ignored) {}
 
-        defs.remove(stateKey);
-        prettyPrintAndSave(doc, sizeKey, modsRoot);
+            defs.remove(stateKey);
+            prettyPrintAndSave(doc, sizeKey, modsRoot);
+        }
 
-        if (texturePath != null && texturePath.startsWith("Blocks/Frames/")) {
+        // Atlas pages are shared between items; their regions are freed through TextureAtlas.remove
+        if (texturePath != null && texturePath.startsWith("Blocks/Frames/") && !texturePath.startsWith("Blocks/Frames/Atlas/")) {
             String after = texturePath.substring("Blocks/Frames/".length());
             Path p = modsRoot.resolve(Paths.get("Common", "Blocks", "Frames").resolve(after));
             try {
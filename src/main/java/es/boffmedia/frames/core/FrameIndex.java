@@ -0,0 +1,212 @@
+package es.boffmedia.frames.core;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resident view of FramesIndex.json. Instances are keyed by a packed (world, x, y, z)
+ * long so coordinate lookups, inserts and removals do not scan the index. Blocks outside
+ * the packable range, and worlds past the 256 slots, go to a map keyed by the full coordinates.
+ */
+public final class FrameIndex implements FrameInstanceStore {
+    // Key layout (high to low): 8 bits world slot | 23 bits x | 23 bits z | 10 bits y
+    private static final int WORLD_BITS = 8;
+    private static final int XZ_BITS = 23;
+    private static final int Y_BITS = 10;
+    private static final int XZ_MIN = -(1 << (XZ_BITS - 1));
+    private static final int XZ_MAX = (1 << (XZ_BITS - 1)) - 1;
+    private static final int Y_MIN = -(1 << (Y_BITS - 1));
+    private static final int Y_MAX = (1 << (Y_BITS - 1)) - 1;
+
+    // Slot 0 is reserved for legacy entries that carry no world name
+    private static final int LEGACY_WORLD_SLOT = 0;
+
+    private final LongObjectHashMap<FrameInstance> byCoords;
+    private final Map<String, Set<FrameInstance>> byItem = new LinkedHashMap<>();
+    private final Map<String, Integer> worldSlots = new HashMap<>();
+    private final Map<Coords, FrameInstance> unpacked = new HashMap<>();
+
+    private record Coords(String world, int x, int y, int z) {}
+
+    public FrameIndex() {
+        this(0);
+    }
+
+    public FrameIndex(int expectedSize) {
+        this.byCoords = new LongObjectHashMap<>(expectedSize);
+        worldSlots.put("", LEGACY_WORLD_SLOT);
+    }
+
+    public static long pack(int worldSlot, int x, int y, int z) {
+        if (x < XZ_MIN || x > XZ_MAX || z < XZ_MIN || z > XZ_MAX || y < Y_MIN || y > Y_MAX) {
+            throw new IllegalArgumentException("Coordinates out of indexable range: " + x + "," + y + "," + z);
+        }
+        long key = (long) worldSlot;
+        key = (key << XZ_BITS) | (x & ((1L << XZ_BITS) - 1));
+        key = (key << XZ_BITS) | (z & ((1L << XZ_BITS) - 1));
+        key = (key << Y_BITS) | (y & ((1L << Y_BITS) - 1));
+        return key;
+    }
+
+    public static boolean packable(int x, int y, int z) {
+        return x >= XZ_MIN && x <= XZ_MAX && z >= XZ_MIN && z <= XZ_MAX && y >= Y_MIN && y <= Y_MAX;
+    }
+
+    // Returns -1 for an unknown world, or when create is set and every slot is taken
+    private int slotFor(String world, boolean create) {
+        Integer slot = worldSlots.get(world);
+        if (slot != null) return slot;
+        if (!create) return -1;
+        int next = worldSlots.size();
+        if (next >= (1 << WORLD_BITS)) return -1;
+        worldSlots.put(world, next);
+        return next;
+    }
+
+    private FrameInstance get(String world, int x, int y, int z) {
+        if (packable(x, y, z)) {
+            int slot = slotFor(world, false);
+            if (slot >= 0) return byCoords.get(pack(slot, x, y, z));
+        }
+        return unpacked.isEmpty() ? null : unpacked.get(new Coords(world, x, y, z));
+    }
+
+    private FrameInstance remove(String world, int x, int y, int z) {
+        if (packable(x, y, z)) {
+            int slot = slotFor(world, false);
+            if (slot >= 0) return byCoords.remove(pack(slot, x, y, z));
+        }
+        return unpacked.isEmpty() ? null : unpacked.remove(new Coords(world, x, y, z));
+    }
+
+    @Override
+    public synchronized int size() {
+        return byCoords.size() + unpacked.size();
+    }
+
+    /**
+     * Returns the instance at the given block, falling back to legacy entries that have no world.
+     */
+    @Override
+    public synchronized FrameInstance find(String world, int x, int y, int z) {
+        if (world != null && !world.isEmpty()) {
+            FrameInstance inst = get(world, x, y, z);
+            if (inst != null) return inst;
+        }
+        return get("", x, y, z);
+    }
+
+    /** Returns the instance at the given block in exactly this world, without the legacy fallback. */
+    public synchronized FrameInstance findExact(String world, int x, int y, int z) {
+        return get(world == null ? "" : world, x, y, z);
+    }
+
+    /**
+     * Inserts an instance, replacing whatever was registered at the same block. Returns the replaced instance.
+     */
+    @Override
+    public synchronized FrameInstance put(FrameInstance inst) {
+        String world = inst.world == null ? "" : inst.world;
+        int slot = packable(inst.x, inst.y, inst.z) ? slotFor(world, true) : -1;
+        FrameInstance previous = slot >= 0
+                ? byCoords.put(pack(slot, inst.x, inst.y, inst.z), inst)
+                : unpacked.put(new Coords(world, inst.x, inst.y, inst.z), inst);
+        if (previous != null) unlinkItem(previous);
+        byItem.computeIfAbsent(inst.itemId, k -> new LinkedHashSet<>()).add(inst);
+        return previous;
+    }
+
+    /**
+     * Removes the instance at the given block in this world and any legacy entry at the same coords.
+     */
+    @Override
+    public synchronized List<FrameInstance> removeAt(String world, int x, int y, int z) {
+        List<FrameInstance> removed = new ArrayList<>(1);
+        if (world != null && !world.isEmpty()) {
+            FrameInstance inst = remove(world, x, y, z);
+            if (inst != null) removed.add(inst);
+        }
+        FrameInstance legacy = remove("", x, y, z);
+        if (legacy != null) removed.add(legacy);
+        for (FrameInstance inst : removed) unlinkItem(inst);
+        return removed;
+    }
+
+    private void unlinkItem(FrameInstance inst) {
+        Set<FrameInstance> set = byItem.get(inst.itemId);
+        if (set == null) return;
+        set.remove(inst);
+        if (set.isEmpty()) byItem.remove(inst.itemId);
+    }
+
+    @Override
+    public synchronized List<FrameInstance> instancesOf(String itemId) {
+        Set<FrameInstance> set = byItem.get(itemId);
+        if (set == null) return Collections.emptyList();
+        return new ArrayList<>(set);
+    }
+
+    @Override
+    public synchronized boolean containsItem(String itemId) {
+        return byItem.containsKey(itemId);
+    }
+
+    @Override
+    public synchronized List<String> itemIds() {
+        return new ArrayList<>(byItem.keySet());
+    }
+
+    /** Every instance, grouped by item. */
+    @Override
+    public synchronized List<FrameInstance> all() {
+        List<FrameInstance> out = new ArrayList<>(size());
+        for (Set<FrameInstance> set : byItem.values()) out.addAll(set);
+        return out;
+    }
+
+    public synchronized BsonDocument toDocument() {
+        BsonDocument items = new BsonDocument();
+        for (Map.Entry<String, Set<FrameInstance>> e : byItem.entrySet()) {
+            BsonArray arr = new BsonArray();
+            for (FrameInstance inst : e.getValue()) arr.add(inst.toDocument());
+            items.append(e.getKey(), arr);
+        }
+        return new BsonDocument().append("items", items);
+    }
+
+    public static FrameIndex fromDocument(BsonDocument indexDoc) {
+        if (indexDoc == null || !indexDoc.containsKey("items")) return new FrameIndex();
+        BsonDocument items = indexDoc.getDocument("items");
+        int expected = 0;
+        for (String itemId : items.keySet()) {
+            try { expected += items.getArray(itemId).size(); } catch (Exception ignore) {}
+        }
+
+        FrameIndex index = new FrameIndex(expected);
+        for (String itemId : items.keySet()) {
+            try {
+                BsonArray arr = items.getArray(itemId);
+                for (int i = 0; i < arr.size(); i++) {
+                    try {
+                        FrameInstance inst = FrameInstance.fromDocument(itemId, arr.get(i).asDocument());
+                        if (inst != null) index.put(inst);
+                    } catch (Exception ignoreEntry) {
+                        // skip malformed instance entries
+                    }
+                }
+            } catch (Exception ignoreItem) {
+                // skip malformed item entries
+            }
+        }
+        return index;
+    }
+}
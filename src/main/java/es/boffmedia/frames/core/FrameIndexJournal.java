@@ -0,0 +1,229 @@
+package es.boffmedia.frames.core;
+
+import es.boffmedia.frames.Frames;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of index mutations written next to FramesIndex.json.
+ * Each record is [int length][int crc32][compact JSON payload]; replay stops at the first
+ * short or corrupt record so a torn write at the tail is dropped instead of failing the load.
+ * Rotated segments (FramesIndex.journal.N) are replayed in order before the active one.
+ */
+public final class FrameIndexJournal implements AutoCloseable {
+    public static final String ACTIVE_NAME = "FramesIndex.journal";
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+
+    private final Path dir;
+    private final boolean fsyncEachAppend;
+    private FileChannel channel;
+    private long firstAppendMillis;
+
+    public FrameIndexJournal(Path dir, boolean fsyncEachAppend) throws IOException {
+        this.dir = dir;
+        this.fsyncEachAppend = fsyncEachAppend;
+        Files.createDirectories(dir);
+        this.channel = openActive();
+        if (channel.size() > 0) firstAppendMillis = System.currentTimeMillis();
+    }
+
+    private FileChannel openActive() throws IOException {
+        return FileChannel.open(dir.resolve(ACTIVE_NAME), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    public static BsonDocument putRecord(FrameInstance inst) {
+        return new BsonDocument()
+                .append("op", new BsonString("put"))
+                .append("item", new BsonString(inst.itemId))
+                .append("inst", inst.toDocument());
+    }
+
+    public static BsonDocument removeRecord(String world, int x, int y, int z) {
+        return new BsonDocument()
+                .append("op", new BsonString("del"))
+                .append("world", new BsonString(world == null ? "" : world))
+                .append("x", new BsonInt32(x))
+                .append("y", new BsonInt32(y))
+                .append("z", new BsonInt32(z));
+    }
+
+    /**
+     * Applies one journal record to the index. Records are idempotent so a segment that was
+     * already folded into the snapshot can be replayed again safely.
+     */
+    public static void apply(FrameInstanceStore index, BsonDocument record) {
+        String op = record.getString("op").getValue();
+        if ("put".equals(op)) {
+            FrameInstance inst = FrameInstance.fromDocument(record.getString("item").getValue(), record.getDocument("inst"));
+            if (inst != null) index.put(inst);
+        } else if ("del".equals(op)) {
+            index.removeAt(record.getString("world").getValue(), record.getInt32("x").getValue(), record.getInt32("y").getValue(), record.getInt32("z").getValue());
+        }
+    }
+
+    public synchronized void append(BsonDocument record) throws IOException {
+        FramesEvents.FileWrite event = new FramesEvents.FileWrite();
+        event.begin();
+        byte[] payload = record.toJson().getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        buf.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (buf.hasRemaining()) channel.write(buf);
+        if (fsyncEachAppend) channel.force(false);
+        if (firstAppendMillis == 0) firstAppendMillis = System.currentTimeMillis();
+        if (event.shouldCommit()) {
+            event.kind = "journal";
+            event.itemId = record.containsKey("item") ? record.getString("item").getValue() : null;
+            event.bytes = HEADER_BYTES + payload.length;
+            event.commit();
+        }
+    }
+
+    public synchronized void sync() throws IOException {
+        channel.force(false);
+    }
+
+    public synchronized long size() throws IOException {
+        return channel.size();
+    }
+
+    /** Milliseconds since the oldest record in the active segment was appended, or 0 if it is empty. */
+    public synchronized long ageMillis() {
+        return firstAppendMillis == 0 ? 0 : System.currentTimeMillis() - firstAppendMillis;
+    }
+
+    /**
+     * Seals the active segment under a new sequence number and starts an empty one.
+     * Returns the sequence of the sealed segment; every segment up to it may be deleted
+     * once a snapshot taken at the same moment has been written.
+     */
+    public synchronized long rotate() throws IOException {
+        channel.force(false);
+        channel.close();
+        long seq = Math.max(System.currentTimeMillis(), lastSegmentSeq() + 1);
+        Files.move(dir.resolve(ACTIVE_NAME), dir.resolve(ACTIVE_NAME + "." + seq), StandardCopyOption.ATOMIC_MOVE);
+        channel = openActive();
+        firstAppendMillis = 0;
+        return seq;
+    }
+
+    public void deleteSegmentsUpTo(long seq) {
+        for (Path p : listSegments(dir)) {
+            if (segmentSeq(p) <= seq) {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException e) {
+                    Frames.LOGGER.atWarning().withCause(e).log("Failed to delete journal segment " + p + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private long lastSegmentSeq() {
+        List<Path> segments = listSegments(dir);
+        return segments.isEmpty() ? 0 : segmentSeq(segments.get(segments.size() - 1));
+    }
+
+    private static long segmentSeq(Path p) {
+        String name = p.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(ACTIVE_NAME.length() + 1));
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private static List<Path> listSegments(Path dir) {
+        List<Path> out = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return out;
+        try (Stream<Path> stream = Files.list(dir)) {
+            stream.filter(p -> p.getFileName().toString().startsWith(ACTIVE_NAME + ".") && segmentSeq(p) >= 0).forEach(out::add);
+        } catch (IOException e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Failed to list journal segments: " + e.getMessage());
+        }
+        out.sort((a, b) -> Long.compare(segmentSeq(a), segmentSeq(b)));
+        return out;
+    }
+
+    /**
+     * Replays sealed segments and then the active journal, in order. Returns the number of records applied.
+     * A torn tail on the active journal is truncated so new appends start on a record boundary.
+     */
+    public static int replay(Path dir, Consumer<BsonDocument> consumer) throws IOException {
+        int applied = 0;
+        for (Path segment : listSegments(dir)) applied += replayFile(segment, consumer, false);
+        Path active = dir.resolve(ACTIVE_NAME);
+        if (Files.exists(active)) applied += replayFile(active, consumer, true);
+        return applied;
+    }
+
+    private static int replayFile(Path file, Consumer<BsonDocument> consumer, boolean truncateTornTail) throws IOException {
+        int applied = 0;
+        long goodEnd = 0;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (goodEnd + HEADER_BYTES <= size) {
+                header.clear();
+                ch.read(header, goodEnd);
+                header.flip();
+                int len = header.getInt();
+                int expectedCrc = header.getInt();
+                if (len <= 0 || len > MAX_RECORD_BYTES || goodEnd + HEADER_BYTES + len > size) break;
+
+                ByteBuffer payload = ByteBuffer.allocate(len);
+                while (payload.hasRemaining()) {
+                    if (ch.read(payload, goodEnd + HEADER_BYTES + payload.position()) < 0) break;
+                }
+                if (payload.hasRemaining()) break;
+                CRC32 crc = new CRC32();
+                crc.update(payload.array());
+                if ((int) crc.getValue() != expectedCrc) break;
+
+                try {
+                    consumer.accept(BsonDocument.parse(new String(payload.array(), StandardCharsets.UTF_8)));
+                    applied++;
+                } catch (Exception e) {
+                    Frames.LOGGER.atWarning().withCause(e).log("Skipping unreadable journal record in " + file.getFileName() + ": " + e.getMessage());
+                }
+                goodEnd += HEADER_BYTES + len;
+            }
+
+            if (goodEnd < size) {
+                Frames.LOGGER.atWarning().log("Dropping " + (size - goodEnd) + " trailing bytes of torn journal record in " + file.getFileName());
+            }
+        }
+
+        if (truncateTornTail && goodEnd < Files.size(file)) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ch.truncate(goodEnd);
+            }
+        }
+        return applied;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package es.boffmedia.frames.core;
 
 import es.boffmedia.frames.Frames;
+import es.boffmedia.frames.FramesConfig;
 import org.bson.BsonArray;
 import org.bson.BsonDocument;
 import org.bson.BsonString;
@@ -9,146 +10,431 @@ import org.bson.json.JsonWriterSettings;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Manages the global FramesIndex.json and per-item metadata files.
+ * Manages the frames index and per-item metadata files.
+ * The index is kept resident in a {@link FrameIndex}. Mutations are appended to a
+ * {@link FrameIndexJournal} and a background task folds the journal into FramesIndex.json
+ * once it passes the configured size or age, so a single upload never rewrites the whole file.
+ * With index.format set to "binary" the snapshot is FramesIndex.bin ({@link BinaryFrameIndex})
+ * instead, served from the mapped file with only the changes since the last snapshot resident
+ * ({@link MappedFrameIndex}), and with "partitioned" it is split per world and chunk ({@link PartitionedFrameIndex})
+ * so only the chunks being looked at are held in memory. Switching formats converts the existing
+ * snapshot on the next load.
  */
 public final class FrameIndexManager {
     private FrameIndexManager() {}
 
-    public static void registerFrameInstanceInIndex(String itemId, String metaFileName, int x, int y, int z, int blocksX, String creatorUuid, boolean share, Path modsRoot) throws IOException {
-        Path indexFile = modsRoot.resolve("FramesIndex.json");
-        BsonDocument indexDoc;
-        if (Files.exists(indexFile)) {
+    private static final String INDEX_FILE = "FramesIndex.json";
+    // Serializes read-modify-write of per-item metadata files across concurrent uploads
+    private static final Object META_LOCK = new Object();
+
+    private static FrameInstanceStore index;
+    private static Path indexRoot;
+    private static FrameIndexJournal journal;
+    private static boolean replayedSegments;
+    // The snapshot on disk is in the other format and has to be rewritten
+    private static boolean formatChanged;
+    private static boolean compactorScheduled;
+    // Journal records appended while a binary snapshot is being written; replayed onto the new mapping
+    private static List<BsonDocument> sinceSnapshot;
+
+    /**
+     * Loads the index snapshot and replays the journal on top of it. Called once at plugin setup;
+     * later calls reload from disk.
+     */
+    public static synchronized FrameInstanceStore load(Path modsRoot) {
+        long start = System.nanoTime();
+        closeJournal();
+
+        String format = indexFormat();
+        Path preferred = snapshotFile(modsRoot, format);
+        Path source = null;
+        for (Path candidate : new Path[] {preferred, snapshotFile(modsRoot, "json"), snapshotFile(modsRoot, "binary"), snapshotFile(modsRoot, "partitioned")}) {
+            if (Files.exists(candidate)) {
+                source = candidate;
+                break;
+            }
+        }
+        FrameInstanceStore loaded = null;
+        if (source != null) {
             try {
-                String existing = Files.readString(indexFile);
-                indexDoc = BsonDocument.parse(existing);
+                if (source.getFileName().toString().equals(INDEX_FILE)) {
+                    loaded = FrameIndex.fromDocument(BsonDocument.parse(Files.readString(source)));
+                } else if (source.getFileName().toString().equals(BinaryFrameIndex.FILE_NAME)) {
+                    loaded = readBinary(source);
+                } else {
+                    loaded = PartitionedFrameIndex.open(modsRoot);
+                }
             } catch (Exception e) {
-                indexDoc = new BsonDocument();
+                Frames.LOGGER.atWarning().withCause(e).log("Failed to read frames index, starting empty: " + e.getMessage());
             }
-        } else {
-            indexDoc = new BsonDocument();
         }
+        formatChanged = loaded != null && !source.equals(preferred);
+        FrameInstanceStore converted;
+        try {
+            converted = convert(loaded, format, modsRoot);
+        } catch (java.io.UncheckedIOException e) {
+            // A partition could not be read; keep the partitioned index rather than convert only part of it
+            Frames.LOGGER.atWarning().withCause(e).log("Not converting frames index: " + e.getMessage());
+            converted = loaded;
+            formatChanged = false;
+        }
+        final FrameInstanceStore idx = converted;
 
-        if (!indexDoc.containsKey("items")) indexDoc.append("items", new BsonDocument());
-        BsonDocument items = indexDoc.getDocument("items");
+        int replayed = 0;
+        try {
+            replayed = FrameIndexJournal.replay(modsRoot, record -> {
+                try {
+                    FrameIndexJournal.apply(idx, record);
+                } catch (java.io.UncheckedIOException e) {
+                    Frames.LOGGER.atWarning().withCause(e).log("Skipped frames index journal record: " + e.getMessage());
+                }
+            });
+        } catch (Exception e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Failed to replay frames index journal: " + e.getMessage());
+        }
+        try {
+            journal = new FrameIndexJournal(modsRoot, FramesConfig.getBoolean("index.journalFsync", false));
+        } catch (IOException e) {
+            Frames.LOGGER.atSevere().withCause(e).log("Failed to open frames index journal: " + e.getMessage());
+        }
 
-        if (!items.containsKey(itemId)) items.append(itemId, new BsonArray());
-        BsonArray arr = items.getArray(itemId);
+        index = idx;
+        indexRoot = modsRoot;
+        replayedSegments = replayed > 0;
+        scheduleCompactor();
+        Frames.LOGGER.atInfo().log("Loaded frames index with " + idx.size() + " instances from " + (source == null ? "nothing" : modsRoot.relativize(source))
+                + " (" + replayed + " journal records) in " + ((System.nanoTime() - start) / 1_000_000) + " ms"
+                + (formatChanged ? "; converting to " + modsRoot.relativize(preferred) : ""));
+        return idx;
+    }
 
-        BsonDocument entry = new BsonDocument();
-        entry.append("metaFile", new BsonString(metaFileName == null ? "" : metaFileName));
-        entry.append("creator", new BsonString(creatorUuid == null ? "" : creatorUuid));
-        entry.append("share", new org.bson.BsonBoolean(share));
-        BsonDocument coords = new BsonDocument();
-        coords.append("x", new org.bson.BsonInt32(x));
-        coords.append("y", new org.bson.BsonInt32(y));
-        coords.append("z", new org.bson.BsonInt32(z));
-        entry.append("coords", coords);
-        BsonDocument blocks = new BsonDocument();
-        blocks.append("x", new org.bson.BsonInt32(blocksX));
-        entry.append("blocks", blocks);
-        entry.append("createdAt", new BsonString(java.time.Instant.now().toString()));
+    /** The configured index.format: "json", "binary" or "partitioned". */
+    private static String indexFormat() {
+        String format = FramesConfig.getString("index.format", "json").toLowerCase(java.util.Locale.ROOT);
+        return format.equals("binary") || format.equals("partitioned") ? format : "json";
+    }
 
-        arr.add(entry);
+    private static Path snapshotFile(Path modsRoot, String format) {
+        switch (format) {
+            case "binary":
+                return modsRoot.resolve(BinaryFrameIndex.FILE_NAME);
+            case "partitioned":
+                return PartitionedFrameIndex.directoryFile(modsRoot);
+            default:
+                return modsRoot.resolve(INDEX_FILE);
+        }
+    }
 
-        JsonWriterSettings settings = JsonWriterSettings.builder().indent(true).build();
-        Files.writeString(indexFile, indexDoc.toJson(settings));
+    /** Moves a loaded index into the representation the configured format keeps resident. */
+    private static FrameInstanceStore convert(FrameInstanceStore loaded, String format, Path modsRoot) {
+        boolean partitioned = format.equals("partitioned");
+        if (loaded == null) return partitioned ? PartitionedFrameIndex.of(modsRoot, List.of()) : new FrameIndex();
+        if (partitioned) return loaded instanceof PartitionedFrameIndex ? loaded : PartitionedFrameIndex.of(modsRoot, loaded.all());
+        if (loaded instanceof FrameIndex || (loaded instanceof MappedFrameIndex && format.equals("binary"))) return loaded;
+        return heapIndex(loaded);
     }
 
-    public static void removeInstancesAtCoords(int x, int y, int z, Path modsRoot) throws IOException {
-        Path indexFile = modsRoot.resolve("FramesIndex.json");
-        if (!Files.exists(indexFile)) return;
+    private static FrameIndex heapIndex(FrameInstanceStore store) {
+        List<FrameInstance> all = store.all();
+        FrameIndex idx = new FrameIndex(all.size());
+        for (FrameInstance inst : all) idx.put(inst);
+        return idx;
+    }
 
-        String existing = Files.readString(indexFile);
-        BsonDocument indexDoc = BsonDocument.parse(existing);
-        if (!indexDoc.containsKey("items")) return;
+    private static MappedFrameIndex readBinary(Path file) throws IOException {
+        return new MappedFrameIndex(BinaryFrameIndex.open(file));
+    }
 
-        BsonDocument items = indexDoc.getDocument("items");
-        List<String> toUpdateMetaFiles = new ArrayList<>();
+    private static synchronized FrameInstanceStore indexFor(Path modsRoot) {
+        if (index == null || !modsRoot.equals(indexRoot)) return load(modsRoot);
+        return index;
+    }
 
-        for (String itemId : items.keySet()) {
-            BsonArray arr = items.getArray(itemId);
-            BsonArray newArr = new BsonArray();
-            for (int i = 0; i < arr.size(); i++) {
-                try {
-                    org.bson.BsonDocument inst = arr.get(i).asDocument();
-                    boolean match = false;
-                    if (inst.containsKey("coords")) {
-                        org.bson.BsonDocument c = inst.getDocument("coords");
-                        int mx = c.getInt32("x").getValue();
-                        int my = c.getInt32("y").getValue();
-                        int mz = c.getInt32("z").getValue();
-                        if (mx == x && my == y && mz == z) match = true;
-                    }
-                    if (match) {
-                        try { toUpdateMetaFiles.add(inst.getString("metaFile").getValue()); } catch (Exception ignore) {}
-                    } else {
-                        newArr.add(arr.get(i));
-                    }
-                } catch (Exception e) {
-                    newArr.add(arr.get(i));
-                }
+    private static void scheduleCompactor() {
+        if (compactorScheduled) return;
+        compactorScheduled = true;
+        long period = Math.max(1, FramesConfig.getInt("index.compactionCheckSeconds", 10)) * 1000L;
+        BackgroundScheduler.scheduleRepeating("index-compaction", FrameIndexManager::compactIfNeeded, period);
+    }
+
+    private static void appendToJournal(BsonDocument record) throws IOException {
+        if (journal == null) throw new IOException("Frames index journal is not open");
+        journal.append(record);
+        if (sinceSnapshot != null) sinceSnapshot.add(record);
+    }
+
+    public static void compactIfNeeded() {
+        try {
+            FrameIndexJournal j;
+            boolean force;
+            synchronized (FrameIndexManager.class) {
+                j = journal;
+                force = replayedSegments;
+            }
+            if (j == null) return;
+            long maxBytes = FramesConfig.getLong("index.journalMaxBytes", 1024L * 1024L);
+            long maxAgeMillis = FramesConfig.getInt("index.journalMaxAgeSeconds", 300) * 1000L;
+            long size = j.size();
+            if (force || formatChanged || size >= maxBytes || (size > 0 && j.ageMillis() >= maxAgeMillis)) {
+                compact();
+            } else if (size > 0) {
+                j.sync();
             }
+            evictIdlePartitions();
+        } catch (Exception e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Frames index compaction failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drops chunk partitions nobody has looked at for index.partitionIdleSeconds. Partitions with
+     * changes not yet compacted stay resident until the next snapshot.
+     */
+    private static void evictIdlePartitions() {
+        FrameInstanceStore idx;
+        synchronized (FrameIndexManager.class) {
+            idx = index;
+        }
+        if (idx instanceof PartitionedFrameIndex p) {
+            p.evictIdle(Math.max(0, FramesConfig.getInt("index.partitionIdleSeconds", 120)) * 1000L);
+        }
+    }
 
-            if (newArr.size() == 0) {
-                items.remove(itemId);
+    /**
+     * Writes a snapshot of the resident index and drops the journal segments it covers. A partitioned
+     * index only rewrites the partitions that changed.
+     */
+    public static void compact() throws IOException {
+        String format;
+        BsonDocument snapshot = null;
+        List<FrameInstance> instances = null;
+        PartitionedFrameIndex partitioned = null;
+        PartitionedFrameIndex.Snapshot partitions = null;
+        FrameInstanceStore snapshotted;
+        FrameIndexJournal j;
+        Path root;
+        long sealed;
+        boolean converted;
+        synchronized (FrameIndexManager.class) {
+            if (index == null || journal == null) return;
+            if (journal.size() == 0 && !replayedSegments && !formatChanged) return;
+            if (index instanceof PartitionedFrameIndex p) {
+                format = "partitioned";
+                partitioned = p;
+                partitions = p.snapshotDirty();
             } else {
-                items.append(itemId, newArr);
+                format = indexFormat().equals("binary") ? "binary" : "json";
+                if (format.equals("binary")) {
+                    instances = index.all();
+                    sinceSnapshot = new ArrayList<>();
+                } else {
+                    snapshot = (index instanceof FrameIndex fi ? fi : heapIndex(index)).toDocument();
+                }
             }
+            snapshotted = index;
+            sealed = journal.rotate();
+            j = journal;
+            root = indexRoot;
+            converted = formatChanged;
+            replayedSegments = false;
+            formatChanged = false;
         }
 
-        JsonWriterSettings settings = JsonWriterSettings.builder().indent(true).build();
-        Files.writeString(indexFile, indexDoc.toJson(settings));
-
-        for (String metaFileName : toUpdateMetaFiles) {
+        long start = System.nanoTime();
+        FramesEvents.FileWrite event = new FramesEvents.FileWrite();
+        event.begin();
+        Path indexFile = snapshotFile(root, format);
+        if (partitioned != null) {
             try {
-                Path metaPath = modsRoot.resolve("Frames").resolve(metaFileName);
-                if (!Files.exists(metaPath) || !Files.isRegularFile(metaPath)) continue;
-                String metaTxt = Files.readString(metaPath);
-                BsonDocument metaDoc = BsonDocument.parse(metaTxt);
-                if (!metaDoc.containsKey("frames")) continue;
-                BsonArray framesArr = metaDoc.getArray("frames");
-                BsonArray newFrames = new BsonArray();
-                for (int i = 0; i < framesArr.size(); i++) {
-                    try {
-                        org.bson.BsonDocument fe = framesArr.get(i).asDocument();
-                        boolean match = false;
-                        if (fe.containsKey("coords")) {
-                            org.bson.BsonDocument c = fe.getDocument("coords");
-                            int mx = c.getInt32("x").getValue();
-                            int my = c.getInt32("y").getValue();
-                            int mz = c.getInt32("z").getValue();
-                            if (mx == x && my == y && mz == z) match = true;
-                        }
-                        if (!match) newFrames.add(fe);
-                    } catch (Exception e) {
-                        newFrames.add(framesArr.get(i));
+                partitioned.write(partitions);
+            } catch (IOException e) {
+                partitioned.restoreDirty(partitions);
+                synchronized (FrameIndexManager.class) {
+                    replayedSegments = true;
+                }
+                throw e;
+            }
+        } else if (instances != null) {
+            try {
+                PersistenceWriter.await(PersistenceWriter.writeAsync(indexFile, BinaryFrameIndex.encode(instances)));
+                remap(snapshotted, indexFile);
+            } finally {
+                synchronized (FrameIndexManager.class) {
+                    sinceSnapshot = null;
+                }
+            }
+        } else {
+            JsonWriterSettings settings = JsonWriterSettings.builder().indent(true).build();
+            PersistenceWriter.write(indexFile, snapshot.toJson(settings));
+        }
+        commitWrite(event, "index", null, partitioned != null ? PartitionedFrameIndex.directoryFile(root) : indexFile);
+        j.deleteSegmentsUpTo(sealed);
+        // Snapshots in the other formats are now stale; remove them so they are never loaded instead
+        if (converted) {
+            if (!format.equals("json")) Files.deleteIfExists(root.resolve(INDEX_FILE));
+            if (!format.equals("binary")) Files.deleteIfExists(root.resolve(BinaryFrameIndex.FILE_NAME));
+            if (!format.equals("partitioned")) PartitionedFrameIndex.delete(root);
+        }
+        Frames.LOGGER.atInfo().log("Compacted frames index journal into " + root.relativize(indexFile)
+                + (partitions != null ? " (" + partitions.partitions.size() + " partitions written, " + partitions.emptied.size() + " removed)" : "")
+                + " in " + ((System.nanoTime() - start) / 1_000_000) + " ms");
+    }
+
+    /**
+     * Serves the index from the snapshot just written, carrying over the changes made while it was
+     * written, so the resident overlay only ever holds changes since the last compaction.
+     */
+    private static synchronized void remap(FrameInstanceStore snapshotted, Path indexFile) {
+        if (index != snapshotted || !indexFormat().equals("binary")) return;
+        try {
+            MappedFrameIndex next = readBinary(indexFile);
+            for (BsonDocument record : sinceSnapshot) FrameIndexJournal.apply(next, record);
+            index = next;
+        } catch (IOException e) {
+            // The current index is still complete; it is remapped after the next compaction
+            Frames.LOGGER.atWarning().withCause(e).log("Failed to map frames index snapshot: " + e.getMessage());
+        }
+    }
+
+    private static synchronized void closeJournal() {
+        if (journal == null) return;
+        try {
+            journal.close();
+        } catch (IOException e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Failed to close frames index journal: " + e.getMessage());
+        }
+        journal = null;
+    }
+
+    /**
+     * Folds any outstanding journal records into the snapshot and closes the journal.
+     */
+    public static void shutdown() {
+        try {
+            compact();
+        } catch (Exception e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Failed to compact frames index on shutdown: " + e.getMessage());
+        }
+        closeJournal();
+    }
+
+    public static FrameInstance findInstanceAt(String world, int x, int y, int z, Path modsRoot) {
+        return indexFor(modsRoot).find(world, x, y, z);
+    }
+
+    public static List<FrameInstance> instancesOf(String itemId, Path modsRoot) {
+        return indexFor(modsRoot).instancesOf(itemId);
+    }
+
+    /** Instances in the loaded index, or 0 before it has been loaded. */
+    public static synchronized int size() {
+        return index == null ? 0 : index.size();
+    }
+
+    public static boolean containsItem(String itemId, Path modsRoot) {
+        return indexFor(modsRoot).containsItem(itemId);
+    }
+
+    public static List<String> itemIds(Path modsRoot) {
+        return indexFor(modsRoot).itemIds();
+    }
+
+    public static void registerFrameInstanceInIndex(String itemId, String metaFileName, String world, int x, int y, int z, int blocksX, String creatorUuid, boolean share, Path modsRoot) throws IOException {
+        FrameInstance inst = new FrameInstance(itemId, metaFileName, world, x, y, z, blocksX, creatorUuid, share, java.time.Instant.now().toString());
+        synchronized (FrameIndexManager.class) {
+            indexFor(modsRoot).put(inst);
+            appendToJournal(FrameIndexJournal.putRecord(inst));
+        }
+    }
+
+    public static void removeInstancesAtCoords(String world, int x, int y, int z, Path modsRoot) throws IOException {
+        List<FrameInstance> removed;
+        synchronized (FrameIndexManager.class) {
+            removed = indexFor(modsRoot).removeAt(world, x, y, z);
+            if (removed.isEmpty()) return;
+            appendToJournal(FrameIndexJournal.removeRecord(world, x, y, z));
+        }
+
+        synchronized (META_LOCK) {
+            for (FrameInstance inst : removed) cleanMetaFile(inst.metaFile, inst.world, x, y, z, modsRoot);
+        }
+    }
+
+    /**
+     * Drops the frame entries at x/y/z in world from a metadata file. Entries without a world predate it
+     * and match in any world, like legacy index entries.
+     */
+    private static void cleanMetaFile(String metaFileName, String world, int x, int y, int z, Path modsRoot) {
+        try {
+            Path metaPath = modsRoot.resolve("Frames").resolve(metaFileName);
+            if (!Files.exists(metaPath) || !Files.isRegularFile(metaPath)) return;
+            String metaTxt = PersistenceWriter.readString(metaPath);
+            BsonDocument metaDoc = BsonDocument.parse(metaTxt);
+            if (!metaDoc.containsKey("frames")) return;
+            BsonArray framesArr = metaDoc.getArray("frames");
+            BsonArray newFrames = new BsonArray();
+            for (int i = 0; i < framesArr.size(); i++) {
+                try {
+                    org.bson.BsonDocument fe = framesArr.get(i).asDocument();
+                    boolean match = false;
+                    if (fe.containsKey("coords")) {
+                        org.bson.BsonDocument c = fe.getDocument("coords");
+                        int mx = c.getInt32("x").getValue();
+                        int my = c.getInt32("y").getValue();
+                        int mz = c.getInt32("z").getValue();
+                        String mw = fe.containsKey("world") ? fe.getString("world").getValue() : "";
+                        if (mx == x && my == y && mz == z && (mw.isEmpty() || mw.equals(world))) match = true;
                     }
+                    if (!match) newFrames.add(fe);
+                } catch (Exception e) {
+                    newFrames.add(framesArr.get(i));
                 }
-                metaDoc.append("frames", newFrames);
-                JsonWriterSettings ws = JsonWriterSettings.builder().indent(true).build();
-                Files.writeString(metaPath, metaDoc.toJson(ws));
-            } catch (Exception e) {
-                Frames.LOGGER.atWarning().withCause(e).log("Failed cleaning meta file " + metaFileName + ": " + e.getMessage());
             }
+            metaDoc.append("frames", newFrames);
+            JsonWriterSettings ws = JsonWriterSettings.builder().indent(true).build();
+            writeMetaAsync(metaPath, metaDoc.toJson(ws));
+            FrameCatalog.update(metaPath, metaDoc);
+        } catch (Exception e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Failed cleaning meta file " + metaFileName + ": " + e.getMessage());
         }
     }
 
-    public static void writeFrameMetadata(String itemId, String name, String url, int x, int y, int z, int blocksX, String alignment, String creatorUuid, boolean share, Path modsRoot) throws IOException {
+    public static void writeFrameMetadata(String itemId, String name, String url, String world, int x, int y, int z, int blocksX, String alignment, String creatorUuid, boolean share, Path modsRoot) throws IOException {
         Path metaDir = modsRoot.resolve("Frames");
         Files.createDirectories(metaDir);
         Path metaFile = metaDir.resolve(itemId + ".json");
 
-        try { removeInstancesAtCoords(x, y, z, modsRoot); } catch (Exception e) { Frames.LOGGER.atWarning().withCause(e).log("Failed to remove preexisting instances at coords: " + e.getMessage()); }
+        long start = System.nanoTime();
+        FramesEvents.FileWrite event = new FramesEvents.FileWrite();
+        event.begin();
+        CompletableFuture<Void> written;
+        synchronized (META_LOCK) {
+            written = writeFrameMetadataLocked(itemId, name, url, world, x, y, z, blocksX, alignment, creatorUuid, share, metaFile, modsRoot);
+        }
+        FramesMetrics.INDEX_UPDATE.observeSince(start);
+        written.whenComplete((v, e) -> commitWrite(event, "metadata", itemId, metaFile));
+    }
+
+    /**
+     * Queues a metadata write without waiting for its commit; UI handlers call in here on the world thread.
+     * Readers go through {@link PersistenceWriter#readString}, so they see the queued content.
+     */
+    private static CompletableFuture<Void> writeMetaAsync(Path metaFile, String json) {
+        return PersistenceWriter.writeAsync(metaFile, json).whenComplete((v, e) -> {
+            if (e != null) Frames.LOGGER.atWarning().withCause(e).log("Failed to write frame metadata " + metaFile.getFileName() + ": " + e.getMessage());
+        });
+    }
 
+    private static BsonDocument readMetaWithFields(Path metaFile, String itemId, String name, String url, String alignment) {
         BsonDocument doc;
         if (Files.exists(metaFile)) {
             try {
-                String existing = Files.readString(metaFile);
+                String existing = PersistenceWriter.readString(metaFile);
                 doc = BsonDocument.parse(existing);
             } catch (Exception e) {
                 doc = new BsonDocument();
@@ -162,6 +448,46 @@ public final class FrameIndexManager {
         if (url != null && !url.isEmpty()) doc.append("url", new BsonString(url)); else if (!doc.containsKey("url")) doc.append("url", new BsonString(""));
         if (alignment != null && !alignment.isEmpty()) doc.append("alignment", new BsonString(alignment));
         if (!doc.containsKey("createdAt")) doc.append("createdAt", new BsonString(java.time.Instant.now().toString()));
+        return doc;
+    }
+
+    /**
+     * Writes the item-level metadata (name, url, alignment) for a frame item that has not been placed anywhere yet.
+     */
+    public static void writeItemMetadata(String itemId, String name, String url, String alignment, Path modsRoot) throws IOException {
+        Path metaDir = modsRoot.resolve("Frames");
+        Files.createDirectories(metaDir);
+        Path metaFile = metaDir.resolve(itemId + ".json");
+
+        FramesEvents.FileWrite event = new FramesEvents.FileWrite();
+        event.begin();
+        synchronized (META_LOCK) {
+            BsonDocument doc = readMetaWithFields(metaFile, itemId, name, url, alignment);
+            if (!doc.containsKey("frames")) doc.append("frames", new BsonArray());
+            JsonWriterSettings settings = JsonWriterSettings.builder().indent(true).build();
+            PersistenceWriter.write(metaFile, doc.toJson(settings));
+            FrameCatalog.update(metaFile, doc);
+        }
+        commitWrite(event, "metadata", itemId, metaFile);
+    }
+
+    private static void commitWrite(FramesEvents.FileWrite event, String kind, String itemId, Path file) {
+        if (!event.shouldCommit()) return;
+        event.kind = kind;
+        event.itemId = itemId;
+        event.path = file.toString();
+        try {
+            event.bytes = Files.size(file);
+        } catch (IOException ignored) {
+            // the write may have failed; the event still records how long it took
+        }
+        event.commit();
+    }
+
+    private static CompletableFuture<Void> writeFrameMetadataLocked(String itemId, String name, String url, String world, int x, int y, int z, int blocksX, String alignment, String creatorUuid, boolean share, Path metaFile, Path modsRoot) throws IOException {
+        try { removeInstancesAtCoords(world, x, y, z, modsRoot); } catch (Exception e) { Frames.LOGGER.atWarning().withCause(e).log("Failed to remove preexisting instances at coords: " + e.getMessage()); }
+
+        BsonDocument doc = readMetaWithFields(metaFile, itemId, name, url, alignment);
 
         BsonDocument frameEntry = new BsonDocument();
         BsonDocument coords = new BsonDocument();
@@ -169,6 +495,7 @@ public final class FrameIndexManager {
         coords.append("y", new org.bson.BsonInt32(y));
         coords.append("z", new org.bson.BsonInt32(z));
         frameEntry.append("coords", coords);
+        if (world != null && !world.isEmpty()) frameEntry.append("world", new BsonString(world));
 
         BsonDocument blocks = new BsonDocument();
         blocks.append("x", new org.bson.BsonInt32(blocksX));
@@ -181,12 +508,14 @@ public final class FrameIndexManager {
         arr.add(frameEntry);
 
         JsonWriterSettings settings = JsonWriterSettings.builder().indent(true).build();
-        Files.writeString(metaFile, doc.toJson(settings));
+        CompletableFuture<Void> written = writeMetaAsync(metaFile, doc.toJson(settings));
+        FrameCatalog.update(metaFile, doc);
 
         try {
-            registerFrameInstanceInIndex(itemId, metaFile.getFileName().toString(), x, y, z, blocksX, creatorUuid, share, modsRoot);
+            registerFrameInstanceInIndex(itemId, metaFile.getFileName().toString(), world, x, y, z, blocksX, creatorUuid, share, modsRoot);
         } catch (Exception e) {
             Frames.LOGGER.atWarning().withCause(e).log("Failed to update frames index: " + e.getMessage());
         }
+        return written;
     }
 }
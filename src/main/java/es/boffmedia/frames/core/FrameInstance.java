@@ -0,0 +1,87 @@
+package es.boffmedia.frames.core;
+
+import org.bson.BsonBoolean;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+
+/**
+ * One placed frame as recorded in FramesIndex.json.
+ */
+public final class FrameInstance {
+    public final String itemId;
+    public final String metaFile;
+    // Empty for entries written before the index tracked worlds
+    public final String world;
+    public final int x;
+    public final int y;
+    public final int z;
+    public final int blocksX;
+    public final String creator;
+    public final boolean share;
+    public final String createdAt;
+
+    public FrameInstance(String itemId, String metaFile, String world, int x, int y, int z, int blocksX, String creator, boolean share, String createdAt) {
+        this.itemId = itemId;
+        this.metaFile = metaFile == null ? "" : metaFile;
+        this.world = world == null ? "" : world;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.blocksX = blocksX;
+        this.creator = creator == null ? "" : creator;
+        this.share = share;
+        this.createdAt = createdAt == null ? "" : createdAt;
+    }
+
+    public boolean isVisibleTo(String playerUuid) {
+        if (share) return true;
+        return !creator.isEmpty() && creator.equals(playerUuid);
+    }
+
+    public BsonDocument toDocument() {
+        BsonDocument entry = new BsonDocument();
+        entry.append("metaFile", new BsonString(metaFile));
+        entry.append("creator", new BsonString(creator));
+        entry.append("share", new BsonBoolean(share));
+        if (!world.isEmpty()) entry.append("world", new BsonString(world));
+        BsonDocument coords = new BsonDocument();
+        coords.append("x", new BsonInt32(x));
+        coords.append("y", new BsonInt32(y));
+        coords.append("z", new BsonInt32(z));
+        entry.append("coords", coords);
+        BsonDocument blocks = new BsonDocument();
+        blocks.append("x", new BsonInt32(blocksX));
+        entry.append("blocks", blocks);
+        entry.append("createdAt", new BsonString(createdAt));
+        return entry;
+    }
+
+    /**
+     * Parses an index entry. Returns null for entries without coords, which cannot be addressed.
+     */
+    public static FrameInstance fromDocument(String itemId, BsonDocument inst) {
+        if (!inst.containsKey("coords")) return null;
+        BsonDocument c = inst.getDocument("coords");
+        int x = c.getInt32("x").getValue();
+        int y = c.getInt32("y").getValue();
+        int z = c.getInt32("z").getValue();
+
+        String metaFile = inst.containsKey("metaFile") ? inst.getString("metaFile").getValue() : itemId + ".json";
+        String world = inst.containsKey("world") ? inst.getString("world").getValue() : "";
+        String creator = "";
+        try { if (inst.containsKey("creator")) creator = inst.getString("creator").getValue(); } catch (Exception ignore) {}
+        // share defaults to true for entries that predate the flag
+        boolean share = true;
+        try { if (inst.containsKey("share")) share = inst.getBoolean("share").getValue(); } catch (Exception ignore) {}
+        int blocksX = 1;
+        if (inst.containsKey("blocks")) {
+            BsonDocument b = inst.getDocument("blocks");
+            if (b.containsKey("x")) blocksX = b.getInt32("x").getValue();
+        }
+        String createdAt = "";
+        try { if (inst.containsKey("createdAt")) createdAt = inst.getString("createdAt").getValue(); } catch (Exception ignore) {}
+
+        return new FrameInstance(itemId, metaFile, world, x, y, z, blocksX, creator, share, createdAt);
+    }
+}
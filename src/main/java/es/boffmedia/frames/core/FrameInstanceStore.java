@@ -0,0 +1,26 @@
+package es.boffmedia.frames.core;
+
+import java.util.List;
+
+/**
+ * Operations the index manager and journal replay need from a resident frames index, whether it
+ * is held as one {@link FrameIndex} or split into {@link PartitionedFrameIndex} chunk partitions.
+ */
+public interface FrameInstanceStore {
+    int size();
+
+    FrameInstance find(String world, int x, int y, int z);
+
+    FrameInstance put(FrameInstance inst);
+
+    List<FrameInstance> removeAt(String world, int x, int y, int z);
+
+    List<FrameInstance> instancesOf(String itemId);
+
+    boolean containsItem(String itemId);
+
+    /** Ids of every item that has at least one instance. */
+    List<String> itemIds();
+
+    List<FrameInstance> all();
+}
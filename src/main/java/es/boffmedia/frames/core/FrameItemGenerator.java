@@ -2,7 +2,9 @@ package es.boffmedia.frames.core;
 
 import es.boffmedia.frames.AssetJsonBuilder;
 import es.boffmedia.frames.Frames;
+import es.boffmedia.frames.FramesConfig;
 
+import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
@@ -10,7 +12,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.security.SecureRandom;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Generates blockymodels, textures and item JSON files for dynamic frames.
@@ -32,35 +36,91 @@ public final class FrameItemGenerator {
 
     private static BufferedImage padToMultipleOf32(BufferedImage image) {
         if (image == null) return null;
+        long start = System.nanoTime();
         int w = image.getWidth();
         int h = image.getHeight();
         int newW = ((w + 31) / 32) * 32;
         int newH = ((h + 31) / 32) * 32;
 
+        if (newW == w && newH == h) {
+            FramesMetrics.PAD.observeSince(start);
+            return image;
+        }
         Frames.LOGGER.atInfo().log("Padding image from " + w + "x" + h + " to " + newW + "x" + newH);
-
-        if (newW == w && newH == h) return image;
         BufferedImage out = new BufferedImage(newW, newH, BufferedImage.TYPE_INT_ARGB);
         Graphics2D g = out.createGraphics();
         g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
         g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         g.drawImage(image, 0, 0, newW, newH, null);
         g.dispose();
+        FramesMetrics.PAD.observeSince(start);
         return out;
     }
 
+    /**
+     * Transform stage: returns the image as it will be stored in the texture. Images larger than
+     * pixelsPerBlock per block (in either direction) are downscaled first; 0 keeps the native resolution.
+     */
+    public static BufferedImage prepareImage(BufferedImage image, int blocksX, int pixelsPerBlock) {
+        if (image == null) return null;
+        FramesEvents.Transform event = new FramesEvents.Transform();
+        event.begin();
+        event.sourceWidth = image.getWidth();
+        event.sourceHeight = image.getHeight();
+        if (pixelsPerBlock > 0) {
+            int w = image.getWidth();
+            int h = image.getHeight();
+            int bx = Math.max(1, blocksX);
+            int by = Math.max(1, Math.round((float) bx * (float) h / (float) w));
+            double scale = Math.min(1.0, Math.min((double) bx * pixelsPerBlock / w, (double) by * pixelsPerBlock / h));
+            if (scale < 1.0) {
+                int tw = Math.max(1, (int) Math.round(w * scale));
+                int th = Math.max(1, (int) Math.round(h * scale));
+                Frames.LOGGER.atInfo().log("Downscaling image from " + w + "x" + h + " to " + tw + "x" + th + " (" + pixelsPerBlock + " px per block)");
+                image = ImageProcessor.downscale(image, tw, th);
+            }
+        }
+        // We need to pad the image to a multiple of 32 pixels in both dimensions to avoid a bug in Hytale's rendering engine
+        BufferedImage padded = padToMultipleOf32(image);
+        event.width = padded.getWidth();
+        event.height = padded.getHeight();
+        event.blocksX = blocksX;
+        event.commit();
+        return padded;
+    }
+
+    /** Pixels per block applied to uploads without the high resolution permission. */
+    public static int defaultPixelsPerBlock() {
+        return Math.max(0, FramesConfig.getInt("resolution.pixelsPerBlock", 64));
+    }
+
     public static String addImageAsItemFromImage(BufferedImage image, String providedName, int blocksX, int blocksY, String alignment, Path modsRoot) throws IOException {
         if (image == null) throw new IOException("Provided image is null");
 
-        // We need to pad the image to a multiple of 32 pixels in both dimensions to avoid a bug in Hytale's rendering engine
-        image = padToMultipleOf32(image);
-
-        int imgPixelsX = image.getWidth();
-        int imgPixelsY = image.getHeight();
+        image = prepareImage(image, blocksX, defaultPixelsPerBlock());
+        ImageDedupTable.Claim claim = ImageDedupTable.claimBlocking(dedupKey(image, blocksX, alignment), modsRoot);
+        if (!claim.owner()) {
+            Frames.LOGGER.atInfo().log("Reusing " + claim.existingItemId + " for identical image");
+            return claim.existingItemId;
+        }
+        try {
+            String itemId = persistFrameAssets(image, null, providedName, blocksX, alignment, modsRoot);
+            ImageDedupTable.record(claim.key, itemId, modsRoot);
+            claim.complete(itemId);
+            return itemId;
+        } finally {
+            claim.release();
+        }
+    }
 
-        int sizeX = Math.max(1, imgPixelsX);
-        int sizeY = Math.max(1, imgPixelsY);
+    /**
+     * Dedup key of a prepared image: identical pixels only share an item when block width and alignment match too.
+     */
+    public static String dedupKey(BufferedImage prepared, int blocksX, String alignment) {
+        return ImageDedupTable.key(ImageDedupTable.hashPixels(prepared), blocksX, alignment);
+    }
 
+    public static String resolveBaseName(String providedName) {
         String baseName = null;
         if (providedName != null) {
             String n = providedName.trim();
@@ -78,17 +138,76 @@ public final class FrameItemGenerator {
             }
         }
         if (baseName == null || baseName.isEmpty()) baseName = generateRandomName(8);
+        return baseName;
+    }
 
-        int w = Math.max(1, sizeX / 32);
-        int h = Math.max(1, sizeY / 32);
-        String sizeKey = w + "x" + h;
+    /**
+     * Persist stage: moves the encoded texture into place and writes the blockymodel and the item JSON
+     * for an already prepared image. The encoded file is consumed (or deleted on failure). The model only
+     * depends on the geometry, so it is shared with every frame of the same geometry and only written
+     * when no frame has needed it yet.
+     */
+    public static String persistFrameAssets(int imgPixelsX, int imgPixelsY, Path encodedPng, String providedName, int blocksX, String alignment, Path modsRoot) throws IOException {
+        return persistFrameAssets(imgPixelsX, imgPixelsY, encodedPng, providedName, blocksX, alignment, modsRoot, true);
+    }
 
-        String fileName = baseName + ".png";
-        Path out = ImageProcessor.saveImageToMods(image, fileName, sizeKey, modsRoot);
-        String texturePath = "Blocks/Frames/Images/" + fileName;
+    /**
+     * As above; with allowAtlas false the texture always gets its own PNG, which is what staging directories need.
+     */
+    public static String persistFrameAssets(int imgPixelsX, int imgPixelsY, Path encodedPng, String providedName, int blocksX, String alignment, Path modsRoot, boolean allowAtlas) throws IOException {
+        return persistFrameAssets(imgPixelsX, imgPixelsY, encodedPng, providedName, blocksX, alignment, modsRoot, allowAtlas, modsRoot);
+    }
+
+    /**
+     * As above, writing into modsRoot (a staging directory) while shared models are looked up in liveRoot,
+     * the mods folder the staged files are published to. Only a model missing from both is written. With
+     * a separate live root the caller removes the item's legacy model with {@link #deleteLegacyModel}
+     * once the new item JSON is published.
+     */
+    public static String persistFrameAssets(int imgPixelsX, int imgPixelsY, Path encodedPng, String providedName, int blocksX, String alignment, Path modsRoot, boolean allowAtlas, Path liveRoot) throws IOException {
+        return persistFrameAssets(imgPixelsX, imgPixelsY, encodedPng, null, providedName, blocksX, alignment, modsRoot, allowAtlas, liveRoot);
+    }
+
+    /**
+     * As above for a prepared image. encodedPng may be null: a texture that goes into the atlas
+     * ({@link TextureAtlas#accepts}) is drawn straight from the image, and any other is encoded here.
+     */
+    public static String persistFrameAssets(BufferedImage prepared, Path encodedPng, String providedName, int blocksX, String alignment, Path modsRoot) throws IOException {
+        return persistFrameAssets(prepared.getWidth(), prepared.getHeight(), encodedPng, prepared, providedName, blocksX, alignment, modsRoot, true, modsRoot);
+    }
 
-        Path modelOut = modsRoot.resolve(Paths.get("Common", "Blocks", "Frames", baseName + ".blockymodel"));
-        Files.createDirectories(modelOut.getParent());
+    private static String persistFrameAssets(int imgPixelsX, int imgPixelsY, Path encodedPng, BufferedImage prepared, String providedName, int blocksX, String alignment, Path modsRoot, boolean allowAtlas, Path liveRoot) throws IOException {
+        int sizeX = Math.max(1, imgPixelsX);
+        int sizeY = Math.max(1, imgPixelsY);
+
+        String baseName = resolveBaseName(providedName);
+
+        String itemId = "Boff_Frame_" + baseName;
+        String fileName = baseName + ".png";
+        Path out;
+        String texturePath;
+        int uvX = 0;
+        int uvY = 0;
+        try {
+            if (allowAtlas && TextureAtlas.accepts(sizeX, sizeY)) {
+                BufferedImage texture = prepared != null ? prepared : ImageIO.read(encodedPng.toFile());
+                if (texture == null) throw new IOException("Failed to read encoded texture " + encodedPng);
+                TextureAtlas.Slot slot = TextureAtlas.place(itemId, texture, modsRoot);
+                Files.deleteIfExists(ImageProcessor.imagePathFor(fileName, modsRoot));
+                out = TextureAtlas.pagePath(slot.page, modsRoot);
+                texturePath = slot.texturePath();
+                uvX = slot.x;
+                uvY = slot.y;
+            } else {
+                // A re-upload under the same name may previously have been packed into the atlas
+                if (allowAtlas) TextureAtlas.remove(itemId, modsRoot);
+                if (encodedPng == null) encodedPng = PngEncoder.encodeToTempFile(prepared, modsRoot);
+                out = ImageProcessor.moveEncodedPngToMods(encodedPng, fileName, modsRoot);
+                texturePath = "Blocks/Frames/Images/" + fileName;
+            }
+        } finally {
+            if (encodedPng != null) Files.deleteIfExists(encodedPng);
+        }
 
         float zPosition = ((float) sizeX) / (-blocksX * 2);
         int computedBlocksY = Math.max(1, Math.round((float) blocksX * (float) imgPixelsY / (float) imgPixelsX));
@@ -143,18 +262,62 @@ public final class FrameItemGenerator {
             }
         }
 
-        String modelJson = AssetJsonBuilder.buildBlockymodel(baseName, sizeX, sizeY, (int) yPosition, (int) zPosition, offsetX, offsetY, offsetZ);
-        Files.writeString(modelOut, modelJson);
+        long writeStart = System.nanoTime();
+        String modelName = AssetJsonBuilder.sharedModelName(sizeX, sizeY, (int) yPosition, (int) zPosition, offsetX, offsetY, offsetZ, uvX, uvY);
+        Path modelOut = modsRoot.resolve(Paths.get("Common", "Blocks", "Frames")).resolve(modelName);
+        Path liveModel = liveRoot.resolve(Paths.get("Common", "Blocks", "Frames")).resolve(modelName);
+        FramesEvents.FileWrite modelEvent = null;
+        String modelJson = null;
+        CompletableFuture<Void> modelWrite = null;
+        if (Files.isRegularFile(liveModel) || Files.isRegularFile(modelOut)) {
+            // Touching it keeps the asset reconciler's grace period from quarantining a model that is in use again
+            if (Files.isRegularFile(liveModel)) Files.setLastModifiedTime(liveModel, FileTime.fromMillis(System.currentTimeMillis()));
+            FramesMetrics.SHARED_MODEL_HITS.increment();
+        } else {
+            Files.createDirectories(modelOut.getParent());
+            modelEvent = new FramesEvents.FileWrite();
+            modelEvent.begin();
+            modelJson = AssetJsonBuilder.buildBlockymodel(baseName, sizeX, sizeY, (int) yPosition, (int) zPosition, offsetX, offsetY, offsetZ, uvX, uvY);
+            modelWrite = PersistenceWriter.writeAsync(modelOut, modelJson);
+        }
 
         Path itemOut = modsRoot.resolve(Paths.get("Server", "Item", "Items", "Furniture", "Frames", "Boff_Frame_" + baseName + ".json"));
         Files.createDirectories(itemOut.getParent());
 
+        FramesEvents.FileWrite itemEvent = new FramesEvents.FileWrite();
+        itemEvent.begin();
         float scaleFactor = ((float) Math.max(1, blocksX) * 32.0f) / (float) imgPixelsX;
-        String itemJson = AssetJsonBuilder.buildItemJson(baseName, texturePath, scaleFactor);
-        Files.writeString(itemOut, itemJson);
+        String itemJson = AssetJsonBuilder.buildItemJson(baseName, "Blocks/Frames/" + modelName, texturePath, scaleFactor);
+        // Both files land in the same commit, the model first
+        CompletableFuture<Void> itemWrite = PersistenceWriter.writeAsync(itemOut, itemJson);
+        if (modelWrite != null) {
+            PersistenceWriter.await(modelWrite);
+            commitWrite(modelEvent, "model", itemId, modelOut, modelJson);
+        }
+        PersistenceWriter.await(itemWrite);
+        commitWrite(itemEvent, "item", itemId, itemOut, itemJson);
+        if (liveRoot.equals(modsRoot)) deleteLegacyModel(itemId, modsRoot);
+        FramesMetrics.ASSET_WRITE.observeSince(writeStart);
 
-        String itemId = "Boff_Frame_" + baseName;
         Frames.LOGGER.atInfo().log("Created dynamic item " + itemId + " model=" + modelOut + " image=" + out + " json=" + itemOut);
         return itemId;
     }
+
+    /**
+     * Removes the item's own model from before models were shared; a re-upload under the same name may
+     * still have one. Call only once the item JSON pointing at the shared model is in place.
+     */
+    public static void deleteLegacyModel(String itemId, Path modsRoot) throws IOException {
+        String baseName = itemId.startsWith("Boff_Frame_") ? itemId.substring("Boff_Frame_".length()) : itemId;
+        Files.deleteIfExists(modsRoot.resolve(Paths.get("Common", "Blocks", "Frames", baseName + ".blockymodel")));
+    }
+
+    private static void commitWrite(FramesEvents.FileWrite event, String kind, String itemId, Path file, String content) {
+        if (!event.shouldCommit()) return;
+        event.kind = kind;
+        event.itemId = itemId;
+        event.path = file.toString();
+        event.bytes = content.length();
+        event.commit();
+    }
 }
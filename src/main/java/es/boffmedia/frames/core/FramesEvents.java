@@ -0,0 +1,139 @@
+package es.boffmedia.frames.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events for the frame pipeline, so a recording names the frame operation behind
+ * a slow tick instead of showing anonymous ImageIO and Files frames. JFR adds the thread, the stack
+ * trace and the duration to every event; allocation samples on the same thread during an event show
+ * what it allocated. An event that is not enabled in the running recording costs a field check.
+ */
+public final class FramesEvents {
+    private FramesEvents() {}
+
+    private static final String CATEGORY = "Boffmedia Frames";
+
+    @Name("es.boffmedia.frames.Download")
+    @Label("Frame Image Download")
+    @Category({CATEGORY, "Pipeline"})
+    public static final class Download extends Event {
+        @Label("URL")
+        public String url;
+        @Label("Size")
+        @DataAmount
+        public long bytes;
+        @Label("From Cache")
+        public boolean cached;
+    }
+
+    @Name("es.boffmedia.frames.Decode")
+    @Label("Frame Image Decode")
+    @Category({CATEGORY, "Pipeline"})
+    public static final class Decode extends Event {
+        @Label("Source")
+        public String source;
+        @Label("Encoded Size")
+        @DataAmount
+        public long bytes;
+        @Label("Source Width")
+        public int sourceWidth;
+        @Label("Source Height")
+        public int sourceHeight;
+        @Label("Width")
+        public int width;
+        @Label("Height")
+        public int height;
+    }
+
+    @Name("es.boffmedia.frames.Transform")
+    @Label("Frame Image Transform")
+    @Description("Downscale to the texture budget and pad to a multiple of 32 pixels")
+    @Category({CATEGORY, "Pipeline"})
+    public static final class Transform extends Event {
+        @Label("Source Width")
+        public int sourceWidth;
+        @Label("Source Height")
+        public int sourceHeight;
+        @Label("Width")
+        public int width;
+        @Label("Height")
+        public int height;
+        @Label("Blocks Wide")
+        public int blocksX;
+    }
+
+    @Name("es.boffmedia.frames.Encode")
+    @Label("Frame PNG Encode")
+    @Category({CATEGORY, "Pipeline"})
+    public static final class Encode extends Event {
+        @Label("Width")
+        public int width;
+        @Label("Height")
+        public int height;
+        @Label("Encoded Size")
+        @DataAmount
+        public long bytes;
+    }
+
+    @Name("es.boffmedia.frames.FileWrite")
+    @Label("Frame File Write")
+    @Description("A metadata, index, model, item or state document write, including the wait for its commit")
+    @Category({CATEGORY, "Storage"})
+    public static final class FileWrite extends Event {
+        @Label("Kind")
+        public String kind;
+        @Label("Item Id")
+        public String itemId;
+        @Label("Path")
+        public String path;
+        @Label("Size")
+        @DataAmount
+        public long bytes;
+    }
+
+    @Name("es.boffmedia.frames.Commit")
+    @Label("Frame Persistence Commit")
+    @Category({CATEGORY, "Storage"})
+    public static final class Commit extends Event {
+        @Label("Files")
+        public int files;
+        @Label("Size")
+        @DataAmount
+        public long bytes;
+        @Label("Synced")
+        public boolean fsync;
+    }
+
+    @Name("es.boffmedia.frames.BlockApply")
+    @Label("Frame Block Apply")
+    @Category({CATEGORY, "World"})
+    public static final class BlockApply extends Event {
+        @Label("Operation")
+        public String operation;
+        @Label("Item Id")
+        public String itemId;
+        @Label("World")
+        public String world;
+        @Label("X")
+        public int x;
+        @Label("Y")
+        public int y;
+        @Label("Z")
+        public int z;
+        @Label("Applied")
+        public boolean applied;
+    }
+
+    @Name("es.boffmedia.frames.PageBuild")
+    @Label("Frame Page Build")
+    @Category({CATEGORY, "UI"})
+    public static final class PageBuild extends Event {
+        @Label("Page")
+        public String page;
+    }
+}
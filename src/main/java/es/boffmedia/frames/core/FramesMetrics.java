@@ -0,0 +1,237 @@
+package es.boffmedia.frames.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process metrics: latency histograms per upload stage, counters and gauges. Recording is a couple
+ * of LongAdder increments, so it is cheap enough for every upload. {@link #prometheus()} renders
+ * everything in the Prometheus text format for /framesstats and {@link MetricsHttpServer}.
+ */
+public final class FramesMetrics {
+    private FramesMetrics() {}
+
+    // Histogram bucket upper bounds in seconds
+    private static final double[] BOUNDS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+
+    public static final class Histogram {
+        final String stage;
+        private final long[] boundsNanos = new long[BOUNDS.length];
+        private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+
+        Histogram(String stage) {
+            this.stage = stage;
+            for (int i = 0; i < BOUNDS.length; i++) boundsNanos[i] = (long) (BOUNDS[i] * 1e9);
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        public void observeNanos(long nanos) {
+            int i = 0;
+            while (i < boundsNanos.length && nanos > boundsNanos[i]) i++;
+            buckets[i].increment();
+            count.increment();
+            sumNanos.add(nanos);
+        }
+
+        /** Records the time elapsed since startNanos (a System.nanoTime() value). */
+        public void observeSince(long startNanos) {
+            observeNanos(System.nanoTime() - startNanos);
+        }
+
+        public String stage() {
+            return stage;
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public double meanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : sumNanos.sum() / 1e6 / n;
+        }
+
+        /** Upper bound of the bucket holding quantile q, in milliseconds; +Inf past the last bucket. */
+        public double quantileMillis(double q) {
+            long n = count.sum();
+            if (n == 0) return 0;
+            long rank = (long) Math.ceil(q * n);
+            long seen = 0;
+            for (int i = 0; i < BOUNDS.length; i++) {
+                seen += buckets[i].sum();
+                if (seen >= rank) return BOUNDS[i] * 1000;
+            }
+            return Double.POSITIVE_INFINITY;
+        }
+    }
+
+    public static final class Counter {
+        final String name;
+        final String label;
+        private final LongAdder value = new LongAdder();
+
+        Counter(String name, String label) {
+            this.name = name;
+            this.label = label;
+        }
+
+        public void increment() {
+            value.increment();
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    private static final class Gauge {
+        final String name;
+        final String help;
+        final LongSupplier value;
+
+        Gauge(String name, String help, LongSupplier value) {
+            this.name = name;
+            this.help = help;
+            this.value = value;
+        }
+    }
+
+    private static final Map<String, Histogram> stages = Collections.synchronizedMap(new LinkedHashMap<>());
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final Map<String, String> counterHelp = new ConcurrentHashMap<>();
+    private static final List<Gauge> gauges = new ArrayList<>();
+
+    public static Histogram stage(String stage) {
+        return stages.computeIfAbsent(stage, Histogram::new);
+    }
+
+    // Upload stages, in pipeline order
+    public static final Histogram DOWNLOAD = stage("download");
+    public static final Histogram DECODE = stage("decode");
+    public static final Histogram TRANSFORM = stage("transform");
+    public static final Histogram PAD = stage("pad");
+    public static final Histogram ENCODE = stage("encode");
+    public static final Histogram PNG_ENCODE = stage("png_encode");
+    public static final Histogram PERSIST = stage("persist");
+    public static final Histogram ASSET_WRITE = stage("asset_write");
+    public static final Histogram INDEX_UPDATE = stage("index_update");
+    public static final Histogram APPLY_WAIT = stage("apply_wait");
+    public static final Histogram BLOCK_APPLY = stage("block_apply");
+    public static final Histogram UPLOAD = stage("upload_total");
+
+    public static final Counter UPLOADS = counter("frames_uploads_total", "Uploads accepted by the image pipeline");
+    public static final Counter UPLOADS_REJECTED = counter("frames_uploads_rejected_total", "Uploads refused because the pipeline was full");
+    public static final Counter UPLOAD_FAILURES = counter("frames_upload_failures_total", "Uploads that failed in any stage");
+    public static final Counter DEDUP_HITS = counter("frames_dedup_hits_total", "Uploads that reused an existing identical item");
+    public static final Counter SHARED_MODEL_HITS = counter("frames_shared_model_hits_total", "Frames that reused an existing model of the same geometry");
+
+    static {
+        gauge("frames_index_instances", "Frame instances in the index", FrameIndexManager::size);
+        gauge("frames_pending_applies", "Block replacements waiting for their asset to load", BlockApplyScheduler::pendingCount);
+        gauge("frames_ingest_in_flight", "Uploads accepted but not finished", IngestionPipeline::queueDepth);
+        gauge("frames_persistence_commits_total", "Group commits made by the persistence writer", PersistenceWriter::commits);
+        gauge("frames_persistence_coalesced_total", "Writes merged into a later write of the same file", PersistenceWriter::coalescedWrites);
+    }
+
+    public static Counter counter(String name, String help) {
+        counterHelp.putIfAbsent(name, help);
+        return counters.computeIfAbsent(name, k -> new Counter(name, null));
+    }
+
+    /** A counter with one label, e.g. the permission node of a denial. */
+    public static Counter counter(String name, String help, String labelName, String labelValue) {
+        counterHelp.putIfAbsent(name, help);
+        String label = labelName + "=\"" + escape(labelValue) + "\"";
+        return counters.computeIfAbsent(name + "{" + label + "}", k -> new Counter(name, label));
+    }
+
+    public static void permissionDenied(String node) {
+        counter("frames_permission_denials_total", "Permission checks that refused an action", "node", node).increment();
+    }
+
+    public static synchronized void gauge(String name, String help, LongSupplier value) {
+        gauges.add(new Gauge(name, help, value));
+    }
+
+    /** Stage histograms in registration order, which for the built-in stages is pipeline order. */
+    public static List<Histogram> stages() {
+        synchronized (stages) {
+            return new ArrayList<>(stages.values());
+        }
+    }
+
+    /** Counter values keyed by name (with labels), sorted. */
+    public static Map<String, Long> counterValues() {
+        Map<String, Long> out = new TreeMap<>();
+        for (Map.Entry<String, Counter> e : counters.entrySet()) out.put(e.getKey(), e.getValue().get());
+        return out;
+    }
+
+    public static synchronized Map<String, Long> gaugeValues() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        for (Gauge g : gauges) out.put(g.name, safe(g.value));
+        return out;
+    }
+
+    private static long safe(LongSupplier s) {
+        try {
+            return s.getAsLong();
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /** Renders every metric in the Prometheus text exposition format. */
+    public static String prometheus() {
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("# HELP frames_stage_duration_seconds Time spent in each upload stage\n");
+        sb.append("# TYPE frames_stage_duration_seconds histogram\n");
+        for (Histogram h : stages()) {
+            String label = "stage=\"" + h.stage + "\"";
+            long cumulative = 0;
+            for (int i = 0; i < BOUNDS.length; i++) {
+                cumulative += h.buckets[i].sum();
+                sb.append("frames_stage_duration_seconds_bucket{").append(label).append(",le=\"").append(BOUNDS[i]).append("\"} ").append(cumulative).append('\n');
+            }
+            cumulative += h.buckets[BOUNDS.length].sum();
+            sb.append("frames_stage_duration_seconds_bucket{").append(label).append(",le=\"+Inf\"} ").append(cumulative).append('\n');
+            sb.append("frames_stage_duration_seconds_sum{").append(label).append("} ").append(h.sumNanos.sum() / 1e9).append('\n');
+            sb.append("frames_stage_duration_seconds_count{").append(label).append("} ").append(h.count.sum()).append('\n');
+        }
+
+        Map<String, List<Counter>> families = new TreeMap<>();
+        for (Counter c : counters.values()) families.computeIfAbsent(c.name, k -> new ArrayList<>()).add(c);
+        for (Map.Entry<String, List<Counter>> e : families.entrySet()) {
+            sb.append("# HELP ").append(e.getKey()).append(' ').append(counterHelp.getOrDefault(e.getKey(), e.getKey())).append('\n');
+            sb.append("# TYPE ").append(e.getKey()).append(" counter\n");
+            for (Counter c : e.getValue()) {
+                sb.append(c.name);
+                if (c.label != null) sb.append('{').append(c.label).append('}');
+                sb.append(' ').append(c.get()).append('\n');
+            }
+        }
+
+        synchronized (FramesMetrics.class) {
+            for (Gauge g : gauges) {
+                String type = g.name.endsWith("_total") ? "counter" : "gauge";
+                sb.append("# HELP ").append(g.name).append(' ').append(g.help).append('\n');
+                sb.append("# TYPE ").append(g.name).append(' ').append(type).append('\n');
+                sb.append(g.name).append(' ').append(safe(g.value)).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
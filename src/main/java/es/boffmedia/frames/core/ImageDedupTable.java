@@ -0,0 +1,301 @@
+package es.boffmedia.frames.core;
+
+import es.boffmedia.frames.Frames;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.json.JsonWriterSettings;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed table (ImageHashes.json) mapping the hash of a prepared texture plus its
+ * block width and alignment to the generated item that already renders it, so duplicate uploads
+ * reuse the existing Boff_Frame_&lt;Name&gt; assets instead of writing new ones. An upload claims its key
+ * before encoding, so identical uploads in flight at the same time wait for the first one's item.
+ */
+public final class ImageDedupTable {
+    private ImageDedupTable() {}
+
+    private static final String TABLE_FILE = "ImageHashes.json";
+
+    private static Map<String, String> byKey;
+    private static Map<String, Set<String>> keysByItem;
+    private static Path tableRoot;
+    // Keys being created; completed with the item id, or null if the creating upload failed
+    private static final Map<String, CompletableFuture<String>> inflight = new ConcurrentHashMap<>();
+
+    /**
+     * Result of {@link #claim}: an existing item to reuse, ownership of the key, or another upload
+     * that is creating the same item.
+     */
+    public static final class Claim {
+        public final String key;
+        /** The item that already renders this image, or null. */
+        public final String existingItemId;
+        private final CompletableFuture<String> owned;
+        private final CompletableFuture<String> pending;
+
+        private Claim(String key, String existingItemId, CompletableFuture<String> owned, CompletableFuture<String> pending) {
+            this.key = key;
+            this.existingItemId = existingItemId;
+            this.owned = owned;
+            this.pending = pending;
+        }
+
+        /** True when the caller must create the item, then {@link #complete} and {@link #release} the claim. */
+        public boolean owner() {
+            return owned != null;
+        }
+
+        /** Completes with the other upload's item id, or null if it failed; null unless another upload owns the key. */
+        public CompletableFuture<String> pending() {
+            return pending;
+        }
+
+        /** Hands the created item to the uploads waiting on this key. */
+        public void complete(String itemId) {
+            if (owned != null) owned.complete(itemId);
+        }
+
+        /**
+         * Gives up the key, after {@link #record} or on failure; waiting uploads that did not get an item
+         * claim it again. Safe to call more than once.
+         */
+        public void release() {
+            if (owned == null) return;
+            inflight.remove(key, owned);
+            owned.complete(null);
+        }
+    }
+
+    /**
+     * SHA-256 over the dimensions and ARGB pixels of the image exactly as it will be stored.
+     */
+    public static String hashPixels(BufferedImage image) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        int w = image.getWidth();
+        int h = image.getHeight();
+        md.update(ByteBuffer.allocate(8).putInt(w).putInt(h).array());
+        int[] row = new int[w];
+        ByteBuffer buf = ByteBuffer.allocate(w * 4);
+        for (int y = 0; y < h; y++) {
+            image.getRGB(0, y, w, 1, row, 0, w);
+            buf.clear();
+            buf.asIntBuffer().put(row);
+            md.update(buf.array(), 0, w * 4);
+        }
+        StringBuilder sb = new StringBuilder(64);
+        for (byte b : md.digest()) sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
+    public static String key(String pixelHash, int blocksX, String alignment) {
+        String align = alignment == null || alignment.isEmpty() ? "CENTERED" : alignment.toUpperCase();
+        return pixelHash + ":" + Math.max(1, blocksX) + ":" + align;
+    }
+
+    private static synchronized void ensureLoaded(Path modsRoot) {
+        if (byKey != null && modsRoot.equals(tableRoot)) return;
+        byKey = new HashMap<>();
+        keysByItem = new HashMap<>();
+        tableRoot = modsRoot;
+
+        Path file = modsRoot.resolve(TABLE_FILE);
+        if (!Files.exists(file)) {
+            rebuild(modsRoot);
+            return;
+        }
+        try {
+            BsonDocument doc = BsonDocument.parse(Files.readString(file));
+            if (doc.containsKey("entries")) {
+                BsonDocument entries = doc.getDocument("entries");
+                for (String k : entries.keySet()) link(k, entries.getString(k).getValue());
+            }
+        } catch (Exception e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Failed to read " + TABLE_FILE + ", rebuilding: " + e.getMessage());
+            rebuild(modsRoot);
+        }
+    }
+
+    private static void link(String key, String itemId) {
+        String previous = byKey.put(key, itemId);
+        if (previous != null && !previous.equals(itemId)) unlinkKey(previous, key);
+        keysByItem.computeIfAbsent(itemId, k -> new HashSet<>()).add(key);
+    }
+
+    private static void unlinkKey(String itemId, String key) {
+        Set<String> keys = keysByItem.get(itemId);
+        if (keys == null) return;
+        keys.remove(key);
+        if (keys.isEmpty()) keysByItem.remove(itemId);
+    }
+
+    private static void forgetItem(String itemId) {
+        Set<String> keys = keysByItem.remove(itemId);
+        if (keys == null) return;
+        for (String k : keys) byKey.remove(k);
+    }
+
+    private static boolean assetsExist(String itemId, Path modsRoot) {
+        if (!itemId.startsWith("Boff_Frame_")) return false;
+        String baseName = itemId.substring("Boff_Frame_".length());
+        Path item = modsRoot.resolve(Paths.get("Server", "Item", "Items", "Furniture", "Frames", itemId + ".json"));
+        Path image = ImageProcessor.imagePathFor(baseName + ".png", modsRoot);
+        return Files.exists(item) && (Files.exists(image) || TextureAtlas.slotOf(itemId, modsRoot) != null);
+    }
+
+    private static BufferedImage readTexture(String itemId, Path modsRoot) throws IOException {
+        Path image = ImageProcessor.imagePathFor(itemId.substring("Boff_Frame_".length()) + ".png", modsRoot);
+        if (Files.exists(image)) return ImageIO.read(image.toFile());
+        return TextureAtlas.readRegion(itemId, modsRoot);
+    }
+
+    /**
+     * Returns the item already generated for this key, or null. Entries whose assets were deleted are dropped.
+     */
+    public static synchronized String lookup(String key, Path modsRoot) {
+        ensureLoaded(modsRoot);
+        String itemId = byKey.get(key);
+        if (itemId == null) return null;
+        if (assetsExist(itemId, modsRoot)) {
+            FramesMetrics.DEDUP_HITS.increment();
+            return itemId;
+        }
+        forgetItem(itemId);
+        save(modsRoot);
+        return null;
+    }
+
+    /**
+     * Claims key without blocking. The claim holds the item to reuse, makes the caller the owner that
+     * creates it, or carries the pending result of the upload that already owns it.
+     */
+    public static Claim claim(String key, Path modsRoot) {
+        String existing = lookup(key, modsRoot);
+        if (existing != null) return new Claim(key, existing, null, null);
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> other = inflight.putIfAbsent(key, mine);
+        if (other != null) {
+            String done = other.getNow(null);
+            return done == null ? new Claim(key, null, null, other) : reused(key, done);
+        }
+        // The previous owner may have recorded the key and released it since the lookup
+        existing = lookup(key, modsRoot);
+        if (existing != null) {
+            inflight.remove(key, mine);
+            mine.complete(existing);
+            return new Claim(key, existing, null, null);
+        }
+        return new Claim(key, null, mine, null);
+    }
+
+    /** As {@link #claim}, but waits for another upload of the same image instead of returning it pending. */
+    public static Claim claimBlocking(String key, Path modsRoot) {
+        while (true) {
+            Claim claim = claim(key, modsRoot);
+            if (claim.pending == null) return claim;
+            String itemId = claim.pending.join();
+            if (itemId != null) return reused(key, itemId);
+        }
+    }
+
+    /** A claim for an item another upload created while this one waited on {@link Claim#pending()}. */
+    public static Claim reused(String key, String itemId) {
+        FramesMetrics.DEDUP_HITS.increment();
+        return new Claim(key, itemId, null, null);
+    }
+
+    /**
+     * Records that itemId now renders key. Any older keys for itemId are dropped since its assets were overwritten.
+     */
+    public static synchronized void record(String key, String itemId, Path modsRoot) {
+        ensureLoaded(modsRoot);
+        forgetItem(itemId);
+        link(key, itemId);
+        save(modsRoot);
+    }
+
+    private static void save(Path modsRoot) {
+        BsonDocument entries = new BsonDocument();
+        for (Map.Entry<String, String> e : byKey.entrySet()) entries.append(e.getKey(), new BsonString(e.getValue()));
+        try {
+            JsonWriterSettings settings = JsonWriterSettings.builder().indent(true).build();
+            Files.createDirectories(modsRoot);
+            PersistenceWriter.writeAsync(modsRoot.resolve(TABLE_FILE), new BsonDocument("entries", entries).toJson(settings));
+        } catch (IOException e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Failed to write " + TABLE_FILE + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuilds the table from the generated textures (Images/ and atlas pages), using each item's metadata for block width and alignment.
+     */
+    public static synchronized int rebuild(Path modsRoot) {
+        byKey = new HashMap<>();
+        keysByItem = new HashMap<>();
+        tableRoot = modsRoot;
+
+        Path metaDir = modsRoot.resolve("Frames");
+        int count = 0;
+        if (Files.isDirectory(metaDir)) {
+            try (Stream<Path> stream = Files.list(metaDir)) {
+                for (Path p : (Iterable<Path>) stream.filter(f -> f.getFileName().toString().endsWith(".json"))::iterator) {
+                    try {
+                        BsonDocument meta = BsonDocument.parse(Files.readString(p));
+                        String itemId = meta.containsKey("itemId") ? meta.getString("itemId").getValue() : p.getFileName().toString().replaceFirst("\\.json$", "");
+                        if (!assetsExist(itemId, modsRoot)) continue;
+                        String alignment = meta.containsKey("alignment") ? meta.getString("alignment").getValue() : null;
+                        int blocksX = lastBlocksX(meta);
+
+                        BufferedImage img = readTexture(itemId, modsRoot);
+                        if (img == null) continue;
+                        link(key(hashPixels(img), blocksX, alignment), itemId);
+                        count++;
+                    } catch (Exception e) {
+                        Frames.LOGGER.atWarning().withCause(e).log("Skipping " + p.getFileName() + " while rebuilding image hashes: " + e.getMessage());
+                    }
+                }
+            } catch (IOException e) {
+                Frames.LOGGER.atWarning().withCause(e).log("Failed to list frame metadata for image hashes: " + e.getMessage());
+            }
+        }
+        save(modsRoot);
+        Frames.LOGGER.atInfo().log("Rebuilt " + TABLE_FILE + " with " + count + " images");
+        return count;
+    }
+
+    private static int lastBlocksX(BsonDocument meta) {
+        if (!meta.containsKey("frames")) return 1;
+        BsonArray frames = meta.getArray("frames");
+        if (frames.isEmpty()) return 1;
+        BsonValue last = frames.get(frames.size() - 1);
+        try {
+            BsonDocument blocks = last.asDocument().getDocument("blocks");
+            return blocks.getInt32("x").getValue();
+        } catch (Exception e) {
+            return 1;
+        }
+    }
+}
@@ -1,14 +1,28 @@
 package es.boffmedia.frames.core;
 
 import es.boffmedia.frames.Frames;
+import es.boffmedia.frames.FramesConfig;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
 
 /**
  * Image download / resize / save helpers.
@@ -17,11 +31,125 @@ public final class ImageProcessor {
     private ImageProcessor() {}
 
     public static BufferedImage downloadImage(String urlStr) throws IOException {
+        return decodeImage(fetchBytes(urlStr), urlStr);
+    }
+
+    /**
+     * Downloads at most {@code download.maxBytes}; larger responses are refused instead of buffered.
+     */
+    public static byte[] fetchBytes(String urlStr) throws IOException {
         URL url = new URL(urlStr);
         Frames.LOGGER.atInfo().log("Downloading image from: " + urlStr);
-        BufferedImage image = ImageIO.read(url);
-        if (image == null) throw new IOException("Failed to decode image from URL: " + urlStr);
-        return image;
+        int maxBytes = Math.max(1, FramesConfig.getInt("download.maxBytes", 16 * 1024 * 1024));
+        int timeoutMillis = (int) Math.min(Integer.MAX_VALUE, Math.max(1, FramesConfig.getLong("download.timeoutSeconds", 20)) * 1000L);
+
+        URLConnection conn = url.openConnection();
+        conn.setConnectTimeout(timeoutMillis);
+        conn.setReadTimeout(timeoutMillis);
+        long declared = conn.getContentLengthLong();
+        if (declared > maxBytes) throw new IOException("Image is too large (" + declared + " bytes, limit " + maxBytes + ")");
+        try (InputStream is = conn.getInputStream()) {
+            byte[] bytes = is.readNBytes(maxBytes + 1);
+            if (bytes.length > maxBytes) throw new IOException("Image is too large (over " + maxBytes + " bytes)");
+            return bytes;
+        }
+    }
+
+    /**
+     * Decodes the first image in bytes through an ImageReader. Dimensions are checked from the header
+     * before any pixels are read, and images above the decode budget are subsampled while decoding so
+     * the full-size raster is never allocated.
+     */
+    public static BufferedImage decodeImage(byte[] bytes, String source) throws IOException {
+        int maxBytes = Math.max(1, FramesConfig.getInt("download.maxBytes", 16 * 1024 * 1024));
+        if (bytes.length > maxBytes) throw new IOException("Image is too large (" + bytes.length + " bytes, limit " + maxBytes + ")");
+
+        FramesEvents.Decode event = new FramesEvents.Decode();
+        event.begin();
+        try (ImageInputStream iis = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = iis == null ? null : ImageIO.getImageReaders(iis);
+            if (readers == null || !readers.hasNext()) throw new IOException("Failed to decode image from URL: " + source);
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                int w = reader.getWidth(0);
+                int h = reader.getHeight(0);
+                long pixels = (long) w * h;
+                long maxSourcePixels = FramesConfig.getLong("decode.maxSourcePixels", 64_000_000L);
+                if (w <= 0 || h <= 0 || pixels > maxSourcePixels) {
+                    throw new IOException("Image dimensions " + w + "x" + h + " exceed the limit of " + maxSourcePixels + " pixels");
+                }
+
+                int step = subsamplingFor(pixels, decodePixelBudget(bytes.length));
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                    Frames.LOGGER.atInfo().log("Subsampling " + w + "x" + h + " image by " + step + " while decoding");
+                }
+                BufferedImage image = reader.read(0, param);
+                if (image == null) throw new IOException("Failed to decode image from URL: " + source);
+                event.source = source;
+                event.bytes = bytes.length;
+                event.sourceWidth = w;
+                event.sourceHeight = h;
+                event.width = image.getWidth();
+                event.height = image.getHeight();
+                event.commit();
+                return image;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Largest decoded pixel count allowed for one upload: the configured target, further limited so the
+     * decoded raster plus its padded copy (4 bytes per pixel each) and the source bytes fit in decode.maxHeapBytes.
+     */
+    static long decodePixelBudget(int sourceBytes) {
+        long target = Math.max(1, FramesConfig.getLong("decode.maxDecodedPixels", 2048L * 2048L));
+        long heap = FramesConfig.getLong("decode.maxHeapBytes", 64L * 1024L * 1024L);
+        long byHeap = Math.max(1, (heap - sourceBytes) / 8);
+        return Math.min(target, byHeap);
+    }
+
+    static int subsamplingFor(long pixels, long budget) {
+        int step = 1;
+        while (pixels / ((long) step * step) > budget) step++;
+        return step;
+    }
+
+    public static byte[] encodePng(BufferedImage img) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(img.getWidth() * img.getHeight());
+        PngEncoder.encode(img, Channels.newChannel(out), PngEncoder.Settings.fromConfig());
+        return out.toByteArray();
+    }
+
+    /**
+     * High-quality downscale: halves the image with bilinear filtering until within 2x of the target,
+     * then finishes with a bicubic pass, which avoids the aliasing of a single large step.
+     */
+    public static BufferedImage downscale(BufferedImage src, int targetW, int targetH) {
+        BufferedImage current = src;
+        int w = src.getWidth();
+        int h = src.getHeight();
+        while (w / 2 >= targetW && h / 2 >= targetH) {
+            w /= 2;
+            h /= 2;
+            current = scaleOnce(current, w, h, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+        if (w != targetW || h != targetH) current = scaleOnce(current, targetW, targetH, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        return current;
+    }
+
+    private static BufferedImage scaleOnce(BufferedImage src, int w, int h, Object interpolation) {
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = out.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(src, 0, 0, w, h, null);
+        g.dispose();
+        return out;
     }
 
     public static BufferedImage resizeImage(BufferedImage src, int targetSizeX, int targetSizeY) {
@@ -35,11 +163,30 @@ public final class ImageProcessor {
         return scaled;
     }
 
+    public static Path imagePathFor(String fileName, Path modsRoot) {
+        return modsRoot.resolve(Path.of("Common", "Blocks", "Frames", "Images")).resolve(fileName);
+    }
+
+    /**
+     * Moves a PNG produced by {@link PngEncoder#encodeToTempFile} into the Images folder under fileName.
+     */
+    public static Path moveEncodedPngToMods(Path encoded, String fileName, Path modsRoot) throws IOException {
+        Path out = imagePathFor(fileName, modsRoot);
+        Files.createDirectories(out.getParent());
+        try {
+            Files.move(encoded, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(encoded, out, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return out;
+    }
+
     public static Path saveImageToMods(BufferedImage img, String fileName, String sizeKey, Path modsRoot) throws IOException {
-        Path out = modsRoot.resolve(Path.of("Common", "Blocks", "Frames", "Images")).resolve(fileName);
+        Path out = imagePathFor(fileName, modsRoot);
         Files.createDirectories(out.getParent());
-        boolean written = ImageIO.write(img, "png", out.toFile());
-        if (!written) throw new IOException("ImageIO.write returned false for: " + out.toString());
+        try (FileChannel ch = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            PngEncoder.encode(img, ch, PngEncoder.Settings.fromConfig());
+        }
         return out;
     }
 }
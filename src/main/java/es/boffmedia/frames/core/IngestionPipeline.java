@@ -0,0 +1,302 @@
+package es.boffmedia.frames.core;
+
+import com.hypixel.hytale.protocol.BlockPosition;
+import es.boffmedia.frames.Frames;
+import es.boffmedia.frames.FramesConfig;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs image uploads off the world thread as a chain of stages:
+ * fetch -> decode -> transform (downscale and pad) -> encode -> persist -> apply.
+ * Network and disk stages run on virtual threads gated by a semaphore; pixel work runs on a
+ * small fixed pool. The apply stage is handed to the caller's executor (the world thread).
+ */
+public final class IngestionPipeline {
+    private IngestionPipeline() {}
+
+    public enum Stage { FETCH, DECODE, TRANSFORM, ENCODE, PERSIST, APPLY }
+
+    public static final class Request {
+        public final String url;
+        public final String name;
+        public final int blocksX;
+        public final String alignment;
+        public final String creatorUuid;
+        public final String world;
+        public final BlockPosition target;
+        /** Texture resolution cap per block; 0 keeps the native resolution. */
+        public final int pixelsPerBlock;
+        /** Download the image again instead of using the source cache; set for a new link, not a re-render. */
+        public final boolean freshSource;
+
+        public Request(String url, String name, int blocksX, String alignment, String creatorUuid, String world, BlockPosition target, int pixelsPerBlock) {
+            this(url, name, blocksX, alignment, creatorUuid, world, target, pixelsPerBlock, false);
+        }
+
+        public Request(String url, String name, int blocksX, String alignment, String creatorUuid, String world, BlockPosition target, int pixelsPerBlock, boolean freshSource) {
+            this.url = url;
+            this.name = name;
+            this.blocksX = Math.max(1, blocksX);
+            this.alignment = alignment;
+            this.creatorUuid = creatorUuid;
+            this.world = world;
+            this.target = target;
+            this.pixelsPerBlock = Math.max(0, pixelsPerBlock);
+            this.freshSource = freshSource;
+        }
+    }
+
+    public static final class Result {
+        public final String itemId;
+        public final int widthPixels;
+        public final int heightPixels;
+        public final long elapsedMillis;
+        /** True when an identical image already existed and its item was reused. */
+        public final boolean reused;
+
+        Result(String itemId, int widthPixels, int heightPixels, long elapsedMillis, boolean reused) {
+            this.itemId = itemId;
+            this.widthPixels = widthPixels;
+            this.heightPixels = heightPixels;
+            this.elapsedMillis = elapsedMillis;
+            this.reused = reused;
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageFn<T, R> {
+        R apply(T in) throws Exception;
+    }
+
+    private static final class Encoded {
+        final int width;
+        final int height;
+        final Path png;
+        final ImageDedupTable.Claim claim;
+        // Kept while another upload of the same image is pending, in case it fails, and for atlas
+        // textures, which are drawn into their page without a PNG of their own
+        final BufferedImage image;
+
+        Encoded(int width, int height, Path png, ImageDedupTable.Claim claim, BufferedImage image) {
+            this.width = width;
+            this.height = height;
+            this.png = png;
+            this.claim = claim;
+            this.image = image;
+        }
+    }
+
+    private static final AtomicInteger pending = new AtomicInteger();
+    private static final FramesMetrics.Histogram[] stageTimes = {
+            FramesMetrics.DOWNLOAD, FramesMetrics.DECODE, FramesMetrics.TRANSFORM, FramesMetrics.ENCODE, FramesMetrics.PERSIST, null
+    };
+    private static final AtomicInteger[] stageDepth = new AtomicInteger[Stage.values().length];
+    static {
+        for (int i = 0; i < stageDepth.length; i++) stageDepth[i] = new AtomicInteger();
+    }
+
+    private static ExecutorService ioExecutor;
+    private static ThreadPoolExecutor cpuExecutor;
+    private static Semaphore ioPermits;
+
+    private static synchronized void ensureStarted() {
+        if (ioExecutor != null && !ioExecutor.isShutdown()) return;
+        int cpuThreads = FramesConfig.getInt("ingest.cpuThreads", 0);
+        if (cpuThreads <= 0) cpuThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        // Each upload holds at most one CPU task at a time, so a queue of maxQueued never rejects
+        int maxQueued = Math.max(1, FramesConfig.getInt("ingest.maxQueued", 64));
+        ioPermits = new Semaphore(Math.max(1, FramesConfig.getInt("ingest.maxConcurrentIo", 16)));
+        ioExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Frames-Ingest-IO-", 0).factory());
+        AtomicInteger n = new AtomicInteger();
+        cpuExecutor = new ThreadPoolExecutor(cpuThreads, cpuThreads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(maxQueued), r -> {
+                    Thread t = new Thread(r, "Frames-Ingest-CPU-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        cpuExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /** Uploads accepted but not yet finished (including the apply stage). */
+    public static int queueDepth() {
+        return pending.get();
+    }
+
+    public static int stageDepth(Stage stage) {
+        return stageDepth[stage.ordinal()].get();
+    }
+
+    private static <T, R> CompletableFuture<R> then(CompletableFuture<T> prev, Stage stage, Executor executor, boolean io, StageFn<T, R> fn) {
+        return prev.thenApplyAsync(in -> runStage(stage, io, () -> fn.apply(in)), executor);
+    }
+
+    private static <R> R runStage(Stage stage, boolean io, java.util.concurrent.Callable<R> body) {
+        AtomicInteger depth = stageDepth[stage.ordinal()];
+        depth.incrementAndGet();
+        try {
+            if (io) ioPermits.acquire();
+            // Measured after the permit so the histogram shows work, not queueing
+            long start = System.nanoTime();
+            try {
+                return body.call();
+            } finally {
+                if (io) ioPermits.release();
+                if (stageTimes[stage.ordinal()] != null) stageTimes[stage.ordinal()].observeSince(start);
+            }
+        } catch (CompletionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        } finally {
+            depth.decrementAndGet();
+        }
+    }
+
+    /**
+     * Queues an upload. {@code onApply} runs on {@code applyExecutor} with either the result or the failure cause.
+     *
+     * @throws RejectedExecutionException if the pipeline already holds the configured maximum of uploads
+     */
+    public static CompletableFuture<Result> submit(Request req, Path modsRoot, Executor applyExecutor, BiConsumer<Result, Throwable> onApply) {
+        ensureStarted();
+        int maxQueued = Math.max(1, FramesConfig.getInt("ingest.maxQueued", 64));
+        if (pending.incrementAndGet() > maxQueued) {
+            pending.decrementAndGet();
+            FramesMetrics.UPLOADS_REJECTED.increment();
+            throw new RejectedExecutionException("Image pipeline is busy (" + maxQueued + " uploads queued)");
+        }
+
+        FramesMetrics.UPLOADS.increment();
+        long start = System.nanoTime();
+        CompletableFuture<Result> done = new CompletableFuture<>();
+        try {
+            CompletableFuture<byte[]> fetched = CompletableFuture.supplyAsync(
+                    () -> runStage(Stage.FETCH, true, () -> SourceImageCache.fetch(req.url, modsRoot, req.freshSource)), ioExecutor);
+            CompletableFuture<BufferedImage> decoded = then(fetched, Stage.DECODE, cpuExecutor, false,
+                    bytes -> ImageProcessor.decodeImage(bytes, req.url));
+            CompletableFuture<BufferedImage> prepared = then(decoded, Stage.TRANSFORM, cpuExecutor, false,
+                    img -> FrameItemGenerator.prepareImage(img, req.blocksX, req.pixelsPerBlock));
+            AtomicReference<ImageDedupTable.Claim> owned = new AtomicReference<>();
+            CompletableFuture<Encoded> encoded = then(prepared, Stage.ENCODE, cpuExecutor, false, img -> {
+                String key = FrameItemGenerator.dedupKey(img, req.blocksX, req.alignment);
+                return encodeClaimed(img, ImageDedupTable.claim(key, modsRoot), owned, modsRoot);
+            }).thenCompose(enc -> settle(enc, owned, modsRoot));
+            CompletableFuture<Result> persisted = then(encoded, Stage.PERSIST, ioExecutor, true, enc -> {
+                boolean reused = !enc.claim.owner();
+                String itemId;
+                if (reused) {
+                    itemId = enc.claim.existingItemId;
+                    Frames.LOGGER.atInfo().log("Reusing " + itemId + " for identical image from " + req.url);
+                } else {
+                    itemId = enc.png == null
+                            ? FrameItemGenerator.persistFrameAssets(enc.image, null, req.name, req.blocksX, req.alignment, modsRoot)
+                            : FrameItemGenerator.persistFrameAssets(enc.width, enc.height, enc.png, req.name, req.blocksX, req.alignment, modsRoot);
+                    ImageDedupTable.record(enc.claim.key, itemId, modsRoot);
+                    enc.claim.complete(itemId);
+                    enc.claim.release();
+                }
+                try {
+                    // A reused item keeps the name and url it was first uploaded with
+                    FrameIndexManager.writeFrameMetadata(itemId, reused ? null : req.name, reused ? null : req.url, req.world, req.target.x, req.target.y, req.target.z, req.blocksX, req.alignment, req.creatorUuid, false, modsRoot);
+                } catch (Exception e) {
+                    Frames.LOGGER.atWarning().withCause(e).log("Failed to write frame metadata: " + e.getMessage());
+                }
+                return new Result(itemId, enc.width, enc.height, (System.nanoTime() - start) / 1_000_000, reused);
+            });
+
+            persisted.whenComplete((result, err) -> {
+                // A failed upload gives up its dedup key so identical uploads waiting on it can retry
+                ImageDedupTable.Claim claim = owned.get();
+                if (claim != null) claim.release();
+                Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+                stageDepth[Stage.APPLY.ordinal()].incrementAndGet();
+                try {
+                    applyExecutor.execute(() -> {
+                        try {
+                            onApply.accept(result, cause);
+                        } catch (Throwable t) {
+                            Frames.LOGGER.atWarning().withCause(t).log("Image apply callback failed: " + t.getMessage());
+                        } finally {
+                            stageDepth[Stage.APPLY.ordinal()].decrementAndGet();
+                            pending.decrementAndGet();
+                            FramesMetrics.UPLOAD.observeSince(start);
+                            if (cause != null) {
+                                FramesMetrics.UPLOAD_FAILURES.increment();
+                                done.completeExceptionally(cause);
+                            } else {
+                                done.complete(result);
+                            }
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    stageDepth[Stage.APPLY.ordinal()].decrementAndGet();
+                    pending.decrementAndGet();
+                    FramesMetrics.UPLOAD_FAILURES.increment();
+                    Frames.LOGGER.atWarning().withCause(e).log("Failed to hand upload result to the world thread: " + e.getMessage());
+                    done.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            pending.decrementAndGet();
+            throw e;
+        }
+        return done;
+    }
+
+    // Identical pixels at the same block size and alignment: only the owner of the key encodes
+    private static Encoded encodeClaimed(BufferedImage img, ImageDedupTable.Claim claim, AtomicReference<ImageDedupTable.Claim> owned, Path modsRoot) throws IOException {
+        if (!claim.owner()) return new Encoded(img.getWidth(), img.getHeight(), null, claim, claim.pending() != null ? img : null);
+        owned.set(claim);
+        if (TextureAtlas.accepts(img.getWidth(), img.getHeight())) return new Encoded(img.getWidth(), img.getHeight(), null, claim, img);
+        return new Encoded(img.getWidth(), img.getHeight(), PngEncoder.encodeToTempFile(img, modsRoot), claim, null);
+    }
+
+    /**
+     * Waits, without holding a thread, for the upload that owns the same image. If it fails the key is
+     * claimed again and this upload encodes the image itself.
+     */
+    private static CompletableFuture<Encoded> settle(Encoded enc, AtomicReference<ImageDedupTable.Claim> owned, Path modsRoot) {
+        if (enc.claim.pending() == null) return CompletableFuture.completedFuture(enc);
+        String key = enc.claim.key;
+        return enc.claim.pending().thenComposeAsync(itemId -> {
+            if (itemId != null) return CompletableFuture.completedFuture(new Encoded(enc.width, enc.height, null, ImageDedupTable.reused(key, itemId), null));
+            try {
+                return settle(encodeClaimed(enc.image, ImageDedupTable.claim(key, modsRoot), owned, modsRoot), owned, modsRoot);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, cpuExecutor);
+    }
+
+    public static synchronized void shutdown() {
+        if (ioExecutor == null) return;
+        cpuExecutor.shutdown();
+        ioExecutor.shutdown();
+        try {
+            cpuExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            ioExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        cpuExecutor.shutdownNow();
+        ioExecutor.shutdownNow();
+        ioExecutor = null;
+        cpuExecutor = null;
+    }
+}
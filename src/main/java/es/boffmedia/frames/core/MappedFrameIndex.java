@@ -0,0 +1,114 @@
+package es.boffmedia.frames.core;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Frames index served from a mapped FramesIndex.bin snapshot. Lookups binary-search the file; changes
+ * since the snapshot live in a small resident {@link FrameIndex}, and snapshot records they replace or
+ * remove are masked by their coordinates. The manager swaps in a fresh instance after each compaction.
+ */
+public final class MappedFrameIndex implements FrameInstanceStore {
+    private record Coords(String world, int x, int y, int z) {}
+
+    private final BinaryFrameIndex base;
+    private final FrameIndex overlay = new FrameIndex();
+    // Snapshot records that were replaced or removed since the snapshot
+    private final Set<Coords> masked = new HashSet<>();
+
+    public MappedFrameIndex(BinaryFrameIndex base) {
+        this.base = base;
+    }
+
+    private FrameInstance baseAt(String world, int x, int y, int z) {
+        if (masked.contains(new Coords(world, x, y, z))) return null;
+        return base.find(world, x, y, z);
+    }
+
+    // Exact world match, the overlay shadowing the snapshot
+    private FrameInstance exact(String world, int x, int y, int z) {
+        FrameInstance inst = overlay.findExact(world, x, y, z);
+        return inst != null ? inst : baseAt(world, x, y, z);
+    }
+
+    private boolean live(FrameInstance inst) {
+        return !masked.contains(new Coords(inst.world, inst.x, inst.y, inst.z));
+    }
+
+    @Override
+    public synchronized int size() {
+        return base.size() - masked.size() + overlay.size();
+    }
+
+    @Override
+    public synchronized FrameInstance find(String world, int x, int y, int z) {
+        if (world != null && !world.isEmpty()) {
+            FrameInstance inst = exact(world, x, y, z);
+            if (inst != null) return inst;
+        }
+        return exact("", x, y, z);
+    }
+
+    @Override
+    public synchronized FrameInstance put(FrameInstance inst) {
+        FrameInstance previous = overlay.put(inst);
+        FrameInstance replaced = baseAt(inst.world, inst.x, inst.y, inst.z);
+        if (replaced != null) masked.add(new Coords(inst.world, inst.x, inst.y, inst.z));
+        return previous != null ? previous : replaced;
+    }
+
+    @Override
+    public synchronized List<FrameInstance> removeAt(String world, int x, int y, int z) {
+        List<FrameInstance> removed = overlay.removeAt(world, x, y, z);
+        List<String> worlds = world == null || world.isEmpty() ? List.of("") : List.of(world, "");
+        for (String w : worlds) {
+            FrameInstance inst = baseAt(w, x, y, z);
+            if (inst == null) continue;
+            masked.add(new Coords(w, x, y, z));
+            removed.add(inst);
+        }
+        return removed;
+    }
+
+    @Override
+    public synchronized List<FrameInstance> instancesOf(String itemId) {
+        List<FrameInstance> out = new ArrayList<>();
+        base.forEachOf(itemId, inst -> {
+            if (live(inst)) out.add(inst);
+        });
+        out.addAll(overlay.instancesOf(itemId));
+        return out;
+    }
+
+    @Override
+    public synchronized boolean containsItem(String itemId) {
+        return overlay.containsItem(itemId) || !instancesOf(itemId).isEmpty();
+    }
+
+    @Override
+    public synchronized List<String> itemIds() {
+        Set<String> ids = new LinkedHashSet<>();
+        if (masked.isEmpty()) {
+            ids.addAll(base.itemIds());
+        } else {
+            base.forEach(inst -> {
+                if (live(inst)) ids.add(inst.itemId);
+            });
+        }
+        ids.addAll(overlay.itemIds());
+        return new ArrayList<>(ids);
+    }
+
+    @Override
+    public synchronized List<FrameInstance> all() {
+        List<FrameInstance> out = new ArrayList<>(size());
+        base.forEach(inst -> {
+            if (live(inst)) out.add(inst);
+        });
+        out.addAll(overlay.all());
+        return out;
+    }
+}
@@ -0,0 +1,68 @@
+package es.boffmedia.frames.core;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import es.boffmedia.frames.Frames;
+import es.boffmedia.frames.FramesConfig;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Optional HTTP endpoint serving {@link FramesMetrics#prometheus()} at /metrics for a local Prometheus
+ * scraper. Disabled unless metrics.httpEnabled is set; binds to metrics.httpBind (localhost by default).
+ */
+public final class MetricsHttpServer {
+    private MetricsHttpServer() {}
+
+    private static HttpServer server;
+    private static ExecutorService executor;
+
+    public static synchronized void start() {
+        if (server != null || !FramesConfig.getBoolean("metrics.httpEnabled", false)) return;
+        String bind = FramesConfig.getString("metrics.httpBind", "127.0.0.1");
+        int port = FramesConfig.getInt("metrics.httpPort", 9465);
+        try {
+            HttpServer s = HttpServer.create(new InetSocketAddress(bind, port), 0);
+            s.createContext("/metrics", MetricsHttpServer::handle);
+            executor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "Frames-Metrics");
+                t.setDaemon(true);
+                return t;
+            });
+            s.setExecutor(executor);
+            s.start();
+            server = s;
+            Frames.LOGGER.atInfo().log("Serving frames metrics at http://" + bind + ":" + port + "/metrics");
+        } catch (IOException e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Failed to start metrics endpoint on " + bind + ":" + port + ": " + e.getMessage());
+        }
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = FramesMetrics.prometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    public static synchronized void shutdown() {
+        if (server == null) return;
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        executor = null;
+    }
+}
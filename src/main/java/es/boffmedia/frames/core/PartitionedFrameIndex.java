@@ -0,0 +1,353 @@
+package es.boffmedia.frames.core;
+
+import com.hypixel.hytale.math.util.ChunkUtil;
+import es.boffmedia.frames.Frames;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.json.JsonWriterSettings;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Frames index split by world and chunk. Each partition is stored as Index/&lt;world&gt;/&lt;chunk&gt;.bin in
+ * the {@link BinaryFrameIndex} layout and is only read when a block in that chunk is looked up; partitions
+ * nobody has asked about for a while are dropped again by {@link #evictIdle}. Index/Directory.json lists
+ * the partitions that exist and which of them hold each item, so lookups in empty chunks and
+ * {@link #instancesOf} never have to scan the disk.
+ */
+public final class PartitionedFrameIndex implements FrameInstanceStore {
+    public static final String DIR_NAME = "Index";
+    public static final String DIRECTORY_FILE = "Directory.json";
+
+    // URLEncoder always escapes '%', so no world name can encode to this
+    private static final String LEGACY_WORLD_DIR = "%";
+
+    private static final class Partition {
+        final FrameIndex index;
+        long lastAccess;
+        boolean dirty;
+
+        Partition(FrameIndex index) {
+            this.index = index;
+        }
+    }
+
+    /** Partition files and directory contents to write for one compaction. */
+    public static final class Snapshot {
+        final Map<String, byte[]> partitions = new LinkedHashMap<>();
+        final List<String> emptied = new ArrayList<>();
+        String directory;
+    }
+
+    private final Path dir;
+    private final Map<String, Partition> resident = new HashMap<>();
+    // Partition id -> instance count, for every partition that has a file or pending changes
+    private final Map<String, Integer> counts = new LinkedHashMap<>();
+    private final Map<String, Set<String>> itemPartitions = new LinkedHashMap<>();
+    private final Map<String, String> worldDirs = new HashMap<>();
+    private int total;
+
+    private PartitionedFrameIndex(Path modsRoot) {
+        this.dir = modsRoot.resolve(DIR_NAME);
+    }
+
+    public static Path directoryFile(Path modsRoot) {
+        return modsRoot.resolve(DIR_NAME).resolve(DIRECTORY_FILE);
+    }
+
+    /** Opens the partitioned index under modsRoot, reading only its directory. */
+    public static PartitionedFrameIndex open(Path modsRoot) throws IOException {
+        PartitionedFrameIndex idx = new PartitionedFrameIndex(modsRoot);
+        BsonDocument doc = BsonDocument.parse(PersistenceWriter.readString(directoryFile(modsRoot)));
+        BsonDocument parts = doc.getDocument("partitions", new BsonDocument());
+        for (Map.Entry<String, BsonValue> e : parts.entrySet()) {
+            int n = e.getValue().asNumber().intValue();
+            idx.counts.put(e.getKey(), n);
+            idx.total += n;
+        }
+        BsonDocument items = doc.getDocument("items", new BsonDocument());
+        for (Map.Entry<String, BsonValue> e : items.entrySet()) {
+            Set<String> set = new LinkedHashSet<>();
+            for (BsonValue v : e.getValue().asArray()) set.add(v.asString().getValue());
+            idx.itemPartitions.put(e.getKey(), set);
+        }
+        return idx;
+    }
+
+    /** Builds a partitioned index from a full set of instances; every partition starts dirty. */
+    public static PartitionedFrameIndex of(Path modsRoot, List<FrameInstance> instances) {
+        PartitionedFrameIndex idx = new PartitionedFrameIndex(modsRoot);
+        for (FrameInstance inst : instances) idx.put(inst);
+        return idx;
+    }
+
+    private String worldDir(String world) {
+        String w = world == null ? "" : world;
+        return worldDirs.computeIfAbsent(w, k -> {
+            if (k.isEmpty()) return LEGACY_WORLD_DIR;
+            String enc = URLEncoder.encode(k, StandardCharsets.UTF_8);
+            // URLEncoder leaves '.' alone, so "." and ".." would resolve outside Index/
+            return enc.chars().allMatch(c -> c == '.') ? enc.replace(".", "%2E") : enc;
+        });
+    }
+
+    private String partitionId(String world, int x, int z) {
+        return worldDir(world) + "/" + Long.toHexString(ChunkUtil.indexChunkFromBlock(x, z));
+    }
+
+    private Path fileOf(String pid) {
+        return dir.resolve(pid + ".bin");
+    }
+
+    /**
+     * Returns the partition, reading it from disk if needed; null if it does not exist and create is false.
+     * A partition whose file cannot be read throws and is not kept, so it is never written back with only
+     * the records added since.
+     */
+    private Partition partition(String pid, boolean create) {
+        Partition p = resident.get(pid);
+        if (p == null) {
+            if (counts.containsKey(pid)) {
+                p = new Partition(read(pid));
+            } else if (create) {
+                p = new Partition(new FrameIndex());
+            } else {
+                return null;
+            }
+            resident.put(pid, p);
+        }
+        p.lastAccess = System.currentTimeMillis();
+        return p;
+    }
+
+    /** For lookups: a partition that cannot be read is logged and treated as having no match. */
+    private Partition readable(String pid) {
+        try {
+            return partition(pid, false);
+        } catch (UncheckedIOException e) {
+            Frames.LOGGER.atWarning().withCause(e).log(e.getMessage());
+            return null;
+        }
+    }
+
+    private FrameIndex read(String pid) {
+        Path file = fileOf(pid);
+        try {
+            if (!Files.exists(file)) return new FrameIndex();
+            BinaryFrameIndex bin = BinaryFrameIndex.open(file);
+            FrameIndex index = new FrameIndex(bin.size());
+            bin.forEach(index::put);
+            return index;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read frames index partition " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void recount(String pid, Partition p) {
+        int n = p.index.size();
+        Integer previous = counts.put(pid, n);
+        total += n - (previous == null ? 0 : previous);
+    }
+
+    private void unlinkIfGone(String pid, Partition p, String itemId) {
+        if (p.index.containsItem(itemId)) return;
+        Set<String> set = itemPartitions.get(itemId);
+        if (set == null) return;
+        set.remove(pid);
+        if (set.isEmpty()) itemPartitions.remove(itemId);
+    }
+
+    @Override
+    public synchronized int size() {
+        return total;
+    }
+
+    public synchronized int residentPartitions() {
+        return resident.size();
+    }
+
+    /** Returns the instance at the given block, falling back to legacy entries that have no world. */
+    @Override
+    public synchronized FrameInstance find(String world, int x, int y, int z) {
+        if (world != null && !world.isEmpty()) {
+            Partition p = readable(partitionId(world, x, z));
+            FrameInstance inst = p == null ? null : p.index.find(world, x, y, z);
+            if (inst != null) return inst;
+        }
+        Partition legacy = readable(partitionId("", x, z));
+        return legacy == null ? null : legacy.index.find("", x, y, z);
+    }
+
+    /** Throws {@link UncheckedIOException}, changing nothing, if the target partition cannot be read. */
+    @Override
+    public synchronized FrameInstance put(FrameInstance inst) {
+        String pid = partitionId(inst.world, inst.x, inst.z);
+        Partition p = partition(pid, true);
+        FrameInstance previous = p.index.put(inst);
+        p.dirty = true;
+        if (previous != null) unlinkIfGone(pid, p, previous.itemId);
+        itemPartitions.computeIfAbsent(inst.itemId, k -> new LinkedHashSet<>()).add(pid);
+        recount(pid, p);
+        return previous;
+    }
+
+    /**
+     * Removes the instance at the given block in this world and any legacy entry at the same coords. Throws
+     * {@link UncheckedIOException} if one of those partitions cannot be read.
+     */
+    @Override
+    public synchronized List<FrameInstance> removeAt(String world, int x, int y, int z) {
+        List<FrameInstance> removed = new ArrayList<>(1);
+        List<String> pids = new ArrayList<>(2);
+        if (world != null && !world.isEmpty()) pids.add(partitionId(world, x, z));
+        pids.add(partitionId("", x, z));
+        for (String pid : pids) {
+            Partition p = partition(pid, false);
+            if (p == null) continue;
+            List<FrameInstance> gone = p.index.removeAt(pid.startsWith(LEGACY_WORLD_DIR + "/") ? "" : world, x, y, z);
+            if (gone.isEmpty()) continue;
+            p.dirty = true;
+            for (FrameInstance inst : gone) unlinkIfGone(pid, p, inst.itemId);
+            recount(pid, p);
+            removed.addAll(gone);
+        }
+        return removed;
+    }
+
+    /** Every instance of an item, reading only the partitions the directory lists for it. */
+    @Override
+    public synchronized List<FrameInstance> instancesOf(String itemId) {
+        Set<String> pids = itemPartitions.get(itemId);
+        if (pids == null) return Collections.emptyList();
+        List<FrameInstance> out = new ArrayList<>();
+        for (String pid : new ArrayList<>(pids)) {
+            Partition p = readable(pid);
+            if (p != null) out.addAll(p.index.instancesOf(itemId));
+        }
+        return out;
+    }
+
+    @Override
+    public synchronized boolean containsItem(String itemId) {
+        return itemPartitions.containsKey(itemId);
+    }
+
+    @Override
+    public synchronized List<String> itemIds() {
+        return new ArrayList<>(itemPartitions.keySet());
+    }
+
+    /**
+     * Every instance in every partition. Partitions that are not resident are read but not kept. Throws
+     * {@link UncheckedIOException} if a partition cannot be read rather than returning a partial list.
+     */
+    @Override
+    public synchronized List<FrameInstance> all() {
+        List<FrameInstance> out = new ArrayList<>(total);
+        for (String pid : counts.keySet()) {
+            Partition p = resident.get(pid);
+            out.addAll(p != null ? p.index.all() : read(pid).all());
+        }
+        return out;
+    }
+
+    /**
+     * Drops clean partitions that have not been used for idleMillis. Returns how many were dropped.
+     */
+    public synchronized int evictIdle(long idleMillis) {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        int evicted = 0;
+        for (Iterator<Partition> it = resident.values().iterator(); it.hasNext(); ) {
+            Partition p = it.next();
+            if (!p.dirty && p.lastAccess <= cutoff) {
+                it.remove();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    public synchronized boolean hasDirty() {
+        for (Partition p : resident.values()) if (p.dirty) return true;
+        return false;
+    }
+
+    /** Encodes the dirty partitions and the directory, and marks those partitions clean. */
+    public synchronized Snapshot snapshotDirty() {
+        Snapshot snap = new Snapshot();
+        for (Map.Entry<String, Partition> e : resident.entrySet()) {
+            Partition p = e.getValue();
+            if (!p.dirty) continue;
+            if (p.index.size() == 0) {
+                snap.emptied.add(e.getKey());
+            } else {
+                snap.partitions.put(e.getKey(), BinaryFrameIndex.encode(p.index.all()));
+            }
+            p.dirty = false;
+        }
+        for (String pid : snap.emptied) {
+            counts.remove(pid);
+            resident.remove(pid);
+        }
+
+        BsonDocument parts = new BsonDocument();
+        for (Map.Entry<String, Integer> e : counts.entrySet()) parts.append(e.getKey(), new BsonInt32(e.getValue()));
+        BsonDocument items = new BsonDocument();
+        for (Map.Entry<String, Set<String>> e : itemPartitions.entrySet()) {
+            BsonArray arr = new BsonArray();
+            for (String pid : e.getValue()) arr.add(new BsonString(pid));
+            items.append(e.getKey(), arr);
+        }
+        snap.directory = new BsonDocument().append("partitions", parts).append("items", items)
+                .toJson(JsonWriterSettings.builder().indent(true).build());
+        return snap;
+    }
+
+    /** Marks the partitions of a snapshot dirty again after writing it failed. */
+    public synchronized void restoreDirty(Snapshot snap) {
+        for (String pid : snap.partitions.keySet()) {
+            Partition p = resident.get(pid);
+            if (p != null) p.dirty = true;
+        }
+    }
+
+    /** Writes a snapshot: partition files first, then the directory that refers to them. */
+    public void write(Snapshot snap) throws IOException {
+        List<CompletableFuture<Void>> writes = new ArrayList<>(snap.partitions.size());
+        for (Map.Entry<String, byte[]> e : snap.partitions.entrySet()) {
+            writes.add(PersistenceWriter.writeAsync(fileOf(e.getKey()), e.getValue()));
+        }
+        for (CompletableFuture<Void> w : writes) PersistenceWriter.await(w);
+        PersistenceWriter.write(directoryFile(dir.getParent()), snap.directory);
+        for (String pid : snap.emptied) Files.deleteIfExists(fileOf(pid));
+    }
+
+    /** Deletes a partitioned index under modsRoot, e.g. after converting it to a single snapshot file. */
+    public static void delete(Path modsRoot) throws IOException {
+        Path root = modsRoot.resolve(DIR_NAME);
+        if (!Files.isDirectory(root)) return;
+        try (Stream<Path> walk = Files.walk(root)) {
+            List<Path> paths = walk.sorted(Collections.reverseOrder()).toList();
+            for (Path p : paths) Files.deleteIfExists(p);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package es.boffmedia.frames.core;
+
+import es.boffmedia.frames.Frames;
+import es.boffmedia.frames.FramesConfig;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single writer for the plugin's JSON files. Writes submitted within persistence.commitWindowMillis
+ * of each other are committed together: every file goes to a temp file next to its target, is synced,
+ * then moved over the target with ATOMIC_MOVE, and each touched directory is synced once per commit.
+ * Repeated writes to the same path within a window are coalesced into the last one, and a file is
+ * never left half written.
+ */
+public final class PersistenceWriter {
+    private PersistenceWriter() {}
+
+    private static final class Intent {
+        byte[] data;
+        final List<CompletableFuture<Void>> waiters = new ArrayList<>(1);
+    }
+
+    private static final Object LOCK = new Object();
+    private static LinkedHashMap<Path, Intent> queue = new LinkedHashMap<>();
+    private static Map<Path, Intent> inFlight = Map.of();
+    private static Thread writer;
+    private static boolean stopped;
+
+    private static final AtomicLong tempSeq = new AtomicLong();
+    private static final LongAdder commits = new LongAdder();
+    private static final LongAdder filesWritten = new LongAdder();
+    private static final LongAdder coalesced = new LongAdder();
+
+    /** Queues a write and returns a future completed once the file is durably in place. */
+    public static CompletableFuture<Void> writeAsync(Path file, byte[] data) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Path target = file.toAbsolutePath().normalize();
+        synchronized (LOCK) {
+            if (stopped) {
+                // Late writes after shutdown are committed directly
+                Intent single = new Intent();
+                single.data = data;
+                single.waiters.add(done);
+                LinkedHashMap<Path, Intent> batch = new LinkedHashMap<>();
+                batch.put(target, single);
+                commit(batch);
+                return done;
+            }
+            Intent intent = queue.get(target);
+            if (intent == null) {
+                intent = new Intent();
+                queue.put(target, intent);
+            } else {
+                coalesced.increment();
+            }
+            intent.data = data;
+            intent.waiters.add(done);
+            if (writer == null) {
+                writer = Thread.ofPlatform().daemon().name("Frames-Writer").start(PersistenceWriter::run);
+            }
+            LOCK.notifyAll();
+        }
+        return done;
+    }
+
+    public static CompletableFuture<Void> writeAsync(Path file, String content) {
+        return writeAsync(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Writes content to file and waits for the commit that contains it. */
+    public static void write(Path file, String content) throws IOException {
+        await(writeAsync(file, content));
+    }
+
+    /** Waits for a write returned by {@link #writeAsync}, rethrowing its IOException. */
+    public static void await(CompletableFuture<Void> write) throws IOException {
+        try {
+            write.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof UncheckedIOException uio) throw uio.getCause();
+            throw e;
+        }
+    }
+
+    /** Reads a file, seeing a queued or in-progress write to it before it reaches the disk. */
+    public static String readString(Path file) throws IOException {
+        Path target = file.toAbsolutePath().normalize();
+        synchronized (LOCK) {
+            Intent intent = queue.get(target);
+            if (intent == null) intent = inFlight.get(target);
+            if (intent != null) return new String(intent.data, StandardCharsets.UTF_8);
+        }
+        return Files.readString(file);
+    }
+
+    private static void run() {
+        while (true) {
+            LinkedHashMap<Path, Intent> batch;
+            synchronized (LOCK) {
+                try {
+                    while (queue.isEmpty() && !stopped) LOCK.wait();
+                    if (queue.isEmpty()) return;
+                    // Let writes arriving shortly after the first one join the same commit
+                    long deadline = System.currentTimeMillis() + Math.max(0, FramesConfig.getInt("persistence.commitWindowMillis", 10));
+                    for (long rem; !stopped && (rem = deadline - System.currentTimeMillis()) > 0; ) LOCK.wait(rem);
+                } catch (InterruptedException e) {
+                    if (queue.isEmpty()) return;
+                }
+                batch = queue;
+                queue = new LinkedHashMap<>();
+                inFlight = batch;
+            }
+            try {
+                commit(batch);
+            } finally {
+                synchronized (LOCK) {
+                    inFlight = Map.of();
+                }
+            }
+        }
+    }
+
+    private static void commit(LinkedHashMap<Path, Intent> batch) {
+        FramesEvents.Commit event = new FramesEvents.Commit();
+        event.begin();
+        boolean fsync = FramesConfig.getBoolean("persistence.fsync", true);
+        Map<Path, Path> temps = new LinkedHashMap<>();
+        Set<Path> dirs = new LinkedHashSet<>();
+
+        for (Map.Entry<Path, Intent> e : batch.entrySet()) {
+            Path target = e.getKey();
+            Path tmp = target.resolveSibling("." + target.getFileName() + "." + tempSeq.incrementAndGet() + ".tmp");
+            try {
+                Files.createDirectories(target.getParent());
+                try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    ByteBuffer buf = ByteBuffer.wrap(e.getValue().data);
+                    while (buf.hasRemaining()) ch.write(buf);
+                    if (fsync) ch.force(false);
+                }
+                temps.put(target, tmp);
+            } catch (IOException ex) {
+                deleteQuietly(tmp);
+                fail(e.getValue(), ex);
+            }
+        }
+
+        // Moves happen in submission order so a file never becomes visible before one queued ahead of it
+        for (Map.Entry<Path, Path> e : temps.entrySet()) {
+            Path target = e.getKey();
+            try {
+                try {
+                    Files.move(e.getValue(), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    Files.move(e.getValue(), target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                dirs.add(target.getParent());
+                filesWritten.increment();
+            } catch (IOException ex) {
+                deleteQuietly(e.getValue());
+                fail(batch.get(target), ex);
+                temps.put(target, null);
+            }
+        }
+
+        if (fsync) {
+            for (Path dir : dirs) {
+                try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+                    ch.force(true);
+                } catch (IOException ignored) {
+                    // not supported on every platform (e.g. Windows)
+                }
+            }
+        }
+        commits.increment();
+        if (event.shouldCommit()) {
+            event.files = batch.size();
+            for (Intent intent : batch.values()) event.bytes += intent.data.length;
+            event.fsync = fsync;
+            event.commit();
+        }
+
+        for (Map.Entry<Path, Path> e : temps.entrySet()) {
+            if (e.getValue() == null) continue;
+            for (CompletableFuture<Void> w : batch.get(e.getKey()).waiters) w.complete(null);
+        }
+    }
+
+    private static void fail(Intent intent, IOException ex) {
+        Frames.LOGGER.atWarning().withCause(ex).log("Failed to write file: " + ex.getMessage());
+        for (CompletableFuture<Void> w : intent.waiters) w.completeExceptionally(ex);
+    }
+
+    private static void deleteQuietly(Path p) {
+        try {
+            Files.deleteIfExists(p);
+        } catch (IOException ignored) {
+        }
+    }
+
+    public static long commits() {
+        return commits.sum();
+    }
+
+    public static long filesWritten() {
+        return filesWritten.sum();
+    }
+
+    public static long coalescedWrites() {
+        return coalesced.sum();
+    }
+
+    /** Commits everything still queued and stops the writer thread; later writes are committed directly. */
+    public static void shutdown() {
+        Thread t;
+        synchronized (LOCK) {
+            stopped = true;
+            t = writer;
+            LOCK.notifyAll();
+        }
+        if (t == null) return;
+        try {
+            t.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (LOCK) {
+            writer = null;
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package es.boffmedia.frames.core;
+
+import es.boffmedia.frames.Frames;
+import es.boffmedia.frames.FramesConfig;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * PNG encoder for frame textures with a configurable deflate level, strategy and row filter.
+ * Large images are split into row blocks that are filtered and deflated in parallel, pigz-style:
+ * every block is primed with the previous 32 KiB of filtered data as its dictionary and ends on a
+ * sync flush, so the blocks concatenate into a single zlib stream. Blocks are written to the output
+ * channel in order as they finish, with only a bounded number held in memory at once.
+ */
+public final class PngEncoder {
+    private PngEncoder() {}
+
+    public enum Filter { NONE, SUB, UP, AVERAGE, PAETH, ADAPTIVE }
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final int DICT_BYTES = 32 * 1024;
+
+    private static ForkJoinPool pool;
+
+    public static final class Settings {
+        public final int level;
+        public final int strategy;
+        public final Filter filter;
+        public final int chunkBytes;
+
+        public Settings(int level, int strategy, Filter filter, int chunkBytes) {
+            this.level = Math.max(0, Math.min(9, level));
+            this.strategy = strategy;
+            this.filter = filter;
+            this.chunkBytes = Math.max(DICT_BYTES, chunkBytes);
+        }
+
+        public static Settings fromConfig() {
+            int strategy;
+            switch (FramesConfig.getString("png.strategy", "FILTERED").toUpperCase(Locale.ROOT)) {
+                case "DEFAULT": strategy = Deflater.DEFAULT_STRATEGY; break;
+                case "HUFFMAN_ONLY": strategy = Deflater.HUFFMAN_ONLY; break;
+                default: strategy = Deflater.FILTERED; break;
+            }
+            Filter filter;
+            try {
+                filter = Filter.valueOf(FramesConfig.getString("png.filter", "ADAPTIVE").toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                filter = Filter.ADAPTIVE;
+            }
+            return new Settings(FramesConfig.getInt("png.level", 6), strategy, filter, FramesConfig.getInt("png.chunkBytes", 128 * 1024));
+        }
+    }
+
+    private static final class Block {
+        final byte[] data;
+        final int length;
+        final long adler;
+        final long rawLength;
+
+        Block(byte[] data, int length, long adler, long rawLength) {
+            this.data = data;
+            this.length = length;
+            this.adler = adler;
+            this.rawLength = rawLength;
+        }
+    }
+
+    private static synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            int threads = FramesConfig.getInt("png.threads", 0);
+            if (threads <= 0) threads = Runtime.getRuntime().availableProcessors();
+            pool = new ForkJoinPool(threads);
+        }
+        return pool;
+    }
+
+    public static synchronized void shutdown() {
+        if (pool != null) pool.shutdown();
+        pool = null;
+    }
+
+    public static Path tempDir(Path modsRoot) {
+        return modsRoot.resolve(Path.of("Cache", "Encoding"));
+    }
+
+    /** Deletes encoder output left behind by uploads that were interrupted. */
+    public static void cleanTempFiles(Path modsRoot) {
+        Path dir = tempDir(modsRoot);
+        if (!Files.isDirectory(dir)) return;
+        try (Stream<Path> stream = Files.list(dir)) {
+            stream.forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException ignored) {
+                }
+            });
+        } catch (IOException e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Failed to clean encoder temp files: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Encodes into a new temporary file under Cache/Encoding, ready to be moved into place.
+     */
+    public static Path encodeToTempFile(BufferedImage img, Path modsRoot) throws IOException {
+        Path dir = tempDir(modsRoot);
+        Files.createDirectories(dir);
+        Path tmp = dir.resolve(UUID.randomUUID() + ".png.tmp");
+        long start = System.nanoTime();
+        FramesEvents.Encode event = new FramesEvents.Encode();
+        event.begin();
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            encode(img, ch, Settings.fromConfig());
+            event.bytes = ch.size();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        FramesMetrics.PNG_ENCODE.observeSince(start);
+        event.width = img.getWidth();
+        event.height = img.getHeight();
+        event.commit();
+        return tmp;
+    }
+
+    public static void encode(BufferedImage img, WritableByteChannel out, Settings settings) throws IOException {
+        int w = img.getWidth();
+        int h = img.getHeight();
+        boolean alpha = hasTranslucency(img);
+        int bpp = alpha ? 4 : 3;
+        int stride = w * bpp + 1;
+
+        writeFully(out, ByteBuffer.wrap(SIGNATURE));
+        ByteBuffer ihdr = ByteBuffer.allocate(13);
+        ihdr.putInt(w).putInt(h).put((byte) 8).put((byte) (alpha ? 6 : 2)).put((byte) 0).put((byte) 0).put((byte) 0);
+        writeChunk(out, "IHDR", ihdr.array(), 0, 13);
+        // zlib header; FLG carries the level hint and makes CMF/FLG a multiple of 31
+        int flg = settings.level <= 1 ? 0x01 : settings.level <= 5 ? 0x5E : settings.level == 6 ? 0x9C : 0xDA;
+        writeChunk(out, "IDAT", new byte[]{0x78, (byte) flg}, 0, 2);
+
+        int rowsPerBlock = Math.max(1, settings.chunkBytes / stride);
+        int blocks = (h + rowsPerBlock - 1) / rowsPerBlock;
+        long adler = 1;
+        if (blocks == 1) {
+            Block b = deflateBlock(img, 0, h, true, bpp, settings);
+            writeChunk(out, "IDAT", b.data, 0, b.length);
+            adler = b.adler;
+        } else {
+            ForkJoinPool fj = pool();
+            int window = Math.max(2, fj.getParallelism() * 2);
+            ArrayDeque<ForkJoinTask<Block>> inFlight = new ArrayDeque<>();
+            for (int i = 0; i < blocks; i++) {
+                int y0 = i * rowsPerBlock;
+                int y1 = Math.min(h, y0 + rowsPerBlock);
+                boolean last = i == blocks - 1;
+                inFlight.add(fj.submit(() -> deflateBlock(img, y0, y1, last, bpp, settings)));
+                while (inFlight.size() >= window || (last && !inFlight.isEmpty())) {
+                    Block b = inFlight.poll().join();
+                    writeChunk(out, "IDAT", b.data, 0, b.length);
+                    adler = adler32Combine(adler, b.adler, b.rawLength);
+                }
+            }
+        }
+        byte[] trailer = ByteBuffer.allocate(4).putInt((int) adler).array();
+        writeChunk(out, "IDAT", trailer, 0, 4);
+        writeChunk(out, "IEND", new byte[0], 0, 0);
+    }
+
+    private static Block deflateBlock(BufferedImage img, int y0, int y1, boolean last, int bpp, Settings settings) {
+        Deflater deflater = new Deflater(settings.level, true);
+        try {
+            deflater.setStrategy(settings.strategy);
+            // The strategy is only applied on the next deflate call, and applying it later would drop the dictionary
+            deflater.deflate(new byte[16]);
+            int stride = img.getWidth() * bpp + 1;
+            if (y0 > 0) {
+                int dictRows = Math.min(y0, (DICT_BYTES + stride - 1) / stride);
+                byte[] dict = filterRows(img, y0 - dictRows, y0, bpp, settings.filter);
+                int off = Math.max(0, dict.length - DICT_BYTES);
+                deflater.setDictionary(dict, off, dict.length - off);
+            }
+            byte[] raw = filterRows(img, y0, y1, bpp, settings.filter);
+            Adler32 adler = new Adler32();
+            adler.update(raw);
+
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(raw.length / 2 + 64);
+            byte[] buf = new byte[Math.max(4096, raw.length / 4)];
+            deflater.setInput(raw);
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(buf);
+                    bos.write(buf, 0, n);
+                }
+            } else {
+                int n;
+                do {
+                    n = deflater.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+                    bos.write(buf, 0, n);
+                } while (n == buf.length);
+            }
+            byte[] data = bos.toByteArray();
+            return new Block(data, data.length, adler.getValue(), raw.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static boolean hasTranslucency(BufferedImage img) {
+        if (!img.getColorModel().hasAlpha()) return false;
+        int w = img.getWidth();
+        int[] row = new int[w];
+        for (int y = 0; y < img.getHeight(); y++) {
+            readArgbRow(img, y, row);
+            for (int argb : row) if ((argb >>> 24) != 0xFF) return true;
+        }
+        return false;
+    }
+
+    private static void readArgbRow(BufferedImage img, int y, int[] argb) {
+        int w = img.getWidth();
+        if (img.getType() == BufferedImage.TYPE_INT_ARGB) {
+            // Packed ARGB already; skips the per-pixel color model conversion of getRGB
+            img.getRaster().getDataElements(0, y, w, 1, argb);
+        } else {
+            img.getRGB(0, y, w, 1, argb, 0, w);
+        }
+    }
+
+    private static void readRow(BufferedImage img, int y, int[] argb, byte[] out, int bpp) {
+        int w = img.getWidth();
+        readArgbRow(img, y, argb);
+        int j = 0;
+        for (int i = 0; i < w; i++) {
+            int p = argb[i];
+            out[j++] = (byte) (p >> 16);
+            out[j++] = (byte) (p >> 8);
+            out[j++] = (byte) p;
+            if (bpp == 4) out[j++] = (byte) (p >>> 24);
+        }
+    }
+
+    // Filtered scanlines [filter type][bytes] for rows y0 (inclusive) to y1 (exclusive)
+    private static byte[] filterRows(BufferedImage img, int y0, int y1, int bpp, Filter filter) {
+        int w = img.getWidth();
+        int rowBytes = w * bpp;
+        byte[] out = new byte[(y1 - y0) * (rowBytes + 1)];
+        int[] argb = new int[w];
+        byte[] prev = new byte[rowBytes];
+        byte[] cur = new byte[rowBytes];
+        byte[] scratch = new byte[rowBytes];
+        if (y0 > 0) readRow(img, y0 - 1, argb, prev, bpp);
+
+        int pos = 0;
+        for (int y = y0; y < y1; y++) {
+            readRow(img, y, argb, cur, bpp);
+            int type;
+            if (filter == Filter.ADAPTIVE) {
+                type = 0;
+                long best = Long.MAX_VALUE;
+                for (int t = 0; t <= 4; t++) {
+                    applyFilter(t, cur, prev, scratch, 0, bpp);
+                    long sum = 0;
+                    for (byte b : scratch) sum += Math.abs((int) b);
+                    if (sum < best) {
+                        best = sum;
+                        type = t;
+                    }
+                }
+            } else {
+                type = filter.ordinal();
+            }
+            out[pos] = (byte) type;
+            applyFilter(type, cur, prev, out, pos + 1, bpp);
+            pos += rowBytes + 1;
+            byte[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return out;
+    }
+
+    private static void applyFilter(int type, byte[] cur, byte[] prev, byte[] out, int off, int bpp) {
+        int n = cur.length;
+        switch (type) {
+            case 0:
+                System.arraycopy(cur, 0, out, off, n);
+                break;
+            case 1:
+                for (int i = 0; i < n; i++) {
+                    int left = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+                    out[off + i] = (byte) ((cur[i] & 0xFF) - left);
+                }
+                break;
+            case 2:
+                for (int i = 0; i < n; i++) out[off + i] = (byte) ((cur[i] & 0xFF) - (prev[i] & 0xFF));
+                break;
+            case 3:
+                for (int i = 0; i < n; i++) {
+                    int left = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+                    out[off + i] = (byte) ((cur[i] & 0xFF) - ((left + (prev[i] & 0xFF)) >>> 1));
+                }
+                break;
+            default:
+                for (int i = 0; i < n; i++) {
+                    int a = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+                    int b = prev[i] & 0xFF;
+                    int c = i >= bpp ? prev[i - bpp] & 0xFF : 0;
+                    int p = a + b - c;
+                    int pa = Math.abs(p - a);
+                    int pb = Math.abs(p - b);
+                    int pc = Math.abs(p - c);
+                    int pred = pa <= pb && pa <= pc ? a : pb <= pc ? b : c;
+                    out[off + i] = (byte) ((cur[i] & 0xFF) - pred);
+                }
+                break;
+        }
+    }
+
+    // zlib's adler32_combine: checksum of A||B from adler(A), adler(B) and len(B)
+    static long adler32Combine(long adler1, long adler2, long len2) {
+        final long base = 65521;
+        long rem = len2 % base;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (rem * sum1) % base;
+        sum1 += (adler2 & 0xFFFF) + base - 1;
+        sum2 += ((adler1 >>> 16) & 0xFFFF) + ((adler2 >>> 16) & 0xFFFF) + base - rem;
+        if (sum1 >= base) sum1 -= base;
+        if (sum1 >= base) sum1 -= base;
+        if (sum2 >= (base << 1)) sum2 -= (base << 1);
+        if (sum2 >= base) sum2 -= base;
+        return sum1 | (sum2 << 16);
+    }
+
+    private static void writeChunk(WritableByteChannel out, String type, byte[] data, int off, int len) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, off, len);
+        ByteBuffer header = ByteBuffer.allocate(8).putInt(len).put(typeBytes);
+        header.flip();
+        writeFully(out, header);
+        writeFully(out, ByteBuffer.wrap(data, off, len));
+        writeFully(out, ByteBuffer.allocate(4).putInt((int) crc.getValue()).flip());
+    }
+
+    private static void writeFully(WritableByteChannel out, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) out.write(buf);
+    }
+}
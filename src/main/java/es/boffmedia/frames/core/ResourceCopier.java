@@ -1,17 +1,29 @@
 package es.boffmedia.frames.core;
 
 import es.boffmedia.frames.Frames;
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.json.JsonWriterSettings;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.JarURLConnection;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.Enumeration;
@@ -102,6 +114,7 @@ public final class ResourceCopier {
                     }
                 }
 
+                if (updated.equals(existing)) return;
                 Files.writeString(manifestOut, updated, StandardCharsets.UTF_8);
                 Frames.LOGGER.atInfo().log("Updated ServerVersion in " + manifestOut + " -> " + genServerVersion);
             }
@@ -110,6 +123,123 @@ public final class ResourceCopier {
         }
     }
 
+    private static final String HASHES_RESOURCE = "/ResourceHashes.json";
+    private static final String STATE_FILE = "ResourceState.json";
+
+    /**
+     * Brings the bundled Common/ and Server/ folders up to date in the mods folder using the build-time
+     * ResourceHashes.json: only files whose content differs from the bundled copy are written. What was
+     * written is remembered (size, mtime, hash) in ResourceState.json, so unchanged files are skipped
+     * without hashing them. Falls back to copying everything if the hash list is missing.
+     */
+    public static void syncResources(Path modsRoot) throws IOException {
+        BsonDocument files;
+        try (InputStream is = ResourceCopier.class.getResourceAsStream(HASHES_RESOURCE)) {
+            if (is == null) {
+                Frames.LOGGER.atWarning().log("ResourceHashes.json not found on classpath; copying all bundled resources");
+                copyResourceDirectory("/Common", modsRoot.resolve("Common"));
+                copyResourceDirectory("/Server", modsRoot.resolve("Server"));
+                return;
+            }
+            files = BsonDocument.parse(new String(is.readAllBytes(), StandardCharsets.UTF_8)).getDocument("files");
+        }
+
+        Path stateFile = modsRoot.resolve(STATE_FILE);
+        BsonDocument state = new BsonDocument();
+        if (Files.exists(stateFile)) {
+            try {
+                state = BsonDocument.parse(Files.readString(stateFile));
+            } catch (Exception e) {
+                Frames.LOGGER.atWarning().withCause(e).log("Ignoring unreadable " + STATE_FILE + ": " + e.getMessage());
+            }
+        }
+
+        long start = System.nanoTime();
+        int copied = 0;
+        BsonDocument newState = new BsonDocument();
+        for (String rel : files.keySet()) {
+            String hash = files.getDocument(rel).getString("sha256").getValue();
+            Path target = modsRoot.resolve(rel);
+            try {
+                if (!isUpToDate(target, hash, state.get(rel) instanceof BsonDocument d ? d : null)) {
+                    copyResource("/" + rel, target);
+                    copied++;
+                }
+                newState.append(rel, new BsonDocument()
+                        .append("sha256", new BsonString(hash))
+                        .append("size", new BsonInt64(Files.size(target)))
+                        .append("mtime", new BsonInt64(Files.getLastModifiedTime(target).toMillis())));
+            } catch (IOException e) {
+                Frames.LOGGER.atWarning().withCause(e).log("Failed to sync resource " + rel + ": " + e.getMessage());
+            }
+        }
+
+        // Compared as JSON since small numbers read back from the file come back as int32
+        if (!newState.toJson().equals(state.toJson())) {
+            PersistenceWriter.write(stateFile, newState.toJson(JsonWriterSettings.builder().indent(true).build()));
+        }
+        Frames.LOGGER.atInfo().log("Synced bundled resources: " + copied + " of " + files.size() + " files copied in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Paths (relative to the mods folder, '/'-separated) of the bundled files, or null if the jar has no
+     * hash list to tell them apart from files the plugin generated.
+     */
+    public static Set<String> bundledPaths() {
+        try (InputStream is = ResourceCopier.class.getResourceAsStream(HASHES_RESOURCE)) {
+            if (is == null) return null;
+            return Set.copyOf(BsonDocument.parse(new String(is.readAllBytes(), StandardCharsets.UTF_8)).getDocument("files").keySet());
+        } catch (Exception e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Failed to read " + HASHES_RESOURCE + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isUpToDate(Path target, String hash, BsonDocument recorded) throws IOException {
+        if (!Files.isRegularFile(target)) return false;
+        long size = Files.size(target);
+        long mtime = Files.getLastModifiedTime(target).toMillis();
+        if (recorded != null
+                && hash.equals(recorded.getString("sha256").getValue())
+                && size == recorded.getNumber("size").longValue()
+                && mtime == recorded.getNumber("mtime").longValue()) {
+            return true;
+        }
+        // Not written by us (or touched since): compare contents before overwriting
+        return hash.equals(sha256(target));
+    }
+
+    private static String sha256(Path file) throws IOException {
+        try (InputStream is = Files.newInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buf = new byte[65536];
+            for (int n; (n = is.read(buf)) > 0; ) digest.update(buf, 0, n);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    // Streams the resource straight into a temp file next to the target, then swaps it in
+    private static void copyResource(String resource, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path tmp = target.resolveSibling("." + target.getFileName() + ".tmp");
+        try (InputStream is = ResourceCopier.class.getResourceAsStream(resource)) {
+            if (is == null) throw new IOException("Resource " + resource + " not found on classpath");
+            try (ReadableByteChannel in = Channels.newChannel(is);
+                 FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                long pos = 0;
+                for (long n; (n = out.transferFrom(in, pos, 1 << 20)) > 0; ) pos += n;
+            }
+        }
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
     public static void copyResourceDirectory(String resourcePath, Path outDir) throws IOException {
         String rp = resourcePath.startsWith("/") ? resourcePath.substring(1) : resourcePath;
         URL url = ResourceCopier.class.getResource("/" + rp);
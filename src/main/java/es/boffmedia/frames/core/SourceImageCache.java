@@ -0,0 +1,260 @@
+package es.boffmedia.frames.core;
+
+import es.boffmedia.frames.Frames;
+import es.boffmedia.frames.FramesConfig;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of original image bytes under Cache/Sources, keyed by the SHA-256 of the normalized URL.
+ * Entries are evicted least-recently-used once the configured size budget is exceeded, and are downloaded
+ * again once older than sourceCache.maxAgeMinutes, so a link whose image changes is picked up. Concurrent
+ * requests for the same URL share a single download. A file's modification time is when it was
+ * downloaded and its access time when it was last served.
+ */
+public final class SourceImageCache {
+    private SourceImageCache() {}
+
+    private static final Map<String, CompletableFuture<byte[]>> inflight = new ConcurrentHashMap<>();
+
+    // key -> size in bytes, in access order (eldest first)
+    private static LinkedHashMap<String, Long> entries;
+    private static long totalBytes;
+    private static Path cacheRoot;
+
+    public static Path cacheDir(Path modsRoot) {
+        return modsRoot.resolve(Path.of("Cache", "Sources"));
+    }
+
+    /**
+     * Lower-cases scheme and host, drops default ports and fragments so trivially different spellings share an entry.
+     */
+    public static String normalizeUrl(String url) {
+        String trimmed = url.trim();
+        try {
+            URI u = new URI(trimmed);
+            if (u.getScheme() == null || u.getHost() == null) return trimmed;
+            String scheme = u.getScheme().toLowerCase(Locale.ROOT);
+            int port = u.getPort();
+            if (("http".equals(scheme) && port == 80) || ("https".equals(scheme) && port == 443)) port = -1;
+            String path = u.getRawPath() == null || u.getRawPath().isEmpty() ? "/" : u.getRawPath();
+            return scheme + "://" + u.getHost().toLowerCase(Locale.ROOT) + (port == -1 ? "" : ":" + port) + path
+                    + (u.getRawQuery() == null ? "" : "?" + u.getRawQuery());
+        } catch (Exception e) {
+            return trimmed;
+        }
+    }
+
+    public static String keyFor(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalizeUrl(url).getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(64);
+            for (byte b : digest) sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the source bytes for url, from the cache if present, otherwise downloading them once
+     * no matter how many callers ask for the same URL at the same time.
+     */
+    public static byte[] fetch(String url, Path modsRoot) throws IOException {
+        return fetch(url, modsRoot, false);
+    }
+
+    /**
+     * As above; with fresh set the cached copy is ignored and replaced by a new download, which is what
+     * a new upload of a link wants. Re-rendering an existing frame at another size can use the cache.
+     */
+    public static byte[] fetch(String url, Path modsRoot, boolean fresh) throws IOException {
+        FramesEvents.Download event = new FramesEvents.Download();
+        event.begin();
+        byte[] bytes = fetch(url, modsRoot, fresh, event);
+        event.url = url;
+        event.bytes = bytes.length;
+        event.commit();
+        return bytes;
+    }
+
+    private static byte[] fetch(String url, Path modsRoot, boolean fresh, FramesEvents.Download event) throws IOException {
+        if (!FramesConfig.getBoolean("sourceCache.enabled", true)) return ImageProcessor.fetchBytes(url);
+
+        String key = keyFor(url);
+        byte[] cached = fresh ? null : readCached(key, modsRoot);
+        event.cached = cached != null;
+        if (cached != null) return cached;
+
+        CompletableFuture<byte[]> mine = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = inflight.putIfAbsent(key, mine);
+        if (existing != null) return join(existing);
+
+        try {
+            // Another caller may have finished between our cache check and claiming the download
+            byte[] bytes = fresh ? null : readCached(key, modsRoot);
+            event.cached = bytes != null;
+            if (bytes == null) {
+                bytes = ImageProcessor.fetchBytes(url);
+                store(key, bytes, modsRoot);
+            }
+            mine.complete(bytes);
+            return bytes;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, mine);
+        }
+    }
+
+    private static byte[] join(CompletableFuture<byte[]> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            throw new IOException(cause == null ? e.getMessage() : cause.getMessage(), cause);
+        }
+    }
+
+    private static synchronized void ensureLoaded(Path modsRoot) {
+        if (entries != null && modsRoot.equals(cacheRoot)) return;
+        entries = new LinkedHashMap<>(64, 0.75f, true);
+        totalBytes = 0;
+        cacheRoot = modsRoot;
+
+        Path dir = cacheDir(modsRoot);
+        if (!Files.isDirectory(dir)) return;
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(dir)) {
+            stream.filter(p -> !p.getFileName().toString().endsWith(".tmp")).forEach(files::add);
+        } catch (IOException e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Failed to list source cache: " + e.getMessage());
+            return;
+        }
+        // Rebuild recency from access times, which are refreshed on every hit
+        files.sort((a, b) -> Long.compare(lastAccessed(a), lastAccessed(b)));
+        for (Path p : files) {
+            try {
+                long size = Files.size(p);
+                entries.put(p.getFileName().toString(), size);
+                totalBytes += size;
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static long lastAccessed(Path p) {
+        try {
+            return Files.readAttributes(p, BasicFileAttributes.class).lastAccessTime().toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static synchronized boolean touch(String key, Path modsRoot) {
+        ensureLoaded(modsRoot);
+        // get() moves the entry to the most recently used end
+        return entries.get(key) != null;
+    }
+
+    private static synchronized void forget(String key) {
+        Long size = entries.remove(key);
+        if (size != null) totalBytes -= size;
+    }
+
+    // Drops the entry if it was downloaded longer than sourceCache.maxAgeMinutes ago
+    private static boolean expire(String key, Path file) throws IOException {
+        long maxAge = FramesConfig.getLong("sourceCache.maxAgeMinutes", 60) * 60_000L;
+        if (maxAge <= 0 || System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis() <= maxAge) return false;
+        forget(key);
+        Files.deleteIfExists(file);
+        return true;
+    }
+
+    private static byte[] readCached(String key, Path modsRoot) {
+        if (!touch(key, modsRoot)) return null;
+        Path file = cacheDir(modsRoot).resolve(key);
+        try {
+            if (expire(key, file)) return null;
+            byte[] bytes = Files.readAllBytes(file);
+            Files.getFileAttributeView(file, BasicFileAttributeView.class).setTimes(null, FileTime.fromMillis(System.currentTimeMillis()), null);
+            return bytes;
+        } catch (IOException e) {
+            forget(key);
+            return null;
+        }
+    }
+
+    // The file is written and evicted files are deleted outside the lock, which only guards the LRU map
+    private static void store(String key, byte[] bytes, Path modsRoot) {
+        long budget = FramesConfig.getLong("sourceCache.maxBytes", 256L * 1024L * 1024L);
+        if (bytes.length > budget) return;
+
+        Path dir = cacheDir(modsRoot);
+        Path tmp = null;
+        try {
+            Files.createDirectories(dir);
+            // Unique per store, since the same url may be downloaded twice at once
+            tmp = Files.createTempFile(dir, key, ".tmp");
+            Files.write(tmp, bytes);
+            Files.move(tmp, dir.resolve(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Failed to cache source image: " + e.getMessage());
+            try {
+                if (tmp != null) Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+            }
+            return;
+        }
+        for (String victim : admit(key, bytes.length, budget, modsRoot)) {
+            try {
+                Files.deleteIfExists(dir.resolve(victim));
+            } catch (IOException e) {
+                // Still counted against the budget once the cache is reloaded
+                Frames.LOGGER.atWarning().withCause(e).log("Failed to evict cached source " + victim + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Records the entry and returns the least recently used ones that no longer fit the budget
+    private static synchronized List<String> admit(String key, long size, long budget, Path modsRoot) {
+        ensureLoaded(modsRoot);
+        Long previous = entries.put(key, size);
+        totalBytes += size - (previous == null ? 0 : previous);
+        List<String> victims = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > budget && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            victims.add(eldest.getKey());
+            totalBytes -= eldest.getValue();
+            it.remove();
+        }
+        return victims;
+    }
+
+    public static synchronized long sizeBytes() {
+        return entries == null ? 0 : totalBytes;
+    }
+}
@@ -0,0 +1,306 @@
+package es.boffmedia.frames.core;
+
+import es.boffmedia.frames.Frames;
+import es.boffmedia.frames.FramesConfig;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.json.JsonWriterSettings;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Optional atlas mode: small frame textures are packed into shared pages under
+ * Common/Blocks/Frames/Atlas instead of one PNG each. Pages are a grid of 32px cells (frame
+ * textures are always padded to multiples of 32), so packing is a first-fit search for a free
+ * rectangle of cells. Adding or deleting a frame only rewrites the page it lives on, and cells
+ * freed by deletes are reused. State is kept in Atlas.json.
+ *
+ * Pages stay decoded in memory (pageSize^2 * 4 bytes each). The atlas lock only covers packing and
+ * drawing the cells; encoding a page to PNG happens outside it, one page at a time, and frames drawn
+ * into a page while it is being encoded are written together by the next encode.
+ */
+public final class TextureAtlas {
+    private TextureAtlas() {}
+
+    private static final String STATE_FILE = "Atlas.json";
+    private static final int CELL = 32;
+
+    public static final class Slot {
+        public final int page;
+        public final int x;
+        public final int y;
+        public final int width;
+        public final int height;
+
+        Slot(int page, int x, int y, int width, int height) {
+            this.page = page;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+
+        public String texturePath() {
+            return TextureAtlas.texturePath(page);
+        }
+
+        BsonDocument toDocument() {
+            return new BsonDocument()
+                    .append("page", new BsonInt32(page))
+                    .append("x", new BsonInt32(x))
+                    .append("y", new BsonInt32(y))
+                    .append("w", new BsonInt32(width))
+                    .append("h", new BsonInt32(height));
+        }
+
+        static Slot fromDocument(BsonDocument d) {
+            return new Slot(d.getInt32("page").getValue(), d.getInt32("x").getValue(), d.getInt32("y").getValue(),
+                    d.getInt32("w").getValue(), d.getInt32("h").getValue());
+        }
+    }
+
+    private static Map<String, Slot> slots;
+    private static List<BitSet> pages;
+    private static int pageSize;
+    private static Path atlasRoot;
+    // Decoded pages, loaded on first use
+    private static final Map<Integer, BufferedImage> images = new HashMap<>();
+    // Per page: changes drawn, and changes known to be on disk (guarded by the page's write lock)
+    private static final Map<Integer, Long> drawnVersion = new HashMap<>();
+    private static final Map<Integer, Long> writtenVersion = new ConcurrentHashMap<>();
+    private static final Map<Integer, Object> writeLocks = new ConcurrentHashMap<>();
+
+    public static boolean isEnabled() {
+        return FramesConfig.getBoolean("atlas.enabled", false);
+    }
+
+    /** True if a prepared texture of this size should go into the atlas rather than its own PNG. */
+    public static boolean accepts(int width, int height) {
+        if (!isEnabled()) return false;
+        int max = FramesConfig.getInt("atlas.maxImageSize", 128);
+        return width <= max && height <= max && width % CELL == 0 && height % CELL == 0;
+    }
+
+    public static String texturePath(int page) {
+        return "Blocks/Frames/Atlas/atlas_" + page + ".png";
+    }
+
+    public static Path pagePath(int page, Path modsRoot) {
+        return modsRoot.resolve(Path.of("Common", "Blocks", "Frames", "Atlas", "atlas_" + page + ".png"));
+    }
+
+    private static int cellsPerSide() {
+        return pageSize / CELL;
+    }
+
+    private static void ensureLoaded(Path modsRoot) {
+        if (slots != null && modsRoot.equals(atlasRoot)) return;
+        slots = new HashMap<>();
+        pages = new ArrayList<>();
+        images.clear();
+        drawnVersion.clear();
+        writtenVersion.clear();
+        atlasRoot = modsRoot;
+        pageSize = Math.max(CELL, (FramesConfig.getInt("atlas.pageSize", 1024) / CELL) * CELL);
+
+        Path file = modsRoot.resolve(STATE_FILE);
+        if (!Files.exists(file)) return;
+        try {
+            BsonDocument doc = BsonDocument.parse(Files.readString(file));
+            // Keep the page size the existing pages were built with
+            if (doc.containsKey("pageSize")) pageSize = doc.getInt32("pageSize").getValue();
+            BsonDocument entries = doc.containsKey("entries") ? doc.getDocument("entries") : new BsonDocument();
+            for (String itemId : entries.keySet()) {
+                Slot s = Slot.fromDocument(entries.getDocument(itemId));
+                slots.put(itemId, s);
+                mark(s, true);
+            }
+        } catch (Exception e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Failed to read " + STATE_FILE + ": " + e.getMessage());
+        }
+    }
+
+    private static BitSet page(int index) {
+        while (pages.size() <= index) pages.add(new BitSet());
+        return pages.get(index);
+    }
+
+    private static void mark(Slot s, boolean used) {
+        BitSet cells = page(s.page);
+        int side = cellsPerSide();
+        for (int cy = s.y / CELL; cy < (s.y + s.height) / CELL; cy++) {
+            cells.set(cy * side + s.x / CELL, cy * side + (s.x + s.width) / CELL, used);
+        }
+    }
+
+    private static boolean isFree(BitSet cells, int cx, int cy, int cw, int ch) {
+        int side = cellsPerSide();
+        for (int y = cy; y < cy + ch; y++) {
+            int next = cells.nextSetBit(y * side + cx);
+            if (next != -1 && next < y * side + cx + cw) return false;
+        }
+        return true;
+    }
+
+    private static Slot allocate(int width, int height) {
+        int side = cellsPerSide();
+        int cw = width / CELL;
+        int ch = height / CELL;
+        for (int p = 0; ; p++) {
+            BitSet cells = page(p);
+            for (int cy = 0; cy + ch <= side; cy++) {
+                for (int cx = 0; cx + cw <= side; cx++) {
+                    if (isFree(cells, cx, cy, cw, ch)) return new Slot(p, cx * CELL, cy * CELL, width, height);
+                }
+            }
+        }
+    }
+
+    public static synchronized Slot slotOf(String itemId, Path modsRoot) {
+        ensureLoaded(modsRoot);
+        return slots.get(itemId);
+    }
+
+    /**
+     * Places the texture for itemId into the atlas, replacing any region it held before, and returns once
+     * the affected page(s) are on disk.
+     */
+    public static Slot place(String itemId, BufferedImage image, Path modsRoot) throws IOException {
+        Slot slot;
+        Slot previous;
+        synchronized (TextureAtlas.class) {
+            ensureLoaded(modsRoot);
+            if (image.getWidth() > pageSize || image.getHeight() > pageSize) throw new IOException("Image does not fit in an atlas page");
+
+            previous = slots.remove(itemId);
+            if (previous != null) {
+                mark(previous, false);
+                draw(previous, null, modsRoot);
+            }
+            slot = allocate(image.getWidth(), image.getHeight());
+            slots.put(itemId, slot);
+            mark(slot, true);
+            draw(slot, image, modsRoot);
+            saveState(modsRoot);
+        }
+        if (previous != null && previous.page != slot.page) flush(previous.page, modsRoot);
+        flush(slot.page, modsRoot);
+        Frames.LOGGER.atInfo().log("Packed " + itemId + " into atlas page " + slot.page + " at " + slot.x + "," + slot.y);
+        return slot;
+    }
+
+    /**
+     * Frees the region held by itemId, if any. A page left without entries is deleted.
+     */
+    public static boolean remove(String itemId, Path modsRoot) {
+        Slot slot;
+        synchronized (TextureAtlas.class) {
+            ensureLoaded(modsRoot);
+            slot = slots.remove(itemId);
+            if (slot == null) return false;
+            mark(slot, false);
+            try {
+                draw(slot, null, modsRoot);
+            } catch (IOException e) {
+                Frames.LOGGER.atWarning().withCause(e).log("Failed to read atlas page " + slot.page + ": " + e.getMessage());
+            }
+            saveState(modsRoot);
+        }
+        try {
+            flush(slot.page, modsRoot);
+        } catch (IOException e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Failed to rewrite atlas page " + slot.page + ": " + e.getMessage());
+        }
+        return true;
+    }
+
+    /** Returns the texture of itemId cut out of its atlas page, or null if it is not in the atlas. */
+    public static synchronized BufferedImage readRegion(String itemId, Path modsRoot) throws IOException {
+        ensureLoaded(modsRoot);
+        Slot slot = slots.get(itemId);
+        if (slot == null || !Files.exists(pagePath(slot.page, modsRoot))) return null;
+        BufferedImage region = new BufferedImage(slot.width, slot.height, BufferedImage.TYPE_INT_ARGB);
+        region.setRGB(0, 0, slot.width, slot.height, pageImage(slot.page, modsRoot).getRGB(slot.x, slot.y, slot.width, slot.height, null, 0, slot.width), 0, slot.width);
+        return region;
+    }
+
+    // Caller holds the atlas lock
+    private static BufferedImage pageImage(int index, Path modsRoot) throws IOException {
+        BufferedImage page = images.get(index);
+        if (page != null) return page;
+        Path file = pagePath(index, modsRoot);
+        BufferedImage stored = Files.exists(file) ? ImageIO.read(file.toFile()) : null;
+        page = new BufferedImage(pageSize, pageSize, BufferedImage.TYPE_INT_ARGB);
+        if (stored != null) page.getGraphics().drawImage(stored, 0, 0, null);
+        images.put(index, page);
+        return page;
+    }
+
+    // Clears the slot's cells, or draws image into them, in the resident page. Caller holds the atlas lock.
+    private static void draw(Slot slot, BufferedImage image, Path modsRoot) throws IOException {
+        BufferedImage page = pageImage(slot.page, modsRoot);
+        int[] argb = image == null ? new int[slot.width * slot.height] : image.getRGB(0, 0, slot.width, slot.height, null, 0, slot.width);
+        page.setRGB(slot.x, slot.y, slot.width, slot.height, argb, 0, slot.width);
+        drawnVersion.merge(slot.page, 1L, Long::sum);
+    }
+
+    /**
+     * Writes the page if it has changes that are not on disk yet. Callers queue on the page's write lock
+     * while an encode runs, and the first one after it writes the changes of all of them.
+     */
+    private static void flush(int index, Path modsRoot) throws IOException {
+        synchronized (writeLocks.computeIfAbsent(index, k -> new Object())) {
+            BufferedImage copy = null;
+            long version;
+            boolean empty;
+            synchronized (TextureAtlas.class) {
+                version = drawnVersion.getOrDefault(index, 0L);
+                if (version <= writtenVersion.getOrDefault(index, 0L)) return;
+                empty = page(index).isEmpty();
+                if (empty) {
+                    images.remove(index);
+                } else {
+                    BufferedImage page = images.get(index);
+                    copy = new BufferedImage(pageSize, pageSize, BufferedImage.TYPE_INT_ARGB);
+                    copy.getRaster().setRect(page.getRaster());
+                }
+            }
+
+            Path file = pagePath(index, modsRoot);
+            if (empty) {
+                Files.deleteIfExists(file);
+            } else {
+                Files.createDirectories(file.getParent());
+                Path tmp = PngEncoder.encodeToTempFile(copy, modsRoot);
+                try {
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            writtenVersion.put(index, version);
+        }
+    }
+
+    private static void saveState(Path modsRoot) {
+        BsonDocument entries = new BsonDocument();
+        for (Map.Entry<String, Slot> e : slots.entrySet()) entries.append(e.getKey(), e.getValue().toDocument());
+        BsonDocument doc = new BsonDocument()
+                .append("pageSize", new BsonInt32(pageSize))
+                .append("entries", entries);
+        JsonWriterSettings settings = JsonWriterSettings.builder().indent(true).build();
+        PersistenceWriter.writeAsync(modsRoot.resolve(STATE_FILE), doc.toJson(settings));
+    }
+}
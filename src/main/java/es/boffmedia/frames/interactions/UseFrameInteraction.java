@@ -19,6 +19,8 @@ import com.hypixel.hytale.server.core.universe.world.chunk.WorldChunk;
 import com.hypixel.hytale.server.core.universe.world.storage.ChunkStore;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import es.boffmedia.frames.Frames;
+import es.boffmedia.frames.core.FramesEvents;
+import es.boffmedia.frames.core.FramesMetrics;
 import es.boffmedia.frames.ui.ImageDownloadPage;
 
 import javax.annotation.Nonnull;
@@ -53,6 +55,14 @@ public class UseFrameInteraction extends OpenCustomUIInteraction {
 
 
     public static boolean applyStateToBlock(@Nonnull World world, @Nonnull BlockPosition targetBlock, @Nonnull String stateKey) {
+        FramesEvents.BlockApply event = new FramesEvents.BlockApply();
+        event.begin();
+        boolean applied = setBlockState(world, targetBlock, stateKey);
+        commitApply(event, "state", stateKey, world, targetBlock, applied);
+        return applied;
+    }
+
+    private static boolean setBlockState(@Nonnull World world, @Nonnull BlockPosition targetBlock, @Nonnull String stateKey) {
         try {
             long chunkIndex = ChunkUtil.indexChunkFromBlock(targetBlock.x, targetBlock.z);
             WorldChunk chunk = world.getChunkIfInMemory(chunkIndex);
@@ -81,7 +91,9 @@ public class UseFrameInteraction extends OpenCustomUIInteraction {
             }
 
             int rotation = chunk.getRotationIndex(targetBlock.x, targetBlock.y, targetBlock.z);
+            long start = System.nanoTime();
             chunk.setBlock(targetBlock.x, targetBlock.y, targetBlock.z, newBlockId, newBlockType, rotation, 0, 256);
+            FramesMetrics.BLOCK_APPLY.observeSince(start);
             Frames.LOGGER.atInfo().log("Applied state '" + stateKey + "' -> block " + newBlock + " at " + targetBlock);
             return true;
         } catch (Exception e) {
@@ -95,6 +107,14 @@ public class UseFrameInteraction extends OpenCustomUIInteraction {
      * itemId should be the asset key such as "Boff_Frame_<name>".
      */
     public static boolean replaceBlockWithItem(@Nonnull World world, @Nonnull BlockPosition targetBlock, @Nonnull String itemId) {
+        FramesEvents.BlockApply event = new FramesEvents.BlockApply();
+        event.begin();
+        boolean applied = setBlock(world, targetBlock, itemId);
+        commitApply(event, "replace", itemId, world, targetBlock, applied);
+        return applied;
+    }
+
+    private static boolean setBlock(@Nonnull World world, @Nonnull BlockPosition targetBlock, @Nonnull String itemId) {
         try {
             long chunkIndex = ChunkUtil.indexChunkFromBlock(targetBlock.x, targetBlock.z);
             WorldChunk chunk = world.getChunkIfInMemory(chunkIndex);
@@ -111,7 +131,9 @@ public class UseFrameInteraction extends OpenCustomUIInteraction {
             }
 
             int rotation = chunk.getRotationIndex(targetBlock.x, targetBlock.y, targetBlock.z);
+            long start = System.nanoTime();
             chunk.setBlock(targetBlock.x, targetBlock.y, targetBlock.z, newBlockId, newBlockType, rotation, 0, 256);
+            FramesMetrics.BLOCK_APPLY.observeSince(start);
             Frames.LOGGER.atInfo().log("Replaced block at " + targetBlock + " with " + itemId);
             return true;
         } catch (Exception e) {
@@ -120,6 +142,18 @@ public class UseFrameInteraction extends OpenCustomUIInteraction {
         }
     }
 
+    private static void commitApply(FramesEvents.BlockApply event, String operation, String itemId, World world, BlockPosition target, boolean applied) {
+        if (!event.shouldCommit()) return;
+        event.operation = operation;
+        event.itemId = itemId;
+        event.world = world.getName();
+        event.x = target.x;
+        event.y = target.y;
+        event.z = target.z;
+        event.applied = applied;
+        event.commit();
+    }
+
 
     static {
         Frames.LOGGER.atInfo().log("Registering UseFrameInteraction codec");
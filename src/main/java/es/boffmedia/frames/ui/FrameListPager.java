@@ -0,0 +1,112 @@
+package es.boffmedia.frames.ui;
+
+import com.hypixel.hytale.protocol.packets.interface_.CustomUIEventBindingType;
+import com.hypixel.hytale.server.core.ui.builder.EventData;
+import com.hypixel.hytale.server.core.ui.builder.UICommandBuilder;
+import com.hypixel.hytale.server.core.ui.builder.UIEventBuilder;
+import es.boffmedia.frames.FramesConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Paging and filtering state shared by the frame list pages. Only the current page of the filtered
+ * entries is sent to the client, so the page payload stays the same size however many frames exist.
+ * Event indices always refer to the unfiltered entries array.
+ */
+final class FrameListPager {
+
+    private final String[] entries;
+    private final String[] lowerEntries;
+    private final int pageSize;
+    private List<Integer> filtered;
+    private String filter = "";
+    private int page;
+
+    FrameListPager(String[] entries) {
+        this.entries = entries;
+        this.lowerEntries = new String[entries.length];
+        for (int i = 0; i < entries.length; i++) lowerEntries[i] = entries[i].toLowerCase(Locale.ROOT);
+        this.pageSize = Math.max(1, FramesConfig.getInt("ui.listPageSize", 25));
+        applyFilter("");
+    }
+
+    void applyFilter(String text) {
+        filter = text == null ? "" : text.trim();
+        String needle = filter.toLowerCase(Locale.ROOT);
+        filtered = new ArrayList<>();
+        for (int i = 0; i < entries.length; i++) {
+            if (needle.isEmpty() || lowerEntries[i].contains(needle)) filtered.add(i);
+        }
+        page = 0;
+    }
+
+    int pageCount() {
+        return Math.max(1, (filtered.size() + pageSize - 1) / pageSize);
+    }
+
+    void next() {
+        if (page < pageCount() - 1) page++;
+    }
+
+    void previous() {
+        if (page > 0) page--;
+    }
+
+    /**
+     * Handles the Search/Prev/Next actions. Returns true if the action was one of them and the page
+     * needs to be rebuilt.
+     */
+    boolean handle(String action, String filterValue) {
+        switch (action) {
+            case "Search":
+                applyFilter(filterValue);
+                return true;
+            case "Next":
+                next();
+                return true;
+            case "Prev":
+                previous();
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** Appends the visible slice to #FramesList and binds the paging controls of ListFramesPage.ui. */
+    void render(UICommandBuilder ui, UIEventBuilder events) {
+        try { ui.clear("#FramesList"); } catch (Exception ignored) {}
+
+        int from = page * pageSize;
+        int to = Math.min(filtered.size(), from + pageSize);
+        for (int row = 0; from + row < to; row++) {
+            int index = filtered.get(from + row);
+            try {
+                ui.append("#FramesList", "Pages/FrameListItem.ui");
+                ui.set("#FramesList[" + row + "] #EntryLabel.Text", entries[index]);
+
+                events.addEventBinding(CustomUIEventBindingType.Activating,
+                        "#FramesList[" + row + "] #ApplyButton",
+                        new EventData().append("Action", "Apply").append("Index", Integer.toString(index)),
+                        false);
+                events.addEventBinding(CustomUIEventBindingType.Activating,
+                        "#FramesList[" + row + "] #DeleteButton",
+                        new EventData().append("Action", "Delete").append("Index", Integer.toString(index)),
+                        false);
+            } catch (Exception ignored) {}
+        }
+
+        ui.set("#FilterInput.Value", filter);
+        ui.set("#PageLabel.Text", filtered.isEmpty()
+                ? "No matches"
+                : (from + 1) + "-" + to + " of " + filtered.size() + " (page " + (page + 1) + "/" + pageCount() + ")");
+
+        events.addEventBinding(CustomUIEventBindingType.Activating, "#SearchButton",
+                new EventData().append("Action", "Search").append("@Filter", "#FilterInput.Value"), false);
+        events.addEventBinding(CustomUIEventBindingType.Activating, "#PrevButton",
+                new EventData().append("Action", "Prev"), false);
+        events.addEventBinding(CustomUIEventBindingType.Activating, "#NextButton",
+                new EventData().append("Action", "Next"), false);
+    }
+}
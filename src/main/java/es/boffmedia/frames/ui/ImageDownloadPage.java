@@ -29,7 +29,16 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import es.boffmedia.frames.FileHelper;
 import es.boffmedia.frames.Frames;
+import es.boffmedia.frames.FramesConfig;
 import es.boffmedia.frames.PermissionsUtil;
+import es.boffmedia.frames.core.BlockApplyScheduler;
+import es.boffmedia.frames.core.FrameCatalog;
+import es.boffmedia.frames.core.FrameInstance;
+import es.boffmedia.frames.core.FrameItemGenerator;
+import es.boffmedia.frames.core.FramesEvents;
+import es.boffmedia.frames.core.IngestionPipeline;
+import es.boffmedia.frames.core.PersistenceWriter;
+import es.boffmedia.frames.core.SourceImageCache;
 // Permissions check removed; states list deprecated
 import es.boffmedia.frames.interactions.UseFrameInteraction;
 
@@ -79,12 +88,17 @@ public class ImageDownloadPage extends InteractiveCustomUIPage<ImageDownloadPage
         this.initialStateKey = initialStateKey;
     }
 
+    // URL of the frame at the target block, if the page opened on one
+    private String prefilledUrl;
+
     public void setSelectedStateKey(String key) {
         this.initialStateKey = key;
     }
 
     @Override
     public void build(@Nonnull Ref<EntityStore> ref, @Nonnull UICommandBuilder uiCommandBuilder, @Nonnull UIEventBuilder uiEventBuilder, @Nonnull Store<EntityStore> store) {
+        FramesEvents.PageBuild event = new FramesEvents.PageBuild();
+        event.begin();
         uiCommandBuilder.append("Pages/ImageDownloadPage.ui");
 
         // Populate alignment dropdown entries and set default value
@@ -137,77 +151,30 @@ public class ImageDownloadPage extends InteractiveCustomUIPage<ImageDownloadPage
                 .append("Action", "RemoveReplace1x1"),
                 false);
 
-        // Prefill inputs from the global frames index by coords for quick lookup
+        // Prefill inputs from the resident frames index by coords
         try {
-            Path indexFile = FileHelper.MODS_ROOT.resolve("FramesIndex.json");
-            if (Files.exists(indexFile) && Files.isRegularFile(indexFile)) {
-                try {
-                    String idxTxt = Files.readString(indexFile);
-                    org.bson.BsonDocument idxDoc = org.bson.BsonDocument.parse(idxTxt);
-                    if (idxDoc.containsKey("items")) {
-                        org.bson.BsonDocument items = idxDoc.getDocument("items");
-                        outer: for (String itemId : items.keySet()) {
-                            try {
-                                org.bson.BsonArray arr = items.getArray(itemId);
-                                for (int ai = 0; ai < arr.size(); ai++) {
-                                    org.bson.BsonDocument inst = arr.get(ai).asDocument();
-                                    if (!inst.containsKey("coords")) continue;
-
-                                    // ownership/share filter: allow if creator == player OR share == true (default true)
-                                    boolean allowed = false;
-                                    String creator = "";
-                                    if (inst.containsKey("creator")) {
-                                        try { creator = inst.getString("creator").getValue(); } catch (Exception ignore) { creator = ""; }
-                                    }
-                                    boolean share = true;
-                                    if (inst.containsKey("share")) {
-                                        try { share = inst.getBoolean("share").getValue(); } catch (Exception ignore) { share = true; }
-                                    }
-                                    String playerUuid = "";
-                                    try { if (player != null) playerUuid = ((com.hypixel.hytale.server.core.command.system.CommandSender) player).getUuid().toString(); } catch (Exception ignore) { playerUuid = ""; }
-                                    if (creator != null && !creator.isEmpty() && creator.equals(playerUuid)) allowed = true;
-                                    else if (share) allowed = true;
-                                    if (!allowed) continue;
-                                    org.bson.BsonDocument c = inst.getDocument("coords");
-                                    int mx = c.getInt32("x").getValue();
-                                    int my = c.getInt32("y").getValue();
-                                    int mz = c.getInt32("z").getValue();
-                                    if (mx == this.targetBlock.x && my == this.targetBlock.y && mz == this.targetBlock.z) {
-                                        String metaFile = inst.containsKey("metaFile") ? inst.getString("metaFile").getValue() : (itemId + ".json");
-                                        Path metaPath = FileHelper.MODS_ROOT.resolve("Frames").resolve(metaFile);
-                                        if (Files.exists(metaPath) && Files.isRegularFile(metaPath)) {
-                                            try {
-                                                String metaTxt = Files.readString(metaPath);
-                                                org.bson.BsonDocument meta = org.bson.BsonDocument.parse(metaTxt);
-                                                String mname = meta.containsKey("name") ? meta.getString("name").getValue() : "";
-                                                String murl = meta.containsKey("url") ? meta.getString("url").getValue() : "";
-                                                int mbx = 1;
-                                                if (inst.containsKey("blocks")) {
-                                                    org.bson.BsonDocument b = inst.getDocument("blocks");
-                                                    if (b.containsKey("x")) mbx = b.getInt32("x").getValue();
-                                                }
-                                                try { uiCommandBuilder.set("#NameInput.Value", mname); } catch (Exception ignore) {}
-                                                try { uiCommandBuilder.set("#UrlInput.Value", murl); } catch (Exception ignore) {}
-                                                try { uiCommandBuilder.set("#SizeXInput.Value", Integer.toString(mbx)); } catch (Exception ignore) {}
-                                                try { uiCommandBuilder.set("#StateKeyInput.Value", itemId); } catch (Exception ignore) {}
-                                                try { uiCommandBuilder.set("#AlignmentSelect.Value", meta.containsKey("alignment") ? meta.getString("alignment").getValue() : "CENTERED"); } catch (Exception ignore) {}
-                                            } catch (Exception e) {
-                                                Frames.LOGGER.atWarning().withCause(e).log("Failed to read referenced metadata: " + metaPath);
-                                            }
-                                        }
-                                        break outer;
-                                    }
-                                }
-                            } catch (Exception ignoreItem) {
-                                // ignore per-item errors
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    Frames.LOGGER.atWarning().withCause(e).log("Failed to read frames index: " + e.getMessage());
+            FrameInstance inst = FileHelper.findFrameInstanceAt(this.targetWorld.getName(), this.targetBlock.x, this.targetBlock.y, this.targetBlock.z);
+            String playerUuid = "";
+            try { if (player != null) playerUuid = ((com.hypixel.hytale.server.core.command.system.CommandSender) player).getUuid().toString(); } catch (Exception ignore) { playerUuid = ""; }
+
+            // ownership/share filter: allow if creator == player OR share == true
+            if (inst != null && inst.isVisibleTo(playerUuid)) {
+                // Name, url and alignment come from the resident catalog rather than the metadata file
+                FrameCatalog.Summary meta = FileHelper.frameSummary(inst.metaFile);
+                if (meta != null && meta.error != null) {
+                    Frames.LOGGER.atWarning().log("Failed to read referenced metadata " + inst.metaFile + ": " + meta.error);
+                } else if (meta != null) {
+                    try { uiCommandBuilder.set("#NameInput.Value", meta.name); } catch (Exception ignore) {}
+                    try { uiCommandBuilder.set("#UrlInput.Value", meta.url); } catch (Exception ignore) {}
+                    if (!meta.url.isEmpty()) this.prefilledUrl = meta.url;
+                    try { uiCommandBuilder.set("#SizeXInput.Value", Integer.toString(inst.blocksX)); } catch (Exception ignore) {}
+                    try { uiCommandBuilder.set("#StateKeyInput.Value", inst.itemId); } catch (Exception ignore) {}
+                    try { uiCommandBuilder.set("#AlignmentSelect.Value", meta.alignment); } catch (Exception ignore) {}
                 }
             }
-        } catch (Exception ignored) {}
+        } catch (Exception e) {
+            Frames.LOGGER.atWarning().withCause(e).log("Failed to look up frames index: " + e.getMessage());
+        }
 
         // If we were opened with a preselected state key, set the input value
         try {
@@ -215,6 +182,25 @@ public class ImageDownloadPage extends InteractiveCustomUIPage<ImageDownloadPage
                 uiCommandBuilder.set("#StateKeyInput.Value", this.initialStateKey);
             }
         } catch (Exception ignored) {}
+        event.page = "ImageDownloadPage";
+        event.commit();
+    }
+
+    // Replace the block once the generated item's asset has been loaded by the server
+    private void scheduleReplace(Player player, String itemId) {
+        BlockApplyScheduler.schedule(this.targetWorld, this.targetBlock, itemId, outcome -> {
+            switch (outcome) {
+                case APPLIED:
+                    player.sendMessage(com.hypixel.hytale.server.core.Message.raw("The frame has been updated to the new item: " + itemId));
+                    break;
+                case TIMED_OUT:
+                    player.sendMessage(com.hypixel.hytale.server.core.Message.raw("The new item " + itemId + " was not loaded in time. Use Apply with this id once assets have been reloaded."));
+                    break;
+                default:
+                    player.sendMessage(com.hypixel.hytale.server.core.Message.raw("Could not replace the block. Ensure the chunk is loaded and assets have been reloaded."));
+                    break;
+            }
+        });
     }
 
     @Override
@@ -224,72 +210,27 @@ public class ImageDownloadPage extends InteractiveCustomUIPage<ImageDownloadPage
         if (data == null || data.action == null) return;
 
         if ("Choose".equals(data.action)) {
-            // Build entries list from metadata files and open ListUserImagesPage
-                try {
-                    Path metaDir = FileHelper.MODS_ROOT.resolve("Frames");
-                if (!Files.exists(metaDir) || !Files.isDirectory(metaDir)) {
-                    player.sendMessage(com.hypixel.hytale.server.core.Message.raw("No metadata files found."));
-                    return;
-                }
+            // Build entries list from the frame catalog and open ListUserImagesPage
+            try {
+                String playerUuid = "";
+                try { if (player != null) playerUuid = ((com.hypixel.hytale.server.core.command.system.CommandSender) player).getUuid().toString(); } catch (Exception ignore) { playerUuid = ""; }
 
                 java.util.List<String> entries = new java.util.ArrayList<>();
-                    // load index once to check creator/share flags per item
-                    org.bson.BsonDocument idxDoc = null;
-                    org.bson.BsonDocument itemsDoc = null;
-                    Path indexFile = FileHelper.MODS_ROOT.resolve("FramesIndex.json");
-                    if (Files.exists(indexFile) && Files.isRegularFile(indexFile)) {
-                        try {
-                            String txt = Files.readString(indexFile);
-                            idxDoc = org.bson.BsonDocument.parse(txt);
-                            if (idxDoc.containsKey("items")) itemsDoc = idxDoc.getDocument("items");
-                        } catch (Exception ignore) { idxDoc = null; itemsDoc = null; }
+                for (FrameCatalog.Summary s : FileHelper.frameCatalog()) {
+                    // determine if this item should be visible to the current player; items never placed are shared
+                    if (s.error == null) {
+                        java.util.List<FrameInstance> instances = FileHelper.frameInstancesOf(s.itemId);
+                        boolean allowed = instances.isEmpty();
+                        for (FrameInstance inst : instances) {
+                            if (inst.isVisibleTo(playerUuid)) { allowed = true; break; }
+                        }
+                        if (!allowed) continue;
                     }
-                    final org.bson.BsonDocument itemsDocFinal = itemsDoc;
-                try (java.util.stream.Stream<Path> stream = Files.list(metaDir)) {
-                    stream.filter(p -> Files.isRegularFile(p) && p.getFileName().toString().endsWith(".json"))
-                          .forEach(p -> {
-                              try {
-                                  String txt = Files.readString(p);
-                                  org.bson.BsonDocument meta = org.bson.BsonDocument.parse(txt);
-                                  String id = meta.containsKey("itemId") ? meta.getString("itemId").getValue() : p.getFileName().toString().replaceFirst("\\.json$", "");
-                                  String name = meta.containsKey("name") ? meta.getString("name").getValue() : "";
-                                      
-                                      // determine if this item should be visible to the current player
-                                      boolean allowed = true;
-                                      try {
-                                          if (itemsDocFinal != null && itemsDocFinal.containsKey(id)) {
-                                              org.bson.BsonArray arr = itemsDocFinal.getArray(id);
-                                              allowed = false;
-                                              String playerUuid = "";
-                                              try { if (player != null) playerUuid = ((com.hypixel.hytale.server.core.command.system.CommandSender) player).getUuid().toString(); } catch (Exception ignore) { playerUuid = ""; }
-                                              for (int i = 0; i < arr.size(); i++) {
-                                                  try {
-                                                      org.bson.BsonDocument inst = arr.get(i).asDocument();
-                                                      String creator = inst.containsKey("creator") ? inst.getString("creator").getValue() : "";
-                                                      boolean share = true;
-                                                      if (inst.containsKey("share")) {
-                                                          try { share = inst.getBoolean("share").getValue(); } catch (Exception ignore) { share = true; }
-                                                      }
-                                                      if ((creator != null && !creator.isEmpty() && creator.equals(playerUuid)) || share) { allowed = true; break; }
-                                                  } catch (Exception ignoreInner) { /* continue checking other instances */ }
-                                              }
-                                          } else {
-                                              // no index entry -> assume shared
-                                              allowed = true;
-                                          }
-                                      } catch (Exception ignore) { allowed = true; }
-
-                                      if (!allowed) return;
-                                  String coords = "";
-                                  if (meta.containsKey("coords")) {
-                                      org.bson.BsonDocument c = meta.getDocument("coords");
-                                      coords = c.getInt32("x").getValue() + "," + c.getInt32("y").getValue() + "," + c.getInt32("z").getValue();
-                                  }
-                                  entries.add(id + " - " + name + (coords.isEmpty() ? "" : " @ " + coords));
-                              } catch (Exception e) {
-                                  entries.add("ERROR: " + p.getFileName().toString() + " - " + e.getMessage());
-                              }
-                          });
+                    entries.add(s.label());
+                }
+                if (entries.isEmpty()) {
+                    player.sendMessage(com.hypixel.hytale.server.core.Message.raw("No metadata files found."));
+                    return;
                 }
 
                 String[] arr = entries.toArray(new String[0]);
@@ -345,47 +286,38 @@ public class ImageDownloadPage extends InteractiveCustomUIPage<ImageDownloadPage
                     Frames.LOGGER.atWarning().withCause(e).log("Failed to determine block size, defaulting to 32x32");
                 }
 
-                // Download image (no scaling) and create a dedicated item + blockymodel for it
+                int blocksX = 1;
                 try {
-                    java.awt.image.BufferedImage img = FileHelper.downloadImage(url);
-
-                    int blocksX = 1;
-                    try {
-                        if (data.sizeXBlocks != null && !data.sizeXBlocks.trim().isEmpty()) blocksX = Math.max(1, Integer.parseInt(data.sizeXBlocks.trim()));
-                    } catch (Exception ignored) {}
-
-                    // Maintain aspect ratio: blocksY is derived from image dimensions when saving; pass blocksX only
-                    String itemId = FileHelper.addImageAsItemFromImage(img, data.name, blocksX, blocksX, data.alignment);
-
-                    // Write metadata JSON for the created frame into mods/BoffmediaFrames/Frames/<itemId>.json
-                    try {
-                        String creator = ((com.hypixel.hytale.server.core.command.system.CommandSender) player).getUuid().toString();
-                        FileHelper.writeFrameMetadata(itemId, data.name, data.url, this.targetBlock.x, this.targetBlock.y, this.targetBlock.z, blocksX, data.alignment, creator, false);
-                    } catch (IOException ioe) {
-                        Frames.LOGGER.atWarning().withCause(ioe).log("Failed to write frame metadata: " + ioe.getMessage());
-                    }
-
-                    // Close UI and delay applying the new block so assets have time to sync
-                    this.close();
-
-                    new Thread(() -> {
-                        try {
-                            Thread.sleep(10_000);
-                            Frames.LOGGER.atInfo().log("Attempting to replace block with item '" + itemId + "' after delay");
-                            boolean replaced = UseFrameInteraction.replaceBlockWithItem(this.targetWorld, this.targetBlock, itemId);
-                            if (replaced) {
-                                player.sendMessage(com.hypixel.hytale.server.core.Message.raw("The frame has been updated to the new item: " + itemId));
-                            } else {
-                                player.sendMessage(com.hypixel.hytale.server.core.Message.raw("Could not replace the block. Ensure the chunk is loaded and assets have been reloaded."));
-                            }
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                            Frames.LOGGER.atWarning().withCause(ie).log("Delayed replacement interrupted");
+                    if (data.sizeXBlocks != null && !data.sizeXBlocks.trim().isEmpty()) blocksX = Math.max(1, Integer.parseInt(data.sizeXBlocks.trim()));
+                } catch (Exception ignored) {}
+
+                // Download, generate the item + blockymodel and write metadata off the world thread.
+                // Maintain aspect ratio: blocksY is derived from image dimensions when saving; pass blocksX only
+                String creator = ((com.hypixel.hytale.server.core.command.system.CommandSender) player).getUuid().toString();
+                int pixelsPerBlock = PermissionsUtil.canUploadHighRes(player)
+                        ? Math.max(0, FramesConfig.getInt("resolution.highResPixelsPerBlock", 256))
+                        : FrameItemGenerator.defaultPixelsPerBlock();
+                // Re-rendering the frame's own link at another size can use the cached source; a new link is downloaded fresh
+                boolean freshSource = prefilledUrl == null || !SourceImageCache.normalizeUrl(url).equals(SourceImageCache.normalizeUrl(prefilledUrl));
+                IngestionPipeline.Request request = new IngestionPipeline.Request(url, data.name, blocksX, data.alignment, creator, this.targetWorld.getName(), this.targetBlock, pixelsPerBlock, freshSource);
+                try {
+                    FileHelper.submitImageIngest(request, this.targetWorld, (result, err) -> {
+                        if (err != null) {
+                            player.sendMessage(com.hypixel.hytale.server.core.Message.raw("Error downloading or saving the image: " + err.getMessage()));
+                            return;
                         }
-                    }).start();
-                } catch (IOException ioe) {
-                    player.sendMessage(com.hypixel.hytale.server.core.Message.raw("Error downloading or saving the image: " + ioe.getMessage()));
+                        if (result.reused) player.sendMessage(com.hypixel.hytale.server.core.Message.raw("This image already exists as " + result.itemId + ", reusing it."));
+                        scheduleReplace(player, result.itemId);
+                    });
+                    int ahead = IngestionPipeline.queueDepth() - 1;
+                    if (ahead > 0) player.sendMessage(com.hypixel.hytale.server.core.Message.raw("Your upload is queued behind " + ahead + " other upload(s)."));
+                } catch (java.util.concurrent.RejectedExecutionException rex) {
+                    player.sendMessage(com.hypixel.hytale.server.core.Message.raw("The server is busy processing other images, please try again shortly."));
+                    return;
                 }
+
+                // Close UI; the block is replaced once the upload finishes
+                this.close();
             } catch (Exception e) {
                 player.sendMessage(com.hypixel.hytale.server.core.Message.raw("Error downloading or processing the image: " + e.getMessage()));
             }
@@ -395,7 +327,7 @@ public class ImageDownloadPage extends InteractiveCustomUIPage<ImageDownloadPage
                 boolean replaced = UseFrameInteraction.replaceBlockWithItem(this.targetWorld, this.targetBlock, "Boff_Frame_1x1");
                 if (replaced) {
                     try {
-                        FileHelper.removeInstancesAtCoords(this.targetBlock.x, this.targetBlock.y, this.targetBlock.z);
+                        FileHelper.removeInstancesAtCoords(this.targetWorld.getName(), this.targetBlock.x, this.targetBlock.y, this.targetBlock.z);
                     } catch (Exception e) {
                         Frames.LOGGER.atWarning().withCause(e).log("Failed to remove frame instances at coords: " + e.getMessage());
                     }
@@ -466,7 +398,7 @@ public class ImageDownloadPage extends InteractiveCustomUIPage<ImageDownloadPage
                         try {
                             Path metaPath = FileHelper.MODS_ROOT.resolve("Frames").resolve(itemId + ".json");
                             if (Files.exists(metaPath) && Files.isRegularFile(metaPath)) {
-                                String txt = Files.readString(metaPath);
+                                String txt = PersistenceWriter.readString(metaPath);
                                 org.bson.BsonDocument meta = org.bson.BsonDocument.parse(txt);
                                 if (meta.containsKey("name")) name = meta.getString("name").getValue();
                                 if (meta.containsKey("url")) url = meta.getString("url").getValue();
@@ -492,14 +424,14 @@ public class ImageDownloadPage extends InteractiveCustomUIPage<ImageDownloadPage
 
                         // Remove any existing instances at these coords and then register the new one
                         try {
-                            FileHelper.removeInstancesAtCoords(tx, ty, tz);
+                            FileHelper.removeInstancesAtCoords(this.targetWorld.getName(), tx, ty, tz);
                         } catch (Exception e) {
                             Frames.LOGGER.atWarning().withCause(e).log("Failed to remove existing instance at coords: " + e.getMessage());
                         }
 
                         try {
                             String creator = ((com.hypixel.hytale.server.core.command.system.CommandSender) player).getUuid().toString();
-                            FileHelper.writeFrameMetadata(itemId, name, url, tx, ty, tz, blocksX, alignment, creator, false);
+                            FileHelper.writeFrameMetadata(itemId, name, url, this.targetWorld.getName(), tx, ty, tz, blocksX, alignment, creator, false);
                         } catch (Exception e) {
                             Frames.LOGGER.atWarning().withCause(e).log("Failed to write frame metadata: " + e.getMessage());
                         }
@@ -11,7 +11,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import es.boffmedia.frames.FileHelper;
-import es.boffmedia.frames.Frames;
+import es.boffmedia.frames.core.FramesEvents;
 import es.boffmedia.frames.PermissionsUtil;
 import com.hypixel.hytale.protocol.packets.interface_.CustomPageLifetime;
 import com.hypixel.hytale.protocol.packets.interface_.CustomUIEventBindingType;
@@ -28,57 +28,41 @@ public class ListFramesPage extends InteractiveCustomUIPage<ListFramesPage.ListD
     public static class ListData {
         public String action;
         public String index;
+        public String filter;
 
         public static final BuilderCodec<ListData> CODEC = ((BuilderCodec.Builder<ListData>) BuilderCodec.builder(ListData.class, ListData::new))
                 .append(new KeyedCodec<>("Action", Codec.STRING), (ListData o, String v) -> o.action = v, (ListData o) -> o.action)
                 .add()
                 .append(new KeyedCodec<>("Index", Codec.STRING), (ListData o, String v) -> o.index = v, (ListData o) -> o.index)
                 .add()
+                .append(new KeyedCodec<>("@Filter", Codec.STRING), (ListData o, String v) -> o.filter = v, (ListData o) -> o.filter)
+                .add()
                 .build();
     }
 
     private final String[] entries;
+    private final FrameListPager pager;
 
     public ListFramesPage(@Nonnull PlayerRef playerRef, @Nonnull String[] entries) {
         super(playerRef, CustomPageLifetime.CanDismiss, ListData.CODEC);
         this.entries = entries != null ? entries : new String[0];
+        this.pager = new FrameListPager(this.entries);
     }
 
     @Override
     public void build(@Nonnull Ref<EntityStore> ref, @Nonnull UICommandBuilder uiCommandBuilder, @Nonnull UIEventBuilder uiEventBuilder, @Nonnull Store<EntityStore> store) {
+        FramesEvents.PageBuild event = new FramesEvents.PageBuild();
+        event.begin();
         uiCommandBuilder.append("Pages/ListFramesPage.ui");
 
         // Wire Close button to send Action=Close so we can optionally handle it server-side
         uiEventBuilder.addEventBinding(CustomUIEventBindingType.Activating, "#CloseButton",
                 new EventData().append("Action", "Close"), false);
 
-        // Clear any existing children in the scrolling list container
-        try { uiCommandBuilder.clear("#FramesList"); } catch (Exception ignored) {}
-
-        // Append one `FrameListItem.ui` per entry and bind its buttons
-        for (int i = 0; i < entries.length; i++) {
-            String entry = entries[i];
-            try {
-                uiCommandBuilder.append("#FramesList", "Pages/FrameListItem.ui");
-                // Set the label text for the newly appended item (indexed selector)
-
-                Frames.LOGGER.atInfo().log("Adding frame entry to UI: " + entry);
-
-                uiCommandBuilder.set("#FramesList[" + i + "] #EntryLabel.Text", entry);
-
-                // Bind Apply button for this item; include index so handler knows which entry
-                uiEventBuilder.addEventBinding(CustomUIEventBindingType.Activating,
-                    "#FramesList[" + i + "] #ApplyButton",
-                        new EventData().append("Action", "Apply").append("Index", Integer.toString(i)),
-                        false);
-
-                // Bind Delete button for this item
-                uiEventBuilder.addEventBinding(CustomUIEventBindingType.Activating,
-                    "#FramesList[" + i + "] #DeleteButton",
-                        new EventData().append("Action", "Delete").append("Index", Integer.toString(i)),
-                        false);
-            } catch (Exception ignored) {}
-        }
+        // Only the current page of the (filtered) entries is sent to the client
+        pager.render(uiCommandBuilder, uiEventBuilder);
+        event.page = "ListFramesPage";
+        event.commit();
     }
 
     @Override
@@ -87,6 +71,11 @@ public class ListFramesPage extends InteractiveCustomUIPage<ListFramesPage.ListD
 
         Player player = store.getComponent(ref, Player.getComponentType());
 
+        if (pager.handle(data.action, data.filter)) {
+            player.getPageManager().openCustomPage(ref, store, this);
+            return;
+        }
+
         switch (data.action) {
             case "Close":
                 this.close();
@@ -114,7 +103,7 @@ public class ListFramesPage extends InteractiveCustomUIPage<ListFramesPage.ListD
                             return;
                         }
                         String entry = entries[idx];
-                        String id = entry.contains(" — ") ? entry.split(" — ", 2)[0] : entry;
+                        String id = entry.contains(" - ") ? entry.split(" - ", 2)[0] : entry;
                         // Attempt to delete all files related to this generated frame
                         String baseName = id.startsWith("Boff_Frame_") ? id.substring("Boff_Frame_".length()) : null;
 
@@ -123,6 +112,7 @@ public class ListFramesPage extends InteractiveCustomUIPage<ListFramesPage.ListD
                         try {
                                 if (Files.exists(meta)) {
                                 Files.delete(meta);
+                                FileHelper.forgetFrameMetadata(meta);
                                 player.sendMessage(Message.raw("Metadata file " + id + " has been deleted."));
                             }
                         } catch (Exception e) {
@@ -162,25 +152,12 @@ public class ListFramesPage extends InteractiveCustomUIPage<ListFramesPage.ListD
                                 player.sendMessage(Message.raw("Error deleting image: " + e.getMessage()));
                             }
                         }
+                        FileHelper.releaseAtlasSlot(id);
 
-                        // 4) Remove any state definitions referencing this id across all frame JSON sizes
+                        // 4) Remove the state definition for this id from the frame json that holds it, if any
                         try {
-                            boolean anyRemoved = false;
-                            for (String sk : FileHelper.FRAME_SIZES) {
-                                try {
-                                    boolean removed = FileHelper.removeImageState(sk, id);
-                                    if (removed) {
-                                            anyRemoved = true;
-                                            player.sendMessage(Message.raw("Removed state " + id + " from frame json: " + sk));
-                                        }
-                                } catch (Exception inner) {
-                                    // non-fatal per-size failure
-                                }
-                            }
-                            if (!anyRemoved) {
-                                // inform optionally that nothing was found in state definitions
-                                // (but avoid spamming if we've already deleted files above)
-                            }
+                            String sk = FileHelper.removeImageState(id);
+                            if (sk != null) player.sendMessage(Message.raw("Removed state " + id + " from frame json: " + sk));
                         } catch (Exception e) {
                             player.sendMessage(Message.raw("Error removing state definitions: " + e.getMessage()));
                         }
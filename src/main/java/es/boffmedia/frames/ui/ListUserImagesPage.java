@@ -18,7 +18,7 @@ import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.protocol.BlockPosition;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import es.boffmedia.frames.FileHelper;
-import es.boffmedia.frames.Frames;
+import es.boffmedia.frames.core.FramesEvents;
 
 import javax.annotation.Nonnull;
 import java.nio.file.Files;
@@ -30,16 +30,20 @@ public class ListUserImagesPage extends InteractiveCustomUIPage<ListUserImagesPa
     public static class ListData {
         public String action;
         public String index;
+        public String filter;
 
         public static final BuilderCodec<ListData> CODEC = ((BuilderCodec.Builder<ListData>) BuilderCodec.builder(ListData.class, ListData::new))
                 .append(new KeyedCodec<>("Action", Codec.STRING), (ListData o, String v) -> o.action = v, (ListData o) -> o.action)
                 .add()
                 .append(new KeyedCodec<>("Index", Codec.STRING), (ListData o, String v) -> o.index = v, (ListData o) -> o.index)
                 .add()
+                .append(new KeyedCodec<>("@Filter", Codec.STRING), (ListData o, String v) -> o.filter = v, (ListData o) -> o.filter)
+                .add()
                 .build();
     }
 
     private final String[] entries;
+    private final FrameListPager pager;
     private final PlayerRef playerRef;
     private final World world;
     private final BlockPosition targetBlock;
@@ -48,6 +52,7 @@ public class ListUserImagesPage extends InteractiveCustomUIPage<ListUserImagesPa
     public ListUserImagesPage(@Nonnull PlayerRef playerRef, @Nonnull World world, @Nonnull BlockPosition targetBlock, @Nonnull String[] entries, @Nonnull InteractiveCustomUIPage<?> returnPage) {
         super(playerRef, CustomPageLifetime.CanDismiss, ListData.CODEC);
         this.entries = entries != null ? entries : new String[0];
+        this.pager = new FrameListPager(this.entries);
         this.playerRef = playerRef;
         this.world = world;
         this.targetBlock = targetBlock;
@@ -56,33 +61,17 @@ public class ListUserImagesPage extends InteractiveCustomUIPage<ListUserImagesPa
 
     @Override
     public void build(@Nonnull Ref<EntityStore> ref, @Nonnull UICommandBuilder uiCommandBuilder, @Nonnull UIEventBuilder uiEventBuilder, @Nonnull Store<EntityStore> store) {
+        FramesEvents.PageBuild event = new FramesEvents.PageBuild();
+        event.begin();
         uiCommandBuilder.append("Pages/ListFramesPage.ui");
 
         uiEventBuilder.addEventBinding(CustomUIEventBindingType.Activating, "#CloseButton",
                 new EventData().append("Action", "Close"), false);
 
-        try { uiCommandBuilder.clear("#FramesList"); } catch (Exception ignored) {}
-
-        for (int i = 0; i < entries.length; i++) {
-            String entry = entries[i];
-            
-            Frames.LOGGER.atInfo().log("Adding entry to ListUserImagesPage: " + entry);
-
-            try {
-                uiCommandBuilder.append("#FramesList", "Pages/FrameListItem.ui");
-                uiCommandBuilder.set("#FramesList[" + i + "] #EntryLabel.Text", entry);
-
-                uiEventBuilder.addEventBinding(CustomUIEventBindingType.Activating,
-                    "#FramesList[" + i + "] #ApplyButton",
-                        new EventData().append("Action", "Apply").append("Index", Integer.toString(i)),
-                        false);
-
-                uiEventBuilder.addEventBinding(CustomUIEventBindingType.Activating,
-                    "#FramesList[" + i + "] #DeleteButton",
-                        new EventData().append("Action", "Delete").append("Index", Integer.toString(i)),
-                        false);
-            } catch (Exception ignored) {}
-        }
+        // Only the current page of the (filtered) entries is sent to the client
+        pager.render(uiCommandBuilder, uiEventBuilder);
+        event.page = "ListUserImagesPage";
+        event.commit();
     }
 
     @Override
@@ -91,6 +80,11 @@ public class ListUserImagesPage extends InteractiveCustomUIPage<ListUserImagesPa
 
         Player player = store.getComponent(ref, Player.getComponentType());
 
+        if (pager.handle(data.action, data.filter)) {
+            player.getPageManager().openCustomPage(ref, store, this);
+            return;
+        }
+
         switch (data.action) {
             case "Close":
                 this.close();
@@ -134,6 +128,7 @@ public class ListUserImagesPage extends InteractiveCustomUIPage<ListUserImagesPa
                         try {
                             if (Files.exists(meta)) {
                                 Files.delete(meta);
+                                FileHelper.forgetFrameMetadata(meta);
                                 player.sendMessage(Message.raw("Metadata file " + id + " has been deleted."));
                             }
                         } catch (Exception e) {